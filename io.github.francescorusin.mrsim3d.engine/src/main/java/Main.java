@@ -1,7 +1,10 @@
 import agents.CentralizedGridRobot;
 import agents.EmbodiedAgent;
-import bodies.Voxel;
-import geometry.Vector3D;
+import distributed.Coordinator;
+import distributed.OutcomeSummary;
+import distributed.Worker;
+import experiments.BipedExperiment;
+import experiments.ExperimentLog;
 import io.github.ericmedvet.jgea.core.operator.Crossover;
 import io.github.ericmedvet.jgea.core.problem.TotalOrderQualityBasedProblem;
 import io.github.ericmedvet.jgea.core.representation.sequence.FixedLengthListFactory;
@@ -11,27 +14,38 @@ import io.github.ericmedvet.jgea.core.representation.sequence.numeric.UniformDou
 import io.github.ericmedvet.jgea.core.selector.Last;
 import io.github.ericmedvet.jgea.core.selector.Tournament;
 import io.github.ericmedvet.jgea.core.solver.StandardEvolver;
-import io.github.ericmedvet.jsdynsym.core.composed.OutStepped;
-import io.github.ericmedvet.jsdynsym.core.numerical.NumericalDynamicalSystem;
-import io.github.ericmedvet.jsdynsym.core.numerical.ann.MultiLayerPerceptron;
+import tasks.EvaluationCache;
+import tasks.LockstepExecutor;
 import tasks.Locomotion;
 import tasks.Outcome;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
 public class Main {
     public static void main(String[] args) {
+        // worker mode: worker <host> <port> <nOfThreads>
+        if (args[0].equals("worker")) {
+            Locomotion task = new Locomotion(30);
+            try {
+                new Worker(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]), g -> task.run(() -> robot(g))).run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            return;
+        }
         final int nPop = Integer.parseInt(args[1]);
         final int nEval = Integer.parseInt(args[2]);
         StandardEvolver<List<Double>, List<Double>, Outcome> solver = new StandardEvolver<>(
                 g -> g,
-                new FixedLengthListFactory<>(33696, new UniformDoubleFactory(-1, 1)),
+                new FixedLengthListFactory<>(BipedExperiment.N_OF_GENES, new UniformDoubleFactory(-1, 1)),
                 nPop,
                 s -> s.nOfQualityEvaluations() >= nEval,
                 Map.ofEntries(
@@ -45,70 +59,95 @@ public class Main {
                 100,
                 false
         );
+        // optional fourth argument: number of worlds interleaved on each simulation thread; with more
+        // than one, the controllers of the worlds of a thread are evaluated as one batch
+        final int worldsPerThread = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        // optional fifth argument: port on which to coordinate remote workers instead of evaluating locally
+        final int coordinatorPort = args.length > 4 ? Integer.parseInt(args[4]) : -1;
+        // optional sixth argument: file in which evaluations are persisted across runs
+        final Path cacheFile = args.length > 5 ? Path.of(args[5]) : null;
         Locomotion task = new Locomotion(30);
         final List<Double> solution;
         try {
             ExecutorService executor = Executors.newFixedThreadPool(36);
-            solution = solver.solve(
-                    new TotalOrderQualityBasedProblem<>() {
-                        @Override
-                        public Comparator<Outcome> totalOrderComparator() {
-                            return Comparator.comparingDouble(o -> -o.finalDistanceFromTarget(new Vector3D()));
-                        }
+            LockstepExecutor<Supplier<EmbodiedAgent>, Outcome> lockstepExecutor = worldsPerThread > 1 ?
+                    new LockstepExecutor<>(task, Math.max(1, 36 / worldsPerThread), worldsPerThread) : null;
+            Coordinator coordinator = coordinatorPort >= 0 ? new Coordinator(coordinatorPort, BipedExperiment.METRICS) : null;
+            Function<List<Double>, Outcome> evaluator;
+            if (Objects.nonNull(coordinator)) {
+                evaluator = coordinator;
+            } else if (Objects.isNull(lockstepExecutor)) {
+                evaluator = g -> task.run(() -> robot(g));
+            } else {
+                BipedExperiment.checkBatchedController(
+                        new Random(Integer.parseInt(args[0])).doubles(BipedExperiment.N_OF_GENES, -1, 1).toArray(),
+                        new Random(Integer.parseInt(args[0])));
+                evaluator = g -> lockstepExecutor.run(
+                        () -> BipedExperiment.batchedRobot(g.stream().mapToDouble(d -> d).toArray()));
+            }
+            // survivors and clones are not simulated again; two generations worth of outcomes are kept
+            // persisted outcomes only hold the metrics of the experiment, which are thus part of the key
+            String cacheKey = String.format("%s-%s-%s", task.key(), BipedExperiment.SHAPE, BipedExperiment.METRICS);
+            // the log and the cache are closed even if the solver fails, so that what was evaluated is kept
+            try (EvaluationCache<Outcome> cache = Objects.isNull(cacheFile) ?
+                    new EvaluationCache<>(evaluator, cacheKey, 2 * nPop) :
+                    EvaluationCache.persistent(evaluator, cacheKey, 2 * nPop, cacheFile, OutcomeSummary.codec(BipedExperiment.METRICS));
+                 ExperimentLog log = ExperimentLog.open(Path.of("base-exp.log"))) {
+                // every evaluation goes to the log; the solver does not expose the generation, which is
+                // estimated from the evaluation count and is off for evaluations that overlap generations
+                AtomicLong nOfEvaluations = new AtomicLong();
+                Function<List<Double>, Outcome> loggingEvaluator = g -> {
+                    Outcome outcome = cache.apply(g);
+                    try {
+                        log.append(
+                                (int) (nOfEvaluations.getAndIncrement() / nPop),
+                                outcome.get(BipedExperiment.FITNESS),
+                                g.stream().mapToDouble(Double::doubleValue).toArray(),
+                                outcome.descriptor());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return outcome;
+                };
+                try {
+                    solution = solver.solve(
+                            new TotalOrderQualityBasedProblem<>() {
+                                @Override
+                                public Comparator<Outcome> totalOrderComparator() {
+                                    return Comparator.comparingDouble(o -> -o.get(BipedExperiment.FITNESS));
+                                }
 
-                        @Override
-                        public Function<List<Double>, Outcome> qualityFunction() {
-                            return g -> task.run(() -> robot(g));
-                        }
-                    },
-                    new Random(Integer.parseInt(args[0])),
-                    executor
-            ).stream().findFirst().orElseThrow();
-            executor.shutdown();
-            BufferedWriter writer = new BufferedWriter(new FileWriter("base-exp.txt", true));
-            writer.write("%s\n".formatted(solution));
-            writer.close();
+                                @Override
+                                public Function<List<Double>, Outcome> qualityFunction() {
+                                    return loggingEvaluator;
+                                }
+                            },
+                            new Random(Integer.parseInt(args[0])),
+                            executor
+                    ).stream().findFirst().orElseThrow();
+                } finally {
+                    executor.shutdown();
+                }
+                // the final result is marked as such; it is also among the records of its generation
+                Outcome best = cache.apply(solution);
+                log.append(
+                        ExperimentLog.FINAL_GENERATION,
+                        best.get(BipedExperiment.FITNESS),
+                        solution.stream().mapToDouble(Double::doubleValue).toArray(),
+                        best.descriptor());
+            }
+            if (Objects.nonNull(lockstepExecutor)) {
+                lockstepExecutor.close();
+            }
+            if (Objects.nonNull(coordinator)) {
+                coordinator.close();
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
     private static CentralizedGridRobot robot(List<Double> genotype) {
-        MultiLayerPerceptron mlp = new MultiLayerPerceptron(
-                MultiLayerPerceptron.ActivationFunction.TANH,
-                80,
-                new int[]{80},
-                336
-        );
-        mlp.setParams(genotype.stream().mapToDouble(d -> d).toArray());
-        return new CentralizedGridRobot(
-                        testGrid("biped"),
-                        NumericalDynamicalSystem.from(
-                                new OutStepped<>(mlp, 0.1),
-                                80,
-                                336
-                        )
-                );
-    }
-
-    private static Voxel[][][] testGrid(String shape) {
-        return switch (shape) {
-            case "biped" -> {
-                Voxel[][][] grid = new Voxel[4][3][3];
-                for (int i = 0; i < 4; i++) {
-                    for (int j = 0; j < 3; j++) {
-                        for (int k = 1; k < 3; k++) {
-                            grid[i][j][k] = new Voxel(EnumSet.allOf(Voxel.JointOption.class), "");
-                        }
-                    }
-                }
-                grid[0][0][0] = new Voxel(EnumSet.allOf(Voxel.JointOption.class), "ang-vlm-vlc-scr-cnt");
-                grid[3][0][0] = new Voxel(EnumSet.allOf(Voxel.JointOption.class), "ang-vlm-vlc-scr-cnt");
-                grid[0][2][0] = new Voxel(EnumSet.allOf(Voxel.JointOption.class), "ang-vlm-vlc-scr-cnt");
-                grid[3][2][0] = new Voxel(EnumSet.allOf(Voxel.JointOption.class), "ang-vlm-vlc-scr-cnt");
-                yield grid;
-            }
-            default -> null;
-        };
+        return BipedExperiment.robot(genotype.stream().mapToDouble(d -> d).toArray());
     }
-}
\ No newline at end of file
+}
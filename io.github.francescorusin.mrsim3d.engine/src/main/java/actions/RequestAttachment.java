@@ -22,6 +22,7 @@ package actions;
 import ad.Attachable;
 import bodies.Body;
 import engine.Ode4jEngine;
+import geometry.MutableVector3D;
 import geometry.Vector3D;
 import java.util.*;
 
@@ -93,10 +94,10 @@ public class RequestAttachment implements Action {
             .map(sb -> (Attachable) sb)
             .min(
                 Comparator.comparingDouble(
-                    v -> v.position(engine.t()).vectorDistance(basePos).norm()))
+                    v -> v.position(engine.t()).distance(basePos)))
             .orElse(null);
     if (Objects.isNull(closestAttachable)
-        || closestAttachable.position(engine.t()).vectorDistance(basePos).norm()
+        || closestAttachable.position(engine.t()).distance(basePos)
             > engine.configuration.maxAttractDistance()) {
       return;
     }
@@ -108,18 +109,19 @@ public class RequestAttachment implements Action {
           closestAttachable.attachPossibilitiesPositions(engine.t()).get(attachPossibility));
       possibilitiesDistances.put(
           attachPossibility,
-          possibilitiesPositions.get(attachPossibility).vectorDistance(basePos).norm());
+          possibilitiesPositions.get(attachPossibility).distance(basePos));
     }
     List<Body> bestAnchorBlock =
         Collections.min(
             possibilitiesDistances.keySet(),
             Comparator.comparingDouble(possibilitiesDistances::get));
     Map<Pair<Body, Body>, Double> bodyDistances = new HashMap<>();
+    MutableVector3D position1 = new MutableVector3D();
+    MutableVector3D position2 = new MutableVector3D();
     for (Body b1 : requesterAttachGroup) {
+      b1.position(engine.t(), position1);
       for (Body b2 : bestAnchorBlock) {
-        bodyDistances.put(
-            new Pair<>(b1, b2),
-            b1.position(engine.t()).vectorDistance(b2.position(engine.t())).norm());
+        bodyDistances.put(new Pair<>(b1, b2), position1.distance(b2.position(engine.t(), position2)));
       }
     }
     Pair<Body, Body> minDistanceBodies =
@@ -150,6 +152,9 @@ public class RequestAttachment implements Action {
           force =
               force.times(
                   bodyDistances.get(targetPair) / engine.configuration.maxAttractDistance());
+          // forces are ignored by resting bodies
+          requesterBody.wake();
+          targetBody.wake();
           requesterBody.dBody().addForce(force.x(), force.y(), force.z());
           targetBody.dBody().addForce(-force.x(), -force.y(), -force.z());
         } else {
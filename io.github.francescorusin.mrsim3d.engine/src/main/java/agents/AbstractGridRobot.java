@@ -23,11 +23,15 @@ import bodies.*;
 import engine.Ode4jEngine;
 import geometry.BoundingBox;
 import geometry.Vector3D;
+import java.awt.*;
 import java.util.*;
+import java.util.List;
 import java.util.stream.Collectors;
 
 import joints.FixedJoint;
+import sensors.Sensor;
 import snapshot.*;
+import utils.TickCache;
 import utils.UnorderedPair;
 import viewer.Viewer;
 
@@ -36,79 +40,276 @@ public abstract class AbstractGridRobot implements EmbodiedAgent {
   protected final double voxelSideLength;
   protected final double voxelMass;
   protected final Set<UnorderedPair<int[]>> intraVoxelLocks;
+  // non-empty voxels, in grid order, and their cells
+  protected final Voxel[] voxels;
+  private final int[][] cells;
+  private final List<AbstractBody> components;
+  // stateless sensors of the voxels, computed together; bulkIndexes maps voxels to their index in
+  // it, or to -1 if they have no such sensors
+  private final BulkSensing bulkSensing;
+  private final int[] bulkIndexes;
 
-  private enum Cache {
-    BBOX,
-    POSITION,
-    VELOCITY
-  }
+  // per-step cache of derived quantities, bound to the engine on assembly
+  private final TickCache cache = new TickCache();
+  private final TickCache.Slot<BoundingBox> boundingBoxCache = cache.slot();
+  private final TickCache.Slot<Vector3D> positionCache = cache.slot();
+  private final TickCache.Slot<Vector3D> velocityCache = cache.slot();
+
+  private record HullFace(int x, int y, int z, Voxel.Side side) {}
+
+  // relative position of an already visited neighbor, in grid order, of a cell, and the vertices
+  // of the two voxels to lock together
+  private record NeighborOffset(int dx, int dy, int dz, Voxel.Vertex[] neighborVertices, Voxel.Vertex[] vertices) {}
+
+  private static final List<NeighborOffset> NEIGHBOR_OFFSETS =
+      List.of(
+          new NeighborOffset(
+              -1, 0, 0,
+              new Voxel.Vertex[] {Voxel.Vertex.V100, Voxel.Vertex.V101, Voxel.Vertex.V110, Voxel.Vertex.V111},
+              new Voxel.Vertex[] {Voxel.Vertex.V000, Voxel.Vertex.V001, Voxel.Vertex.V010, Voxel.Vertex.V011}),
+          new NeighborOffset(
+              0, -1, 0,
+              new Voxel.Vertex[] {Voxel.Vertex.V010, Voxel.Vertex.V011, Voxel.Vertex.V110, Voxel.Vertex.V111},
+              new Voxel.Vertex[] {Voxel.Vertex.V000, Voxel.Vertex.V001, Voxel.Vertex.V100, Voxel.Vertex.V101}),
+          new NeighborOffset(
+              0, 0, -1,
+              new Voxel.Vertex[] {Voxel.Vertex.V001, Voxel.Vertex.V011, Voxel.Vertex.V101, Voxel.Vertex.V111},
+              new Voxel.Vertex[] {Voxel.Vertex.V000, Voxel.Vertex.V010, Voxel.Vertex.V100, Voxel.Vertex.V110}),
+          new NeighborOffset(
+              -1, -1, 0,
+              new Voxel.Vertex[] {Voxel.Vertex.V110, Voxel.Vertex.V111},
+              new Voxel.Vertex[] {Voxel.Vertex.V000, Voxel.Vertex.V001}),
+          new NeighborOffset(
+              -1, 0, -1,
+              new Voxel.Vertex[] {Voxel.Vertex.V101, Voxel.Vertex.V111},
+              new Voxel.Vertex[] {Voxel.Vertex.V000, Voxel.Vertex.V010}),
+          new NeighborOffset(
+              0, -1, -1,
+              new Voxel.Vertex[] {Voxel.Vertex.V011, Voxel.Vertex.V111},
+              new Voxel.Vertex[] {Voxel.Vertex.V000, Voxel.Vertex.V100}),
+          new NeighborOffset(
+              -1, -1, -1, new Voxel.Vertex[] {Voxel.Vertex.V111}, new Voxel.Vertex[] {Voxel.Vertex.V000}),
+          new NeighborOffset(
+              -1, 1, 0,
+              new Voxel.Vertex[] {Voxel.Vertex.V100, Voxel.Vertex.V101},
+              new Voxel.Vertex[] {Voxel.Vertex.V010, Voxel.Vertex.V011}),
+          new NeighborOffset(
+              -1, 0, 1,
+              new Voxel.Vertex[] {Voxel.Vertex.V100, Voxel.Vertex.V110},
+              new Voxel.Vertex[] {Voxel.Vertex.V001, Voxel.Vertex.V011}),
+          new NeighborOffset(
+              0, -1, 1,
+              new Voxel.Vertex[] {Voxel.Vertex.V010, Voxel.Vertex.V110},
+              new Voxel.Vertex[] {Voxel.Vertex.V001, Voxel.Vertex.V101}),
+          new NeighborOffset(
+              -1, -1, 1, new Voxel.Vertex[] {Voxel.Vertex.V110}, new Voxel.Vertex[] {Voxel.Vertex.V001}),
+          new NeighborOffset(
+              -1, 1, 1, new Voxel.Vertex[] {Voxel.Vertex.V100}, new Voxel.Vertex[] {Voxel.Vertex.V011}),
+          new NeighborOffset(
+              1, 1, 1, new Voxel.Vertex[] {Voxel.Vertex.V000}, new Voxel.Vertex[] {Voxel.Vertex.V111}));
 
-  private final EnumMap<Cache, Double> cacheTime;
-  private final EnumMap<Cache, Object> cacher;
+  // pair of occupied neighbor cells, as indexes in voxels
+  private record Adjacency(int neighbor, int voxel, NeighborOffset offset) {}
+
+  private final List<Adjacency> adjacencies;
+
+  // faces not shared with another voxel of the grid; only these are displayed, grouped by cluster
+  private final List<HullFace> hullFaces;
+  private final GridRobotSnapshotHull.Topology hullTopology;
 
   public AbstractGridRobot(Voxel[][][] grid, double voxelSideLength, double voxelMass) {
     this.grid = grid;
     this.voxelSideLength = voxelSideLength;
     this.voxelMass = voxelMass;
-    this.intraVoxelLocks = new HashSet<>(grid.length * grid[0].length * grid[0][0].length * 6);
-    this.cacheTime = new EnumMap<>(Cache.class);
-    this.cacher = new EnumMap<>(Cache.class);
+    List<Voxel> occupiedVoxels = new ArrayList<>();
+    List<int[]> occupiedCells = new ArrayList<>();
+    int[][][] indexes = new int[grid.length][grid[0].length][grid[0][0].length];
+    for (int x = 0; x < grid.length; ++x) {
+      for (int y = 0; y < grid[0].length; ++y) {
+        for (int z = 0; z < grid[0][0].length; ++z) {
+          if (Objects.nonNull(grid[x][y][z])) {
+            indexes[x][y][z] = occupiedVoxels.size();
+            occupiedVoxels.add(grid[x][y][z]);
+            occupiedCells.add(new int[] {x, y, z});
+          }
+        }
+      }
+    }
+    this.voxels = occupiedVoxels.toArray(Voxel[]::new);
+    this.cells = occupiedCells.toArray(int[][]::new);
+    this.components = List.of(voxels);
+    this.adjacencies = new ArrayList<>();
+    for (int i = 0; i < cells.length; ++i) {
+      for (NeighborOffset offset : NEIGHBOR_OFFSETS) {
+        int nx = cells[i][0] + offset.dx();
+        int ny = cells[i][1] + offset.dy();
+        int nz = cells[i][2] + offset.dz();
+        if (isOccupied(nx, ny, nz)) {
+          adjacencies.add(new Adjacency(indexes[nx][ny][nz], i, offset));
+        }
+      }
+    }
+    this.intraVoxelLocks = new HashSet<>(2 * adjacencies.size());
+    this.bulkIndexes = new int[voxels.length];
+    List<Voxel> bulkVoxels = new ArrayList<>();
+    for (int i = 0; i < voxels.length; ++i) {
+      if (voxels[i].sensors().stream().anyMatch(BulkSensing::isBulk)) {
+        bulkIndexes[i] = bulkVoxels.size();
+        bulkVoxels.add(voxels[i]);
+      } else {
+        bulkIndexes[i] = -1;
+      }
+    }
+    this.bulkSensing = new BulkSensing(bulkVoxels);
+    this.hullFaces = new ArrayList<>();
+    for (int[] cell : cells) {
+      int x = cell[0];
+      int y = cell[1];
+      int z = cell[2];
+      for (Voxel.Side side : Voxel.Side.values()) {
+        int[] neighbor =
+            switch (side) {
+              case UP -> new int[] {x, y, z + 1};
+              case DOWN -> new int[] {x, y, z - 1};
+              case FRONT -> new int[] {x, y + 1, z};
+              case BACK -> new int[] {x, y - 1, z};
+              case RIGHT -> new int[] {x + 1, y, z};
+              case LEFT -> new int[] {x - 1, y, z};
+            };
+        if (!isOccupied(neighbor[0], neighbor[1], neighbor[2])) {
+          hullFaces.add(new HullFace(x, y, z, side));
+        }
+      }
+    }
+    this.hullTopology = hullTopology();
+  }
+
+  // clusters are the blocks of CLUSTER_CELLS cells per side; every hull edge is outlined once, by
+  // the first face having it, and every cluster is approximated by the hexahedron whose corners are
+  // its face corners farthest along each of the eight diagonal directions of the grid
+  private GridRobotSnapshotHull.Topology hullTopology() {
+    final int clusterCells = GridRobotSnapshotHull.CLUSTER_CELLS;
+    Map<List<Integer>, List<HullFace>> clusters = new LinkedHashMap<>();
+    for (HullFace face : hullFaces) {
+      clusters
+          .computeIfAbsent(List.of(face.x() / clusterCells, face.y() / clusterCells, face.z() / clusterCells), k -> new ArrayList<>())
+          .add(face);
+    }
+    hullFaces.clear();
+    int[] faceStarts = new int[clusters.size() + 1];
+    int[] edgeStarts = new int[clusters.size() + 1];
+    int[] boxCorners = new int[8 * clusters.size()];
+    List<Integer> edges = new ArrayList<>();
+    Set<Long> outlined = new HashSet<>();
+    final long nOfPoints = (long) (grid.length + 1) * (grid[0].length + 1) * (grid[0][0].length + 1);
+    int cluster = 0;
+    for (List<HullFace> faces : clusters.values()) {
+      long[] bestProjections = new long[8];
+      Arrays.fill(bestProjections, Long.MIN_VALUE);
+      for (HullFace face : faces) {
+        int[] points = new int[4];
+        List<Voxel.Vertex> vertices = List.of(face.side().v1, face.side().v2, face.side().v3, face.side().v4);
+        for (int k = 0; k < 4; ++k) {
+          // vertices are named after their offsets along x, y and z, so that the ordinal is 4x + 2y + z
+          int ordinal = vertices.get(k).ordinal();
+          int px = face.x() + (ordinal >> 2);
+          int py = face.y() + (ordinal >> 1 & 1);
+          int pz = face.z() + (ordinal & 1);
+          points[k] = (px * (grid[0].length + 1) + py) * (grid[0][0].length + 1) + pz;
+          int cornerIndex = 4 * hullFaces.size() + k;
+          for (int h = 0; h < 8; ++h) {
+            long projection = ((h >> 2) == 1 ? px : -px) + ((h >> 1 & 1) == 1 ? py : -py) + ((h & 1) == 1 ? pz : -pz);
+            if (projection > bestProjections[h]) {
+              bestProjections[h] = projection;
+              boxCorners[8 * cluster + h] = cornerIndex;
+            }
+          }
+        }
+        for (int k = 0; k < 4; ++k) {
+          int p1 = points[k];
+          int p2 = points[(k + 1) % 4];
+          if (outlined.add(Math.min(p1, p2) * nOfPoints + Math.max(p1, p2))) {
+            edges.add(4 * hullFaces.size() + k);
+            edges.add(4 * hullFaces.size() + (k + 1) % 4);
+          }
+        }
+        hullFaces.add(face);
+      }
+      ++cluster;
+      faceStarts[cluster] = hullFaces.size();
+      edgeStarts[cluster] = edges.size() / 2;
+    }
+    return new GridRobotSnapshotHull.Topology(
+        faceStarts, edgeStarts, edges.stream().mapToInt(Integer::intValue).toArray(), boxCorners);
+  }
+
+  private boolean isOccupied(int x, int y, int z) {
+    return x >= 0 && y >= 0 && z >= 0
+        && x < grid.length && y < grid[0].length && z < grid[0][0].length
+        && Objects.nonNull(grid[x][y][z]);
+  }
+
+  // reads the sensors of every voxel into out, starting from the offset of the voxel; angle,
+  // velocity, volume ratio and side compression sensors are computed for all voxels at once
+  protected void readSensors(Ode4jEngine engine, double[] out, int[] voxelOffsets) {
+    if (bulkSensing.n > 0) {
+      bulkSensing.update(engine.t());
+    }
+    for (int i = 0; i < voxels.length; ++i) {
+      int offset = voxelOffsets[i];
+      for (Sensor s : voxels[i].sensors()) {
+        if (bulkIndexes[i] < 0 || !bulkSensing.write(s, bulkIndexes[i], out, offset)) {
+          s.sense(engine, out, offset);
+        }
+        offset += s.outputSize();
+      }
+    }
   }
 
   @Override
   public List<AbstractBody> components() {
-    return Arrays.stream(grid)
-            .flatMap(aa -> Arrays.stream(aa).flatMap(Arrays::stream))
-            .filter(Objects::nonNull)
-            .collect(Collectors.toList());
+    return components;
   }
 
   @Override
   public BoundingBox boundingBox(double t) {
-    if (cacheTime.get(Cache.BBOX) != t) {
-      cacheTime.put(Cache.BBOX, t);
-      cacher.put(Cache.BBOX, EmbodiedAgent.super.boundingBox(t));
+    if (!boundingBoxCache.isValid()) {
+      boundingBoxCache.set(EmbodiedAgent.super.boundingBox(t));
     }
-    return (BoundingBox) cacher.get(Cache.BBOX);
+    return boundingBoxCache.get();
   }
 
   @Override
   public Vector3D position(double t) {
-    if (cacheTime.get(Cache.POSITION) != t) {
-      cacheTime.put(Cache.POSITION, t);
-      cacher.put(Cache.POSITION, EmbodiedAgent.super.position(t));
+    if (!positionCache.isValid()) {
+      positionCache.set(EmbodiedAgent.super.position(t));
     }
-    return (Vector3D) cacher.get(Cache.POSITION);
+    return positionCache.get();
   }
 
   @Override
   public Vector3D velocity(double t) {
-    if (cacheTime.get(Cache.VELOCITY) != t) {
-      cacheTime.put(Cache.VELOCITY, t);
-      cacher.put(Cache.VELOCITY, EmbodiedAgent.super.velocity(t));
+    if (!velocityCache.isValid()) {
+      velocityCache.set(EmbodiedAgent.super.velocity(t));
     }
-    return (Vector3D) cacher.get(Cache.VELOCITY);
+    return velocityCache.get();
   }
 
   @Override
   public void rotate(Ode4jEngine engine, Vector3D eulerAngles) {
     EmbodiedAgent.super.rotate(engine, eulerAngles);
-    cacheTime.put(Cache.BBOX, -1d);
-    cacheTime.put(Cache.VELOCITY, -1d);
+    cache.invalidateAll();
   }
 
   @Override
   public void translate(Ode4jEngine engine, Vector3D translation) {
     EmbodiedAgent.super.translate(engine, translation);
-    cacheTime.put(Cache.BBOX, -1d);
-    cacheTime.put(Cache.POSITION, -1d);
+    cache.invalidateAll();
   }
 
   @Override
   public void assemble(Ode4jEngine engine, Vector3D position) {
-    for (Cache cache : Cache.values()) {
-      cacheTime.put(cache, -1d);
-    }
+    cache.bind(engine::nOfSteps);
     double[] leftBackDownCenter =
             new double[]{
                     position.x() - voxelSideLength * (grid.length - 1) / 2,
@@ -116,159 +317,23 @@ public abstract class AbstractGridRobot implements EmbodiedAgent {
                     position.z() - voxelSideLength * (grid[0][0].length - 1) / 2
             };
     // assemble voxels
-    for (int x = 0; x < grid.length; ++x) {
-      for (int y = 0; y < grid[0].length; ++y) {
-        for (int z = 0; z < grid[0][0].length; ++z) {
-          if (Objects.nonNull(grid[x][y][z])) {
-            grid[x][y][z].assemble(
-                    engine,
-                    new Vector3D(
-                            leftBackDownCenter[0] + x * voxelSideLength,
-                            leftBackDownCenter[1] + y * voxelSideLength,
-                            leftBackDownCenter[2] + z * voxelSideLength));
-          }
-        }
-      }
+    for (int i = 0; i < voxels.length; ++i) {
+      voxels[i].assemble(
+              engine,
+              new Vector3D(
+                      leftBackDownCenter[0] + cells[i][0] * voxelSideLength,
+                      leftBackDownCenter[1] + cells[i][1] * voxelSideLength,
+                      leftBackDownCenter[2] + cells[i][2] * voxelSideLength));
     }
     // build intravoxel joints
-    for (int x = 0; x < grid.length; ++x) {
-      for (int y = 0; y < grid[0].length; ++y) {
-        for (int z = 0; z < grid[0][0].length; ++z) {
-          if (Objects.nonNull(grid[x][y][z])) {
-            if (x >= 1 && Objects.nonNull(grid[x - 1][y][z])) {
-              intraVoxelLocks.add(new UnorderedPair<>(new int[]{x - 1, y, z}, new int[]{x, y, z}));
-              engine.addFixedJoint(
-                      grid[x - 1][y][z].vertexBody(Voxel.Vertex.V100),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V000));
-              engine.addFixedJoint(
-                      grid[x - 1][y][z].vertexBody(Voxel.Vertex.V101),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V001));
-              engine.addFixedJoint(
-                      grid[x - 1][y][z].vertexBody(Voxel.Vertex.V110),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V010));
-              engine.addFixedJoint(
-                      grid[x - 1][y][z].vertexBody(Voxel.Vertex.V111),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V011));
-            }
-            if (y >= 1 && Objects.nonNull(grid[x][y - 1][z])) {
-              intraVoxelLocks.add(new UnorderedPair<>(new int[]{x, y - 1, z}, new int[]{x, y, z}));
-              engine.addFixedJoint(
-                      grid[x][y - 1][z].vertexBody(Voxel.Vertex.V010),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V000));
-              engine.addFixedJoint(
-                      grid[x][y - 1][z].vertexBody(Voxel.Vertex.V011),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V001));
-              engine.addFixedJoint(
-                      grid[x][y - 1][z].vertexBody(Voxel.Vertex.V110),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V100));
-              engine.addFixedJoint(
-                      grid[x][y - 1][z].vertexBody(Voxel.Vertex.V111),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V101));
-            }
-            if (z >= 1 && Objects.nonNull(grid[x][y][z - 1])) {
-              intraVoxelLocks.add(new UnorderedPair<>(new int[]{x, y, z - 1}, new int[]{x, y, z}));
-              engine.addFixedJoint(
-                      grid[x][y][z - 1].vertexBody(Voxel.Vertex.V001),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V000));
-              engine.addFixedJoint(
-                      grid[x][y][z - 1].vertexBody(Voxel.Vertex.V011),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V010));
-              engine.addFixedJoint(
-                      grid[x][y][z - 1].vertexBody(Voxel.Vertex.V101),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V100));
-              engine.addFixedJoint(
-                      grid[x][y][z - 1].vertexBody(Voxel.Vertex.V111),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V110));
-            }
-            if (x >= 1 && y >= 1 && Objects.nonNull(grid[x - 1][y - 1][z])) {
-              intraVoxelLocks.add(new UnorderedPair<>(new int[]{x - 1, y - 1, z}, new int[]{x, y, z}));
-              engine.addFixedJoint(
-                      grid[x - 1][y - 1][z].vertexBody(Voxel.Vertex.V110),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V000));
-              engine.addFixedJoint(
-                      grid[x - 1][y - 1][z].vertexBody(Voxel.Vertex.V111),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V001));
-            }
-            if (x >= 1 && z >= 1 && Objects.nonNull(grid[x - 1][y][z - 1])) {
-              intraVoxelLocks.add(new UnorderedPair<>(new int[]{x - 1, y, z - 1}, new int[]{x, y, z}));
-              engine.addFixedJoint(
-                      grid[x - 1][y][z - 1].vertexBody(Voxel.Vertex.V101),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V000));
-              engine.addFixedJoint(
-                      grid[x - 1][y][z - 1].vertexBody(Voxel.Vertex.V111),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V010));
-            }
-            if (y >= 1 && z >= 1 && Objects.nonNull(grid[x][y - 1][z - 1])) {
-              intraVoxelLocks.add(new UnorderedPair<>(new int[]{x, y - 1, z - 1}, new int[]{x, y, z}));
-              engine.addFixedJoint(
-                      grid[x][y - 1][z - 1].vertexBody(Voxel.Vertex.V011),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V000));
-              engine.addFixedJoint(
-                      grid[x][y - 1][z - 1].vertexBody(Voxel.Vertex.V111),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V100));
-            }
-            if (x >= 1 && y >= 1 && z >= 1 && Objects.nonNull(grid[x - 1][y - 1][z - 1])) {
-              intraVoxelLocks.add(new UnorderedPair<>(new int[]{x - 1, y - 1, z - 1}, new int[]{x, y, z}));
-              engine.addFixedJoint(
-                      grid[x - 1][y - 1][z - 1].vertexBody(Voxel.Vertex.V111),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V000));
-            }
-            if (x >= 1 && y < grid[0].length - 1 && Objects.nonNull(grid[x - 1][y + 1][z])) {
-              intraVoxelLocks.add(new UnorderedPair<>(new int[]{x - 1, y + 1, z}, new int[]{x, y, z}));
-              engine.addFixedJoint(
-                      grid[x - 1][y + 1][z].vertexBody(Voxel.Vertex.V100),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V010));
-              engine.addFixedJoint(
-                      grid[x - 1][y + 1][z].vertexBody(Voxel.Vertex.V101),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V011));
-            }
-            if (x >= 1 && z < grid[0][0].length - 1 && Objects.nonNull(grid[x - 1][y][z + 1])) {
-              intraVoxelLocks.add(new UnorderedPair<>(new int[]{x - 1, y, z + 1}, new int[]{x, y, z}));
-              engine.addFixedJoint(
-                      grid[x - 1][y][z + 1].vertexBody(Voxel.Vertex.V100),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V001));
-              engine.addFixedJoint(
-                      grid[x - 1][y][z + 1].vertexBody(Voxel.Vertex.V110),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V011));
-            }
-            if (y >= 1 && z < grid[0][0].length - 1 && Objects.nonNull(grid[x][y - 1][z + 1])) {
-              intraVoxelLocks.add(new UnorderedPair<>(new int[]{x, y - 1, z + 1}, new int[]{x, y, z}));
-              engine.addFixedJoint(
-                      grid[x][y - 1][z + 1].vertexBody(Voxel.Vertex.V010),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V001));
-              engine.addFixedJoint(
-                      grid[x][y - 1][z + 1].vertexBody(Voxel.Vertex.V110),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V101));
-            }
-            if (x >= 1
-                    && y >= 1
-                    && z < grid[0][0].length - 1
-                    && Objects.nonNull(grid[x - 1][y - 1][z + 1])) {
-              intraVoxelLocks.add(new UnorderedPair<>(new int[]{x - 1, y - 1, z + 1}, new int[]{x, y, z}));
-              engine.addFixedJoint(
-                      grid[x - 1][y - 1][z + 1].vertexBody(Voxel.Vertex.V110),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V001));
-            }
-            if (x >= 1
-                    && y < grid[0].length - 1
-                    && z < grid[0][0].length - 1
-                    && Objects.nonNull(grid[x - 1][y + 1][z + 1])) {
-              intraVoxelLocks.add(new UnorderedPair<>(new int[]{x - 1, y + 1, z + 1}, new int[]{x, y, z}));
-              engine.addFixedJoint(
-                      grid[x - 1][y + 1][z + 1].vertexBody(Voxel.Vertex.V100),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V011));
-            }
-            if (x < grid.length - 1
-                    && y < grid[0].length - 1
-                    && z < grid[0][0].length - 1
-                    && Objects.nonNull(grid[x + 1][y + 1][z + 1])) {
-              intraVoxelLocks.add(new UnorderedPair<>(new int[]{x + 1, y + 1, z + 1}, new int[]{x, y, z}));
-              engine.addFixedJoint(
-                      grid[x + 1][y + 1][z + 1].vertexBody(Voxel.Vertex.V000),
-                      grid[x][y][z].vertexBody(Voxel.Vertex.V111));
-            }
-          }
-        }
+    for (Adjacency adjacency : adjacencies) {
+      intraVoxelLocks.add(new UnorderedPair<>(cells[adjacency.neighbor()].clone(), cells[adjacency.voxel()].clone()));
+      Voxel neighbor = voxels[adjacency.neighbor()];
+      Voxel voxel = voxels[adjacency.voxel()];
+      for (int j = 0; j < adjacency.offset().vertices().length; ++j) {
+        engine.addFixedJoint(
+                neighbor.vertexBody(adjacency.offset().neighborVertices()[j]),
+                voxel.vertexBody(adjacency.offset().vertices()[j]));
       }
     }
   }
@@ -328,53 +393,165 @@ public abstract class AbstractGridRobot implements EmbodiedAgent {
     }
   }
 
-  public record GridRobotSnapshotDisplay(Voxel.VoxelSnapshotBase[][][] grid, List<ActionSnapshot> actions) implements GridRobotSnapshot {
+  // DISPLAY snapshot: only the outer hull of the grid, as one quad (four corners) per face, with the
+  // volume ratio of the voxel each face belongs to; the structure of the hull is in the topology
+  public record GridRobotSnapshotHull(
+      Vector3D position,
+      Vector3D velocity,
+      double mass,
+      BoundingBox boundingBox,
+      Topology topology,
+      float[] faceCorners,
+      float[] faceVolumeRatios)
+      implements BodySnapshot, InterpolableSnapshot<GridRobotSnapshotHull> {
+    // side, in cells, of the blocks of the grid whose faces are drawn as a single hexahedron when far
+    static final int CLUSTER_CELLS = 4;
+    // edges farther from the camera than this many times their length are not outlined, as with the
+    // 90 degrees field of view of the viewers the outline would be a few pixels around the faces
+    private static final double OUTLINE_DISTANCE_RATIO = 25d;
+    // clusters farther from the camera than this many times their diagonal are drawn as a single
+    // hexahedron, which is then a few pixels wide
+    private static final double BOX_DISTANCE_RATIO = 50d;
+
+    // shared by all the snapshots of a robot: the faces of cluster c are the ones in
+    // [faceStarts[c], faceStarts[c + 1]), its outline edges the pairs of corner indexes of edges in
+    // [edgeStarts[c], edgeStarts[c + 1]), and boxCorners[8 * c + 4x + 2y + z] the corner index of
+    // its hexahedron as indexed by Viewer.drawHexahedron; corner k of face f has index 4f + k
+    public record Topology(int[] faceStarts, int[] edgeStarts, int[] edges, int[] boxCorners) {
+      public int nOfClusters() {
+        return faceStarts.length - 1;
+      }
+    }
+
+    // largest displacement of a hull corner
+    @Override
+    public double poseDistance(BodySnapshot other) {
+      if (!(other instanceof GridRobotSnapshotHull hull) || hull.topology != topology) {
+        return BodySnapshot.super.poseDistance(other);
+      }
+      double distance = 0d;
+      for (int i = 0; i < faceCorners.length; i += 3) {
+        double dx = faceCorners[i] - hull.faceCorners[i];
+        double dy = faceCorners[i + 1] - hull.faceCorners[i + 1];
+        double dz = faceCorners[i + 2] - hull.faceCorners[i + 2];
+        distance = Math.max(distance, dx * dx + dy * dy + dz * dz);
+      }
+      return Math.sqrt(distance);
+    }
+
+    @Override
+    public GridRobotSnapshotHull interpolate(GridRobotSnapshotHull next, double alpha) {
+      if (topology != next.topology) {
+        return next;
+      }
+      float[] corners = new float[faceCorners.length];
+      for (int i = 0; i < corners.length; ++i) {
+        corners[i] = (float) InterpolableSnapshot.lerp(faceCorners[i], next.faceCorners[i], alpha);
+      }
+      float[] ratios = new float[faceVolumeRatios.length];
+      for (int i = 0; i < ratios.length; ++i) {
+        ratios[i] = (float) InterpolableSnapshot.lerp(faceVolumeRatios[i], next.faceVolumeRatios[i], alpha);
+      }
+      return new GridRobotSnapshotHull(
+          InterpolableSnapshot.lerp(position, next.position, alpha),
+          InterpolableSnapshot.lerp(velocity, next.velocity, alpha),
+          next.mass,
+          new BoundingBox(
+              InterpolableSnapshot.lerp(boundingBox.min(), next.boundingBox.min(), alpha),
+              InterpolableSnapshot.lerp(boundingBox.max(), next.boundingBox.max(), alpha)),
+          topology,
+          corners,
+          ratios);
+    }
+
+    private Vector3D corner(int index) {
+      return new Vector3D(faceCorners[3 * index], faceCorners[3 * index + 1], faceCorners[3 * index + 2]);
+    }
+
     @Override
     public void draw(Viewer viewer) {
-      drawGrid(viewer);
-      //TODO ACTIONS!
+      Vector3D camera = viewer.cameraPosition();
+      for (int cluster = 0; cluster < topology.nOfClusters(); ++cluster) {
+        final int firstFace = topology.faceStarts()[cluster];
+        final int endFace = topology.faceStarts()[cluster + 1];
+        if (Objects.nonNull(camera)) {
+          Vector3D[] box = new Vector3D[8];
+          for (int h = 0; h < 8; ++h) {
+            box[h] = corner(topology.boxCorners()[8 * cluster + h]);
+          }
+          if (camera.vectorDistance(box[0].sum(box[7]).times(.5)).norm()
+              > BOX_DISTANCE_RATIO * box[0].vectorDistance(box[7]).norm()) {
+            double volumeRatio = 0d;
+            for (int face = firstFace; face < endFace; ++face) {
+              volumeRatio += faceVolumeRatios[face];
+            }
+            viewer.drawHexahedron(box, Voxel.VoxelSnapshot.volumeColor(volumeRatio / (endFace - firstFace)), null);
+            continue;
+          }
+        }
+        for (int face = firstFace; face < endFace; ++face) {
+          Color color = Voxel.VoxelSnapshot.volumeColor(faceVolumeRatios[face]);
+          Vector3D c0 = corner(4 * face);
+          Vector3D c2 = corner(4 * face + 2);
+          viewer.drawTriangle(c0, corner(4 * face + 1), c2, color);
+          viewer.drawTriangle(c0, c2, corner(4 * face + 3), color);
+        }
+        for (int edge = topology.edgeStarts()[cluster]; edge < topology.edgeStarts()[cluster + 1]; ++edge) {
+          Vector3D p1 = corner(topology.edges()[2 * edge]);
+          Vector3D p2 = corner(topology.edges()[2 * edge + 1]);
+          if (Objects.isNull(camera)
+              || camera.vectorDistance(p1.sum(p2).times(.5)).norm()
+                  <= OUTLINE_DISTANCE_RATIO * p1.vectorDistance(p2).norm()) {
+            viewer.drawLine(p1, p2, Color.BLACK);
+          }
+        }
+      }
     }
   }
 
+  private GridRobotSnapshotHull hullSnapshot(double t) {
+    float[] faceCorners = new float[12 * hullFaces.size()];
+    float[] faceVolumeRatios = new float[hullFaces.size()];
+    int index = 0;
+    for (int face = 0; face < hullFaces.size(); ++face) {
+      HullFace hullFace = hullFaces.get(face);
+      Voxel voxel = grid[hullFace.x()][hullFace.y()][hullFace.z()];
+      for (Voxel.Vertex vertex : List.of(hullFace.side().v1, hullFace.side().v2, hullFace.side().v3, hullFace.side().v4)) {
+        Vector3D corner = voxel.outerCorner(vertex);
+        faceCorners[index++] = (float) corner.x();
+        faceCorners[index++] = (float) corner.y();
+        faceCorners[index++] = (float) corner.z();
+      }
+      faceVolumeRatios[face] = (float) voxel.volumeRatio(t);
+    }
+    return new GridRobotSnapshotHull(
+        position(t),
+        velocity(t),
+        bodyParts().stream().mapToDouble(Body::mass).sum(),
+        boundingBox(t),
+        hullTopology,
+        faceCorners,
+        faceVolumeRatios);
+  }
+
   @Override
   public BodySnapshot snapshot(Ode4jEngine engine, Ode4jEngine.Mode mode) {
     switch (mode) {
       case COMPUTATION: {
         Voxel.VoxelSnapshotBase[][][] snapshotGrid = new Voxel.VoxelSnapshotBase[grid.length][grid[0].length][grid[0][0].length];
-        for (int x = 0; x < grid.length; ++x) {
-          for (int y = 0; y < grid[0].length; ++y) {
-            for (int z = 0; z < grid[0][0].length; ++z) {
-              if (Objects.nonNull(grid[x][y][z])) {
-                snapshotGrid[x][y][z] = (Voxel.VoxelSnapshotBase) grid[x][y][z].snapshot(engine, Ode4jEngine.Mode.COMPUTATION);
-              }
-            }
-          }
+        for (int i = 0; i < voxels.length; ++i) {
+          snapshotGrid[cells[i][0]][cells[i][1]][cells[i][2]] =
+                  (Voxel.VoxelSnapshotBase) voxels[i].snapshot(engine, Ode4jEngine.Mode.COMPUTATION);
         }
         return new GridRobotSnapshotComputation(snapshotGrid);
       }
-      case DISPLAY: {
-        Voxel.VoxelSnapshotBase[][][] snapshotGrid = new Voxel.VoxelSnapshotBase[grid.length][grid[0].length][grid[0][0].length];
-        for (int x = 0; x < grid.length; ++x) {
-          for (int y = 0; y < grid[0].length; ++y) {
-            for (int z = 0; z < grid[0][0].length; ++z) {
-              if (Objects.nonNull(grid[x][y][z])) {
-                snapshotGrid[x][y][z] = (Voxel.VoxelSnapshotBase) grid[x][y][z].snapshot(engine, Ode4jEngine.Mode.DISPLAY);
-              }
-            }
-          }
-        }
-        return new GridRobotSnapshotDisplay(snapshotGrid, List.of()); // TODO ACTIONS!
-      }
+      case DISPLAY:
+        return hullSnapshot(engine.t());
       case DEBUG: {
         Voxel.VoxelSnapshotDebug[][][] snapshotGrid = new Voxel.VoxelSnapshotDebug[grid.length][grid[0].length][grid[0][0].length];
-        for (int x = 0; x < grid.length; ++x) {
-          for (int y = 0; y < grid[0].length; ++y) {
-            for (int z = 0; z < grid[0][0].length; ++z) {
-              if (Objects.nonNull(grid[x][y][z])) {
-                snapshotGrid[x][y][z] = (Voxel.VoxelSnapshotDebug) grid[x][y][z].snapshot(engine, Ode4jEngine.Mode.DEBUG);
-              }
-            }
-          }
+        for (int i = 0; i < voxels.length; ++i) {
+          snapshotGrid[cells[i][0]][cells[i][1]][cells[i][2]] =
+                  (Voxel.VoxelSnapshotDebug) voxels[i].snapshot(engine, Ode4jEngine.Mode.DEBUG);
         }
         return new GridRobotSnapshotDebug(snapshotGrid, new HashSet<>(intraVoxelLocks), List.of()); // TODO ACTIONS!
       }
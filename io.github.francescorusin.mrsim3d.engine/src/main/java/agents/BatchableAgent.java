@@ -0,0 +1,35 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package agents;
+
+import actions.Action;
+import engine.Ode4jEngine;
+import java.util.List;
+
+// agent whose control step can be split in two halves, so that the engine can have the controllers
+// of several agents evaluated together between the two
+public interface BatchableAgent extends EmbodiedAgent {
+  // reads the sensors and submits the controller input; returns false if the controller cannot be
+  // batched, in which case the engine falls back to act
+  boolean submitControllerInput(Ode4jEngine engine);
+
+  // reads the controller output and actuates the agent
+  List<Action> applyControllerOutput(Ode4jEngine engine);
+}
@@ -0,0 +1,265 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package agents;
+
+import bodies.Voxel;
+import geometry.Vector3D;
+import java.util.List;
+import java.util.Objects;
+import org.ode4j.math.DVector3C;
+import sensors.AngleSensor;
+import sensors.Sensor;
+import sensors.SideCompressionSensor;
+import sensors.VelocitySensor;
+import sensors.VolumeRatioSensor;
+
+// readings of the stateless voxel sensors (angle, velocity, volume ratio and side compression)
+// computed for a set of voxels at once; all arrays are laid out with one voxel per position, so
+// that the kernel can process several voxels per instruction
+final class BulkSensing {
+  interface Kernel {
+    // fills the volume ratio, compression, axes and local velocity of the voxels in [from, to)
+    void compute(BulkSensing s, int from, int to);
+  }
+
+  static final Voxel.Vertex[] VERTICES = Voxel.Vertex.values();
+  static final Voxel.Edge[] EDGES = Voxel.Edge.values();
+  static final Voxel.Tetrahedron[] TETRAHEDRA = Voxel.Tetrahedron.values();
+  static final Kernel KERNEL = kernel();
+
+  final int n;
+  private final Voxel[] voxels;
+  private final SideCompressionSensor[] compressionSensors;
+  // inputs; vertex coordinates are vertex-major, i.e., the one of vertex v of voxel i is at v * n + i
+  final double[] vertexX;
+  final double[] vertexY;
+  final double[] vertexZ;
+  final double[] minVolume;
+  final double[] maxVolume;
+  final double[] minRatio;
+  final double[] maxRatio;
+  // world velocity on input, velocity in the frame of the voxel on output
+  final double[] velocityX;
+  final double[] velocityY;
+  final double[] velocityZ;
+  // outputs; compression is edge-major, axes hold the row-major rotation matrix entry-major
+  final double[] volumeRatio;
+  final double[] compression;
+  final double[] axes;
+  // scratch of the kernels, one per voxel
+  final double[] inverseAverage;
+  private final double[] angle;
+
+  BulkSensing(List<Voxel> voxels) {
+    this.voxels = voxels.toArray(Voxel[]::new);
+    n = this.voxels.length;
+    compressionSensors = new SideCompressionSensor[n];
+    vertexX = new double[VERTICES.length * n];
+    vertexY = new double[VERTICES.length * n];
+    vertexZ = new double[VERTICES.length * n];
+    minVolume = new double[n];
+    maxVolume = new double[n];
+    minRatio = new double[n];
+    maxRatio = new double[n];
+    velocityX = new double[n];
+    velocityY = new double[n];
+    velocityZ = new double[n];
+    volumeRatio = new double[n];
+    compression = new double[EDGES.length * n];
+    axes = new double[9 * n];
+    inverseAverage = new double[n];
+    angle = new double[3 * n];
+    for (int i = 0; i < n; ++i) {
+      minVolume[i] = this.voxels[i].minVolume();
+      maxVolume[i] = this.voxels[i].maxVolume();
+      // the range of the first side compression sensor is the one computed in bulk
+      compressionSensors[i] =
+          this.voxels[i].sensors().stream()
+              .filter(s -> s instanceof SideCompressionSensor)
+              .map(s -> (SideCompressionSensor) s)
+              .findFirst()
+              .orElse(null);
+      if (Objects.nonNull(compressionSensors[i])) {
+        minRatio[i] = compressionSensors[i].minRatio();
+        maxRatio[i] = compressionSensors[i].maxRatio();
+      } else {
+        minRatio[i] = 0d;
+        maxRatio[i] = 2d;
+      }
+    }
+  }
+
+  static boolean isBulk(Sensor sensor) {
+    return sensor instanceof AngleSensor
+        || sensor instanceof VelocitySensor
+        || sensor instanceof VolumeRatioSensor
+        || sensor instanceof SideCompressionSensor;
+  }
+
+  void update(double t) {
+    for (int i = 0; i < n; ++i) {
+      for (Voxel.Vertex v : VERTICES) {
+        DVector3C position = voxels[i].vertexBody(v).dBody().getPosition();
+        vertexX[v.ordinal() * n + i] = position.get0();
+        vertexY[v.ordinal() * n + i] = position.get1();
+        vertexZ[v.ordinal() * n + i] = position.get2();
+      }
+      Vector3D velocity = voxels[i].velocity(t);
+      velocityX[i] = velocity.x();
+      velocityY[i] = velocity.y();
+      velocityZ[i] = velocity.z();
+    }
+    KERNEL.compute(this, 0, n);
+    // Euler angles of the axes, in the convention of Orientation.eulerAngles
+    for (int i = 0; i < n; ++i) {
+      angle[i] = Math.atan2(axes[7 * n + i], axes[8 * n + i]) / Math.PI;
+      angle[n + i] = Math.asin(-axes[6 * n + i]) / Math.PI;
+      angle[2 * n + i] = Math.atan2(axes[3 * n + i], axes[i]) / Math.PI;
+    }
+  }
+
+  // writes the readings of the sensor of the i-th voxel, if computed in bulk; sensors attached to
+  // the voxel but sensing another body are left to sense on their own
+  boolean write(Sensor sensor, int i, double[] out, int offset) {
+    switch (sensor) {
+      case AngleSensor a when a.body() == voxels[i] -> {
+        out[offset] = angle[i];
+        out[offset + 1] = angle[n + i];
+        out[offset + 2] = angle[2 * n + i];
+      }
+      case VelocitySensor v when v.body() == voxels[i] -> {
+        out[offset] = velocityX[i];
+        out[offset + 1] = velocityY[i];
+        out[offset + 2] = velocityZ[i];
+      }
+      case VolumeRatioSensor r when r.body() == voxels[i] -> out[offset] = volumeRatio[i];
+      case SideCompressionSensor s when s == compressionSensors[i] -> {
+        for (int e = 0; e < EDGES.length; ++e) {
+          out[offset + e] = compression[e * n + i];
+        }
+      }
+      default -> {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Kernel kernel() {
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+      try {
+        return (Kernel)
+            Class.forName("agents.VectorBulkSensingKernel").getDeclaredConstructor().newInstance();
+      } catch (ReflectiveOperationException | LinkageError e) {
+        // the scalar kernel is used instead
+      }
+    }
+    return new ScalarKernel();
+  }
+
+  // the same computations of VoxelGeometry and of the sensors, one voxel at a time
+  static final class ScalarKernel implements Kernel {
+    @Override
+    public void compute(BulkSensing s, int from, int to) {
+      final int n = s.n;
+      final double[] x = s.vertexX;
+      final double[] y = s.vertexY;
+      final double[] z = s.vertexZ;
+      for (int i = from; i < to; ++i) {
+        double volume = 0d;
+        for (Voxel.Tetrahedron t : TETRAHEDRA) {
+          int o = t.v1.ordinal() * n + i;
+          int a = t.v2.ordinal() * n + i;
+          int b = t.v3.ordinal() * n + i;
+          int c = t.v4.ordinal() * n + i;
+          double ax = x[a] - x[o], ay = y[a] - y[o], az = z[a] - z[o];
+          double bx = x[b] - x[o], by = y[b] - y[o], bz = z[b] - z[o];
+          double cx = x[c] - x[o], cy = y[c] - y[o], cz = z[c] - z[o];
+          volume += Math.abs((ay * bz - az * by) * cx + (az * bx - ax * bz) * cy + (ax * by - ay * bx) * cz);
+        }
+        volume /= 6d;
+        s.volumeRatio[i] = 2 * (volume - s.minVolume[i]) / (s.maxVolume[i] - s.minVolume[i]) - 1d;
+        double inverseAverage = 1d / Math.cbrt(volume);
+        double lo = s.minRatio[i];
+        double hi = s.maxRatio[i];
+        for (Voxel.Edge e : EDGES) {
+          int v1 = e.v1.ordinal() * n + i;
+          int v2 = e.v2.ordinal() * n + i;
+          double dx = x[v2] - x[v1], dy = y[v2] - y[v1], dz = z[v2] - z[v1];
+          double ratio = Math.sqrt(dx * dx + dy * dy + dz * dz) * inverseAverage;
+          s.compression[e.ordinal() * n + i] =
+              ratio < lo ? lo : (ratio > hi ? hi : 2 * (ratio - lo) / (hi - lo) - 1d);
+        }
+        // axes from opposite sides, orthonormalized as in VoxelGeometry
+        double a1x = sideDifference(x, n, i, Voxel.Side.RIGHT, Voxel.Side.LEFT);
+        double a1y = sideDifference(y, n, i, Voxel.Side.RIGHT, Voxel.Side.LEFT);
+        double a1z = sideDifference(z, n, i, Voxel.Side.RIGHT, Voxel.Side.LEFT);
+        double a2x = sideDifference(x, n, i, Voxel.Side.FRONT, Voxel.Side.BACK);
+        double a2y = sideDifference(y, n, i, Voxel.Side.FRONT, Voxel.Side.BACK);
+        double a2z = sideDifference(z, n, i, Voxel.Side.FRONT, Voxel.Side.BACK);
+        double a3x = sideDifference(x, n, i, Voxel.Side.UP, Voxel.Side.DOWN);
+        double a3y = sideDifference(y, n, i, Voxel.Side.UP, Voxel.Side.DOWN);
+        double a3z = sideDifference(z, n, i, Voxel.Side.UP, Voxel.Side.DOWN);
+        double inverseNorm = 1d / Math.sqrt(a1x * a1x + a1y * a1y + a1z * a1z);
+        a1x *= inverseNorm;
+        a1y *= inverseNorm;
+        a1z *= inverseNorm;
+        double projection = a1x * a2x + a1y * a2y + a1z * a2z;
+        a2x -= a1x * projection;
+        a2y -= a1y * projection;
+        a2z -= a1z * projection;
+        inverseNorm = 1d / Math.sqrt(a2x * a2x + a2y * a2y + a2z * a2z);
+        a2x *= inverseNorm;
+        a2y *= inverseNorm;
+        a2z *= inverseNorm;
+        double projection1 = a1x * a3x + a1y * a3y + a1z * a3z;
+        double projection2 = a2x * a3x + a2y * a3y + a2z * a3z;
+        a3x = a3x - a1x * projection1 - a2x * projection2;
+        a3y = a3y - a1y * projection1 - a2y * projection2;
+        a3z = a3z - a1z * projection1 - a2z * projection2;
+        inverseNorm = 1d / Math.sqrt(a3x * a3x + a3y * a3y + a3z * a3z);
+        a3x *= inverseNorm;
+        a3y *= inverseNorm;
+        a3z *= inverseNorm;
+        // row-major rotation matrix, whose columns are the axes
+        s.axes[i] = a1x;
+        s.axes[n + i] = a2x;
+        s.axes[2 * n + i] = a3x;
+        s.axes[3 * n + i] = a1y;
+        s.axes[4 * n + i] = a2y;
+        s.axes[5 * n + i] = a3y;
+        s.axes[6 * n + i] = a1z;
+        s.axes[7 * n + i] = a2z;
+        s.axes[8 * n + i] = a3z;
+        double vx = s.velocityX[i], vy = s.velocityY[i], vz = s.velocityZ[i];
+        s.velocityX[i] = a1x * vx + a1y * vy + a1z * vz;
+        s.velocityY[i] = a2x * vx + a2y * vy + a2z * vz;
+        s.velocityZ[i] = a3x * vx + a3y * vy + a3z * vz;
+      }
+    }
+
+    private static double sideDifference(double[] c, int n, int i, Voxel.Side positive, Voxel.Side negative) {
+      return c[positive.v1.ordinal() * n + i] + c[positive.v2.ordinal() * n + i]
+          + c[positive.v3.ordinal() * n + i] + c[positive.v4.ordinal() * n + i]
+          - c[negative.v1.ordinal() * n + i] - c[negative.v2.ordinal() * n + i]
+          - c[negative.v3.ordinal() * n + i] - c[negative.v4.ordinal() * n + i];
+    }
+  }
+}
@@ -21,16 +21,21 @@ package agents;
 
 import actions.Action;
 import bodies.Voxel;
+import controllers.BatchedMultiLayerPerceptron;
 import engine.Ode4jEngine;
 import io.github.ericmedvet.jsdynsym.core.numerical.NumericalDynamicalSystem;
 import java.util.*;
 
 import sensors.Sensor;
 
-public class CentralizedGridRobot extends AbstractGridRobot {
+public class CentralizedGridRobot extends AbstractGridRobot implements BatchableAgent {
   private final int commChannels;
   private final NumericalDynamicalSystem<?> controller;
+  // when present, used in place of the controller and evaluated together with the rest of its batch
+  private final BatchedMultiLayerPerceptron.Member batchedController;
   private final double[] previousStepSensorOutputs;
+  // offset of the first reading of every voxel in the controller input
+  private final int[] sensorOffsets;
 
   public CentralizedGridRobot(
       Voxel[][][] grid,
@@ -38,25 +43,48 @@ public class CentralizedGridRobot extends AbstractGridRobot {
       double voxelMass,
       int commChannels,
       NumericalDynamicalSystem<?> controller) {
+    this(grid, voxelSideLength, voxelMass, commChannels, controller, null);
+    controller.checkDimension(previousStepSensorOutputs.length, nOfControllerOutputs());
+  }
+
+  public CentralizedGridRobot(
+      Voxel[][][] grid,
+      double voxelSideLength,
+      double voxelMass,
+      int commChannels,
+      BatchedMultiLayerPerceptron.Member batchedController) {
+    this(grid, voxelSideLength, voxelMass, commChannels, null, batchedController);
+    if (batchedController.nOfInputs() != previousStepSensorOutputs.length
+        || batchedController.nOfOutputs() != nOfControllerOutputs()) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Wrong batched controller dimensions: %d->%d instead of %d->%d",
+              batchedController.nOfInputs(),
+              batchedController.nOfOutputs(),
+              previousStepSensorOutputs.length,
+              nOfControllerOutputs()));
+    }
+  }
+
+  private CentralizedGridRobot(
+      Voxel[][][] grid,
+      double voxelSideLength,
+      double voxelMass,
+      int commChannels,
+      NumericalDynamicalSystem<?> controller,
+      BatchedMultiLayerPerceptron.Member batchedController) {
     super(grid, voxelSideLength, voxelMass);
     this.commChannels = commChannels;
-    this.previousStepSensorOutputs =
-        new double
-            [Arrays.stream(grid)
-                .flatMap(aa -> Arrays.stream(aa).flatMap(Arrays::stream))
-                .filter(Objects::nonNull)
-                .mapToInt(v -> v.sensors().stream().mapToInt(Sensor::outputSize).sum())
-                .sum()];
+    this.sensorOffsets = new int[voxels.length];
+    int nOfInputs = 0;
+    for (int i = 0; i < voxels.length; ++i) {
+      sensorOffsets[i] = nOfInputs;
+      nOfInputs += voxels[i].sensors().stream().mapToInt(Sensor::outputSize).sum();
+    }
+    this.previousStepSensorOutputs = new double[nOfInputs];
     Arrays.fill(previousStepSensorOutputs, 0d);
-    controller.checkDimension(
-        previousStepSensorOutputs.length,
-        ((int)
-                Arrays.stream(grid)
-                    .flatMap(aa -> Arrays.stream(aa).flatMap(Arrays::stream))
-                    .filter(Objects::nonNull)
-                    .count()
-            * (12 + 6 * commChannels)));
     this.controller = controller;
+    this.batchedController = batchedController;
   }
 
   public CentralizedGridRobot(
@@ -76,6 +104,19 @@ public class CentralizedGridRobot extends AbstractGridRobot {
     this(grid, Voxel.DEFAULT_SIDE_LENGTH, Voxel.DEFAULT_MASS, controller);
   }
 
+  public CentralizedGridRobot(
+      Voxel[][][] grid, int commChannels, BatchedMultiLayerPerceptron.Member batchedController) {
+    this(grid, Voxel.DEFAULT_SIDE_LENGTH, Voxel.DEFAULT_MASS, commChannels, batchedController);
+  }
+
+  public CentralizedGridRobot(Voxel[][][] grid, BatchedMultiLayerPerceptron.Member batchedController) {
+    this(grid, 0, batchedController);
+  }
+
+  private int nOfControllerOutputs() {
+    return voxels.length * (12 + 6 * commChannels);
+  }
+
   // TEMPORARY! TODO REMOVE THIS ABOMINATION!
   public NumericalDynamicalSystem<?> getController() {
     return this.controller;
@@ -83,40 +124,47 @@ public class CentralizedGridRobot extends AbstractGridRobot {
 
   @Override
   public List<Action> act(Ode4jEngine engine) {
-    EnumMap<Voxel.Edge, Double> controlMap = new EnumMap<>(Voxel.Edge.class);
-    int sensorIndex = 0;
-    for (Voxel[][] voxelMatrix : grid) {
-      for (Voxel[] voxelRow : voxelMatrix) {
-        for (Voxel voxel : voxelRow) {
-          if (Objects.nonNull(voxel)) {
-            for (Sensor s : voxel.sensors()) {
-              System.arraycopy(
-                  s.sense(engine), 0, previousStepSensorOutputs, sensorIndex, s.outputSize());
-              sensorIndex += s.outputSize();
-            }
-          }
-        }
-      }
+    readSensors(engine);
+    double[] controllerOutput =
+        Objects.isNull(batchedController)
+            ? controller.step(engine.t(), previousStepSensorOutputs)
+            : batchedController.step(engine.t(), previousStepSensorOutputs);
+    return actuate(engine, controllerOutput);
+  }
+
+  @Override
+  public boolean submitControllerInput(Ode4jEngine engine) {
+    if (Objects.isNull(batchedController)) {
+      return false;
     }
-    double[] controllerOutput = controller.step(engine.t(), previousStepSensorOutputs);
+    readSensors(engine);
+    batchedController.submit(engine.t(), previousStepSensorOutputs);
+    return true;
+  }
+
+  @Override
+  public List<Action> applyControllerOutput(Ode4jEngine engine) {
+    return actuate(engine, batchedController.output());
+  }
+
+  private void readSensors(Ode4jEngine engine) {
+    readSensors(engine, previousStepSensorOutputs, sensorOffsets);
+  }
+
+  private List<Action> actuate(Ode4jEngine engine, double[] controllerOutput) {
+    EnumMap<Voxel.Edge, Double> controlMap = new EnumMap<>(Voxel.Edge.class);
     int index = 0;
     List<Action> outputActions = new ArrayList<>();
-    for (Voxel[][] voxelMatrix : grid) {
-      for (Voxel[] voxelRow : voxelMatrix) {
-        for (Voxel voxel : voxelRow) {
-          if (Objects.nonNull(voxel)) {
-            for (Voxel.Edge e : Voxel.Edge.values()) {
-              controlMap.put(e, controllerOutput[index++]);
-            }
-            voxel.actOnInput(controlMap);
-            for (int channel = 0; channel < commChannels; ++channel) {
-              outputActions.addAll(
-                  voxel.emitSignals(
-                      engine, channel, Arrays.copyOfRange(controllerOutput, index, index + 6)));
-              index += 6;
-            }
-          }
-        }
+    for (Voxel voxel : voxels) {
+      for (Voxel.Edge e : Voxel.Edge.values()) {
+        controlMap.put(e, controllerOutput[index++]);
+      }
+      voxel.actOnInput(controlMap);
+      for (int channel = 0; channel < commChannels; ++channel) {
+        outputActions.addAll(
+            voxel.emitSignals(
+                engine, channel, Arrays.copyOfRange(controllerOutput, index, index + 6)));
+        index += 6;
       }
     }
     return outputActions;
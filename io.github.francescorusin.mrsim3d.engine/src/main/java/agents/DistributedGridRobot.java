@@ -0,0 +1,137 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package agents;
+
+import actions.Action;
+import bodies.Voxel;
+import controllers.BatchedMultiLayerPerceptron;
+import engine.Ode4jEngine;
+import java.util.*;
+
+import sensors.Sensor;
+
+// every voxel is driven by its own copy of the same controller, fed with its own sensors (near
+// field communication ones included, if any); since all the copies share the weights, the inputs
+// of all the voxels are evaluated as a single matrix product, and the number of parameters does not
+// depend on the size of the robot
+public class DistributedGridRobot extends AbstractGridRobot implements BatchableAgent {
+  private final int commChannels;
+  private final int nOfVoxelInputs;
+  private final BatchedMultiLayerPerceptron.Member[] controllers;
+  // sensor readings of all the voxels, one block of nOfVoxelInputs per voxel
+  private final double[] sensorOutputs;
+  private final int[] sensorOffsets;
+
+  public DistributedGridRobot(
+      Voxel[][][] grid,
+      double voxelSideLength,
+      double voxelMass,
+      int commChannels,
+      BatchedMultiLayerPerceptron.Weights controller,
+      double stepT) {
+    super(grid, voxelSideLength, voxelMass);
+    if (voxels.length == 0) {
+      throw new IllegalArgumentException("Attempted to build a distributed robot with no voxels");
+    }
+    this.commChannels = commChannels;
+    this.nOfVoxelInputs = nOfVoxelInputs(voxels[0]);
+    for (Voxel voxel : voxels) {
+      if (nOfVoxelInputs(voxel) != nOfVoxelInputs) {
+        throw new IllegalArgumentException(
+            String.format(
+                "Voxels of a distributed robot must have the same number of sensor readings: found %d and %d",
+                nOfVoxelInputs,
+                nOfVoxelInputs(voxel)));
+      }
+    }
+    BatchedMultiLayerPerceptron batch = controller.batch();
+    if (batch.nOfInputs() != nOfVoxelInputs || batch.nOfOutputs() != nOfVoxelOutputs(commChannels)) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Wrong voxel controller dimensions: %d->%d instead of %d->%d",
+              batch.nOfInputs(),
+              batch.nOfOutputs(),
+              nOfVoxelInputs,
+              nOfVoxelOutputs(commChannels)));
+    }
+    this.controllers = new BatchedMultiLayerPerceptron.Member[voxels.length];
+    this.sensorOffsets = new int[voxels.length];
+    for (int i = 0; i < voxels.length; ++i) {
+      controllers[i] = batch.member(controller, stepT);
+      sensorOffsets[i] = i * nOfVoxelInputs;
+    }
+    this.sensorOutputs = new double[voxels.length * nOfVoxelInputs];
+  }
+
+  public DistributedGridRobot(
+      Voxel[][][] grid, int commChannels, BatchedMultiLayerPerceptron.Weights controller, double stepT) {
+    this(grid, Voxel.DEFAULT_SIDE_LENGTH, Voxel.DEFAULT_MASS, commChannels, controller, stepT);
+  }
+
+  public DistributedGridRobot(Voxel[][][] grid, int commChannels, BatchedMultiLayerPerceptron.Weights controller) {
+    this(grid, commChannels, controller, 0d);
+  }
+
+  public static int nOfVoxelInputs(Voxel voxel) {
+    return voxel.sensors().stream().mapToInt(Sensor::outputSize).sum();
+  }
+
+  // one control input per edge, plus one signal per side and channel
+  public static int nOfVoxelOutputs(int commChannels) {
+    return Voxel.Edge.values().length + Voxel.Side.values().length * commChannels;
+  }
+
+  @Override
+  public List<Action> act(Ode4jEngine engine) {
+    submitControllerInput(engine);
+    return applyControllerOutput(engine);
+  }
+
+  @Override
+  public boolean submitControllerInput(Ode4jEngine engine) {
+    readSensors(engine, sensorOutputs, sensorOffsets);
+    for (int i = 0; i < voxels.length; ++i) {
+      controllers[i].submit(engine.t(), sensorOutputs, sensorOffsets[i]);
+    }
+    return true;
+  }
+
+  // the first output request evaluates the inputs of all the voxels at once
+  @Override
+  public List<Action> applyControllerOutput(Ode4jEngine engine) {
+    EnumMap<Voxel.Edge, Double> controlMap = new EnumMap<>(Voxel.Edge.class);
+    List<Action> outputActions = new ArrayList<>();
+    for (int i = 0; i < voxels.length; ++i) {
+      double[] controllerOutput = controllers[i].output();
+      int index = 0;
+      for (Voxel.Edge e : Voxel.Edge.values()) {
+        controlMap.put(e, controllerOutput[index++]);
+      }
+      voxels[i].actOnInput(controlMap);
+      for (int channel = 0; channel < commChannels; ++channel) {
+        outputActions.addAll(
+            voxels[i].emitSignals(
+                engine, channel, Arrays.copyOfRange(controllerOutput, index, index + Voxel.Side.values().length)));
+        index += Voxel.Side.values().length;
+      }
+    }
+    return outputActions;
+  }
+}
@@ -115,7 +115,7 @@ public class SingleVoxelAgent extends Voxel implements EmbodiedAgent {
   public List<Action> act(Ode4jEngine engine) {
     int pos = 0;
     for (Sensor s : sensors()) {
-      System.arraycopy(s.sense(engine), 0, previousStepSensorOutputs, pos, s.outputSize());
+      s.sense(engine, previousStepSensorOutputs, pos);
       pos += s.outputSize();
     }
     double[] controllerOutput = controller.step(engine.t(), previousStepSensorOutputs);
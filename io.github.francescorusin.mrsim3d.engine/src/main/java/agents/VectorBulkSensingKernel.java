@@ -0,0 +1,146 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package agents;
+
+import bodies.Voxel;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// the scalar kernel with one voxel per lane, performing the same operations in the same order; only
+// built with the vector profile and only loaded by BulkSensing when the jdk.incubator.vector module
+// is resolved, the remainder of the voxels goes to the scalar kernel
+final class VectorBulkSensingKernel implements BulkSensing.Kernel {
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+  private final BulkSensing.Kernel tail = new BulkSensing.ScalarKernel();
+
+  @Override
+  public void compute(BulkSensing s, int from, int to) {
+    final int n = s.n;
+    final double[] x = s.vertexX;
+    final double[] y = s.vertexY;
+    final double[] z = s.vertexZ;
+    final int bound = from + SPECIES.loopBound(to - from);
+    int i = from;
+    for (; i < bound; i += SPECIES.length()) {
+      DoubleVector volume = DoubleVector.zero(SPECIES);
+      for (Voxel.Tetrahedron t : BulkSensing.TETRAHEDRA) {
+        int o = t.v1.ordinal() * n + i;
+        int a = t.v2.ordinal() * n + i;
+        int b = t.v3.ordinal() * n + i;
+        int c = t.v4.ordinal() * n + i;
+        DoubleVector ox = load(x, o), oy = load(y, o), oz = load(z, o);
+        DoubleVector ax = load(x, a).sub(ox), ay = load(y, a).sub(oy), az = load(z, a).sub(oz);
+        DoubleVector bx = load(x, b).sub(ox), by = load(y, b).sub(oy), bz = load(z, b).sub(oz);
+        DoubleVector cx = load(x, c).sub(ox), cy = load(y, c).sub(oy), cz = load(z, c).sub(oz);
+        volume = volume.add(
+            ay.mul(bz).sub(az.mul(by)).mul(cx)
+                .add(az.mul(bx).sub(ax.mul(bz)).mul(cy))
+                .add(ax.mul(by).sub(ay.mul(bx)).mul(cz))
+                .abs());
+      }
+      volume = volume.div(6d);
+      DoubleVector minVolume = load(s.minVolume, i);
+      volume.sub(minVolume).mul(2d).div(load(s.maxVolume, i).sub(minVolume)).sub(1d)
+          .intoArray(s.volumeRatio, i);
+      // VectorOperators.CBRT may differ from Math.cbrt in the last place, so the cube root is taken
+      // lane by lane to keep the readings identical to the ones of the scalar kernel
+      volume.intoArray(s.inverseAverage, i);
+      for (int l = i; l < i + SPECIES.length(); ++l) {
+        s.inverseAverage[l] = 1d / Math.cbrt(s.inverseAverage[l]);
+      }
+      DoubleVector inverseAverage = load(s.inverseAverage, i);
+      DoubleVector lo = load(s.minRatio, i);
+      DoubleVector hi = load(s.maxRatio, i);
+      DoubleVector span = hi.sub(lo);
+      for (Voxel.Edge e : BulkSensing.EDGES) {
+        int v1 = e.v1.ordinal() * n + i;
+        int v2 = e.v2.ordinal() * n + i;
+        DoubleVector dx = load(x, v2).sub(load(x, v1));
+        DoubleVector dy = load(y, v2).sub(load(y, v1));
+        DoubleVector dz = load(z, v2).sub(load(z, v1));
+        DoubleVector ratio = dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz)).sqrt().mul(inverseAverage);
+        ratio.sub(lo).mul(2d).div(span).sub(1d)
+            .blend(lo, ratio.compare(VectorOperators.LT, lo))
+            .blend(hi, ratio.compare(VectorOperators.GT, hi))
+            .intoArray(s.compression, e.ordinal() * n + i);
+      }
+      DoubleVector a1x = sideDifference(x, n, i, Voxel.Side.RIGHT, Voxel.Side.LEFT);
+      DoubleVector a1y = sideDifference(y, n, i, Voxel.Side.RIGHT, Voxel.Side.LEFT);
+      DoubleVector a1z = sideDifference(z, n, i, Voxel.Side.RIGHT, Voxel.Side.LEFT);
+      DoubleVector a2x = sideDifference(x, n, i, Voxel.Side.FRONT, Voxel.Side.BACK);
+      DoubleVector a2y = sideDifference(y, n, i, Voxel.Side.FRONT, Voxel.Side.BACK);
+      DoubleVector a2z = sideDifference(z, n, i, Voxel.Side.FRONT, Voxel.Side.BACK);
+      DoubleVector a3x = sideDifference(x, n, i, Voxel.Side.UP, Voxel.Side.DOWN);
+      DoubleVector a3y = sideDifference(y, n, i, Voxel.Side.UP, Voxel.Side.DOWN);
+      DoubleVector a3z = sideDifference(z, n, i, Voxel.Side.UP, Voxel.Side.DOWN);
+      DoubleVector inverseNorm = inverseNorm(a1x, a1y, a1z);
+      a1x = a1x.mul(inverseNorm);
+      a1y = a1y.mul(inverseNorm);
+      a1z = a1z.mul(inverseNorm);
+      DoubleVector projection = a1x.mul(a2x).add(a1y.mul(a2y)).add(a1z.mul(a2z));
+      a2x = a2x.sub(a1x.mul(projection));
+      a2y = a2y.sub(a1y.mul(projection));
+      a2z = a2z.sub(a1z.mul(projection));
+      inverseNorm = inverseNorm(a2x, a2y, a2z);
+      a2x = a2x.mul(inverseNorm);
+      a2y = a2y.mul(inverseNorm);
+      a2z = a2z.mul(inverseNorm);
+      DoubleVector projection1 = a1x.mul(a3x).add(a1y.mul(a3y)).add(a1z.mul(a3z));
+      DoubleVector projection2 = a2x.mul(a3x).add(a2y.mul(a3y)).add(a2z.mul(a3z));
+      a3x = a3x.sub(a1x.mul(projection1)).sub(a2x.mul(projection2));
+      a3y = a3y.sub(a1y.mul(projection1)).sub(a2y.mul(projection2));
+      a3z = a3z.sub(a1z.mul(projection1)).sub(a2z.mul(projection2));
+      inverseNorm = inverseNorm(a3x, a3y, a3z);
+      a3x = a3x.mul(inverseNorm);
+      a3y = a3y.mul(inverseNorm);
+      a3z = a3z.mul(inverseNorm);
+      a1x.intoArray(s.axes, i);
+      a2x.intoArray(s.axes, n + i);
+      a3x.intoArray(s.axes, 2 * n + i);
+      a1y.intoArray(s.axes, 3 * n + i);
+      a2y.intoArray(s.axes, 4 * n + i);
+      a3y.intoArray(s.axes, 5 * n + i);
+      a1z.intoArray(s.axes, 6 * n + i);
+      a2z.intoArray(s.axes, 7 * n + i);
+      a3z.intoArray(s.axes, 8 * n + i);
+      DoubleVector vx = load(s.velocityX, i), vy = load(s.velocityY, i), vz = load(s.velocityZ, i);
+      a1x.mul(vx).add(a1y.mul(vy)).add(a1z.mul(vz)).intoArray(s.velocityX, i);
+      a2x.mul(vx).add(a2y.mul(vy)).add(a2z.mul(vz)).intoArray(s.velocityY, i);
+      a3x.mul(vx).add(a3y.mul(vy)).add(a3z.mul(vz)).intoArray(s.velocityZ, i);
+    }
+    tail.compute(s, i, to);
+  }
+
+  private static DoubleVector load(double[] array, int offset) {
+    return DoubleVector.fromArray(SPECIES, array, offset);
+  }
+
+  private static DoubleVector inverseNorm(DoubleVector x, DoubleVector y, DoubleVector z) {
+    return DoubleVector.broadcast(SPECIES, 1d).div(x.mul(x).add(y.mul(y)).add(z.mul(z)).sqrt());
+  }
+
+  private static DoubleVector sideDifference(double[] c, int n, int i, Voxel.Side positive, Voxel.Side negative) {
+    return load(c, positive.v1.ordinal() * n + i).add(load(c, positive.v2.ordinal() * n + i))
+        .add(load(c, positive.v3.ordinal() * n + i)).add(load(c, positive.v4.ordinal() * n + i))
+        .sub(load(c, negative.v1.ordinal() * n + i)).sub(load(c, negative.v2.ordinal() * n + i))
+        .sub(load(c, negative.v3.ordinal() * n + i)).sub(load(c, negative.v4.ordinal() * n + i));
+  }
+}
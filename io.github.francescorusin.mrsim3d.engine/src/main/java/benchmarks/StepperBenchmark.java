@@ -0,0 +1,87 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package benchmarks;
+
+import engine.Ode4jEngine;
+import experiments.BipedExperiment;
+import geometry.Vector3D;
+import tasks.Locomotion;
+
+import java.util.*;
+
+// Runs the same biped robots with different steppers and reports wall time against the trajectory
+// deviation from a reference stepper (by default a quick step with many iterations, as the exact
+// stepper is too slow on the biped); arguments: [duration] [nOfRobots] [seed]
+public class StepperBenchmark {
+    private static final Ode4jEngine.Stepper REFERENCE = Ode4jEngine.Stepper.quickStep(200);
+    private static final Map<String, Ode4jEngine.Stepper> CANDIDATES = new LinkedHashMap<>();
+
+    static {
+        CANDIDATES.put("quick-4", Ode4jEngine.Stepper.quickStep(4));
+        CANDIDATES.put("fast", Ode4jEngine.Stepper.FAST);
+        CANDIDATES.put("default", Ode4jEngine.Stepper.DEFAULT);
+        CANDIDATES.put("default-w1", new Ode4jEngine.Stepper(Ode4jEngine.Stepper.Method.QUICK_STEP, 20, 1d));
+        CANDIDATES.put("accurate", Ode4jEngine.Stepper.ACCURATE);
+    }
+
+    private record Run(List<Vector3D> trajectory, double seconds) {}
+
+    public static void main(String[] args) {
+        final double duration = args.length > 0 ? Double.parseDouble(args[0]) : 10d;
+        final int nOfRobots = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        final Random random = new Random(args.length > 2 ? Long.parseLong(args[2]) : 0L);
+        List<double[]> genotypes = new ArrayList<>();
+        for (int i = 0; i < nOfRobots; ++i) {
+            genotypes.add(random.doubles(BipedExperiment.N_OF_GENES, -1d, 1d).toArray());
+        }
+        // warm up the JIT so that the first candidate is not penalized
+        run(Ode4jEngine.Stepper.DEFAULT, genotypes.getFirst(), duration);
+        List<Run> references = genotypes.stream().map(g -> run(REFERENCE, g, duration)).toList();
+        System.out.printf("%-12s %12s %14s %14s%n", "stepper", "time [s]", "avg dev [m]", "final dev [m]");
+        System.out.printf("%-12s %12.3f %14.5f %14.5f%n", "reference",
+                references.stream().mapToDouble(Run::seconds).sum(), 0d, 0d);
+        for (Map.Entry<String, Ode4jEngine.Stepper> candidate : CANDIDATES.entrySet()) {
+            double seconds = 0d;
+            double averageDeviation = 0d;
+            double finalDeviation = 0d;
+            for (int i = 0; i < nOfRobots; ++i) {
+                Run run = run(candidate.getValue(), genotypes.get(i), duration);
+                List<Vector3D> reference = references.get(i).trajectory();
+                seconds += run.seconds();
+                int length = Math.min(reference.size(), run.trajectory().size());
+                double deviation = 0d;
+                for (int t = 0; t < length; ++t) {
+                    deviation += run.trajectory().get(t).vectorDistance(reference.get(t)).norm();
+                }
+                averageDeviation += deviation / length / nOfRobots;
+                finalDeviation += run.trajectory().get(length - 1).vectorDistance(reference.get(length - 1)).norm() / nOfRobots;
+            }
+            System.out.printf("%-12s %12.3f %14.5f %14.5f%n", candidate.getKey(), seconds, averageDeviation, finalDeviation);
+        }
+    }
+
+    private static Run run(Ode4jEngine.Stepper stepper, double[] genotype, double duration) {
+        Locomotion task = new Locomotion(duration, stepper);
+        List<Vector3D> trajectory = new ArrayList<>();
+        long start = System.nanoTime();
+        task.run(() -> BipedExperiment.robot(genotype), Ode4jEngine.Mode.COMPUTATION, s -> trajectory.add(s.activeBodies().getFirst().position()));
+        return new Run(trajectory, (System.nanoTime() - start) / 1e9);
+    }
+}
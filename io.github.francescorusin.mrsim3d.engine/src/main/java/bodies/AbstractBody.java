@@ -20,6 +20,7 @@
 package bodies;
 
 import engine.Ode4jEngine;
+import geometry.Orientation;
 import geometry.Vector3D;
 import snapshot.BodySnapshot;
 
@@ -30,5 +31,11 @@ public interface AbstractBody extends SimulationObject {
 
     Vector3D angle(double t);
 
+    // bodies which know their rotation matrix should override this, so that rotating vectors does not
+    // go through the Euler angles
+    default Orientation orientation(double t) {
+        return Orientation.fromEulerAngles(angle(t));
+    }
+
     BodySnapshot snapshot(Ode4jEngine engine, Ode4jEngine.Mode mode);
 }
@@ -19,16 +19,24 @@ package bodies; /*-
                  */
 
 import engine.Ode4jEngine;
+import geometry.MutableVector3D;
 import geometry.Vector3D;
 import java.util.List;
+import java.util.Objects;
+import org.ode4j.math.DVector3C;
 import org.ode4j.ode.DBody;
 import org.ode4j.ode.DGeom;
 import org.ode4j.ode.DMass;
+import utils.TickCache;
 
 public abstract class Body implements AbstractBody {
   protected DBody body;
   protected DMass mass;
   protected DGeom collisionGeometry;
+  // per-body auto-disable settings; if null, the ones of the world are used
+  protected Ode4jEngine.AutoDisable autoDisable;
+  // per-step cache of derived quantities, bound to the engine on assembly
+  protected final TickCache cache = new TickCache();
 
   @Override
   public double mass() {
@@ -46,22 +54,62 @@ public abstract class Body implements AbstractBody {
 
   @Override
   public Vector3D position(double t) {
-    return new Vector3D(
-        body.getPosition().get0(), body.getPosition().get1(), body.getPosition().get2());
+    DVector3C position = body.getPosition();
+    return new Vector3D(position.get0(), position.get1(), position.get2());
+  }
+
+  // allocation-free variant of position, for hot paths
+  public MutableVector3D position(double t, MutableVector3D result) {
+    DVector3C position = body.getPosition();
+    return result.set(position.get0(), position.get1(), position.get2());
+  }
+
+  @Override
+  public void setAutoDisable(Ode4jEngine.AutoDisable autoDisable) {
+    this.autoDisable = autoDisable;
+    if (Objects.nonNull(body)) {
+      applyAutoDisable();
+    }
+  }
+
+  // to be called by subclasses as soon as the ODE body is created; with no settings of its own, the
+  // body follows those of the world
+  protected void applyAutoDisable() {
+    if (Objects.nonNull(autoDisable)) {
+      autoDisable.apply(body);
+    } else {
+      body.setAutoDisableDefaults();
+    }
+  }
+
+  @Override
+  public void wake() {
+    body.enable();
+  }
+
+  public boolean isAwake() {
+    return body.isEnabled();
   }
 
   @Override
   public void translate(Ode4jEngine engine, Vector3D translation) {
+    body.enable();
     body.setPosition(
         body.getPosition().get0() + translation.x(),
         body.getPosition().get1() + translation.y(),
         body.getPosition().get2() + translation.z());
+    cache.invalidateAll();
   }
 
   @Override
   public Vector3D velocity(double t) {
-    return new Vector3D(
-        body.getLinearVel().get0(), body.getLinearVel().get1(), body.getLinearVel().get2());
+    DVector3C velocity = body.getLinearVel();
+    return new Vector3D(velocity.get0(), velocity.get1(), velocity.get2());
+  }
+
+  public MutableVector3D velocity(double t, MutableVector3D result) {
+    DVector3C velocity = body.getLinearVel();
+    return result.set(velocity.get0(), velocity.get1(), velocity.get2());
   }
 
   public DBody dBody() {
@@ -21,36 +21,31 @@ package bodies;
 
 import engine.Ode4jEngine;
 import geometry.BoundingBox;
+import geometry.Orientation;
 import geometry.Vector3D;
 
 import java.awt.*;
-import java.util.Arrays;
-import java.util.EnumMap;
-import java.util.List;
-import java.util.stream.Stream;
 import org.ode4j.math.DMatrix3;
 import org.ode4j.math.DMatrix3C;
+import org.ode4j.math.DVector3;
+import org.ode4j.math.DVector3C;
 import org.ode4j.ode.OdeHelper;
 import snapshot.BodySnapshot;
+import snapshot.InterpolableSnapshot;
+import utils.TickCache;
 import viewer.Viewer;
 
 public class Cube extends Body {
     private final double sideLength;
 
-    private enum Cache {
-        ANGLE,
-        BBOX
-    }
-
-    private final EnumMap<Cache, Double> cacheTime;
-    private Vector3D angleCacher;
-    private BoundingBox boundingBoxCacher;
+    private final TickCache.Slot<Vector3D> angleCache = cache.slot();
+    private final TickCache.Slot<Orientation> orientationCache = cache.slot();
+    private final TickCache.Slot<BoundingBox> boundingBoxCache = cache.slot();
 
     public Cube(double sideLength, double mass) {
         this.sideLength = sideLength;
         this.mass = OdeHelper.createMass();
         this.mass.setBoxTotal(mass, sideLength, sideLength, sideLength);
-        cacheTime = new EnumMap<>(Cache.class);
     }
 
     public double sideLength() {
@@ -62,75 +57,56 @@ public class Cube extends Body {
         return sideLength * sideLength * sideLength;
     }
 
+    // the rotated cube extends along each axis by half its side times the sum of the absolute values
+    // of the corresponding row of the rotation matrix
     @Override
     public BoundingBox boundingBox(double t) {
-        if (cacheTime.get(Cache.BBOX) != t) {
-            cacheTime.put(Cache.BBOX, t);
-            Vector3D angle = angle(t);
-            List<Vector3D> rotatedVertices =
-                    Stream.of(
-                                    new Vector3D(1d, 1d, 1d),
-                                    new Vector3D(-1d, 1d, 1d),
-                                    new Vector3D(1d, -1d, 1d),
-                                    new Vector3D(1d, 1d, -1d))
-                            .map(v -> v.times(.5 * sideLength).rotate(angle))
-                            .toList();
-            double[] mins = new double[3];
-            double[] maxs = new double[3];
-            Arrays.fill(mins, Double.POSITIVE_INFINITY);
-            Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
-            for (Vector3D v : rotatedVertices) {
-                if (Math.abs(v.x()) > maxs[0]) {
-                    maxs[0] = Math.abs(v.x());
-                }
-                if (Math.abs(v.y()) > maxs[1]) {
-                    maxs[1] = Math.abs(v.y());
-                }
-                if (Math.abs(v.z()) > maxs[2]) {
-                    maxs[2] = Math.abs(v.z());
-                }
-                if (-Math.abs(v.x()) < mins[0]) {
-                    mins[0] = -Math.abs(v.x());
-                }
-                if (-Math.abs(v.y()) < mins[1]) {
-                    mins[1] = -Math.abs(v.y());
-                }
-                if (-Math.abs(v.z()) < mins[2]) {
-                    mins[2] = -Math.abs(v.z());
-                }
-            }
-            Vector3D center = position(t);
-            mins[0] += center.x();
-            maxs[0] += center.x();
-            mins[1] += center.y();
-            maxs[1] += center.y();
-            mins[2] += center.z();
-            maxs[2] += center.z();
-            boundingBoxCacher = new BoundingBox(new Vector3D(mins), new Vector3D(maxs));
+        if (!boundingBoxCache.isValid()) {
+            DMatrix3C r = body.getRotation();
+            DVector3C center = body.getPosition();
+            double halfSide = .5 * sideLength;
+            double ex = halfSide * (Math.abs(r.get00()) + Math.abs(r.get01()) + Math.abs(r.get02()));
+            double ey = halfSide * (Math.abs(r.get10()) + Math.abs(r.get11()) + Math.abs(r.get12()));
+            double ez = halfSide * (Math.abs(r.get20()) + Math.abs(r.get21()) + Math.abs(r.get22()));
+            boundingBoxCache.set(new BoundingBox(
+                    new Vector3D(center.get0() - ex, center.get1() - ey, center.get2() - ez),
+                    new Vector3D(center.get0() + ex, center.get1() + ey, center.get2() + ez)));
+        }
+        return boundingBoxCache.get();
+    }
+
+    // world position of a point given in the frame of the cube
+    public Vector3D relativePointPosition(double x, double y, double z) {
+        DVector3 result = new DVector3();
+        body.getRelPointPos(x, y, z, result);
+        return new Vector3D(result.get0(), result.get1(), result.get2());
+    }
+
+    @Override
+    public Orientation orientation(double t) {
+        if (!orientationCache.isValid()) {
+            DMatrix3C r = body.getRotation();
+            orientationCache.set(new Orientation(
+                    r.get00(), r.get01(), r.get02(),
+                    r.get10(), r.get11(), r.get12(),
+                    r.get20(), r.get21(), r.get22()));
         }
-        return boundingBoxCacher;
+        return orientationCache.get();
     }
 
     @Override
     public Vector3D angle(double t) {
-        if (cacheTime.get(Cache.ANGLE) != t) {
-            cacheTime.put(Cache.ANGLE, t);
-            DMatrix3C rotationMatrix = body.getRotation();
-            angleCacher =
-                    new Vector3D(
-                            Math.atan2(rotationMatrix.get21(), rotationMatrix.get22()),
-                            Math.asin(-rotationMatrix.get20()),
-                            Math.atan2(rotationMatrix.get10(), rotationMatrix.get00()));
+        if (!angleCache.isValid()) {
+            angleCache.set(orientation(t).eulerAngles());
         }
-        return angleCacher;
+        return angleCache.get();
     }
 
     @Override
     public void assemble(Ode4jEngine engine, Vector3D position) {
-        for (Cache c : Cache.values()) {
-            cacheTime.put(c, -1d);
-        }
+        cache.bind(engine::nOfSteps);
         body = OdeHelper.createBody(engine.world());
+        applyAutoDisable();
         body.setPosition(position.x(), position.y(), position.z());
         body.setMass(mass);
         collisionGeometry = OdeHelper.createBox(engine.bodySpace(), sideLength, sideLength, sideLength);
@@ -139,73 +115,69 @@ public class Cube extends Body {
 
     @Override
     public void rotate(Ode4jEngine engine, Vector3D eulerAngles) {
-        Vector3D[] rotationBase =
-                new Vector3D[] {
-                        new Vector3D(1d, 0d, 0d).rotate(eulerAngles),
-                        new Vector3D(0d, 1d, 0d).rotate(eulerAngles),
-                        new Vector3D(0d, 0d, 1d).rotate(eulerAngles)
-                };
+        Orientation rotation = Orientation.fromEulerAngles(eulerAngles);
         DMatrix3 rotationMatrix =
                 new DMatrix3(
-                        rotationBase[0].x(),
-                        rotationBase[1].x(),
-                        rotationBase[2].x(),
-                        rotationBase[0].y(),
-                        rotationBase[1].y(),
-                        rotationBase[2].y(),
-                        rotationBase[0].z(),
-                        rotationBase[1].z(),
-                        rotationBase[2].z());
+                        rotation.m00(),
+                        rotation.m01(),
+                        rotation.m02(),
+                        rotation.m10(),
+                        rotation.m11(),
+                        rotation.m12(),
+                        rotation.m20(),
+                        rotation.m21(),
+                        rotation.m22());
+        body.enable();
         body.setRotation(new DMatrix3().eqMul(rotationMatrix, body.getRotation()));
+        cache.invalidateAll();
     }
 
     public record CubeSnapshot(
             double sideLength, double mass, Vector3D position, Vector3D rotation, Vector3D velocity, Ode4jEngine.Mode mode
     )
-            implements BodySnapshot {
+            implements BodySnapshot, InterpolableSnapshot<CubeSnapshot> {
         private final static Color CUBE_COLOR = Color.RED;
+
+        // the rotated cube extends along each axis by half its side times the absolute values of the
+        // corresponding row of the rotation matrix
         @Override
-        public void draw(Viewer viewer) {
-            Vector3D[] vs = new Vector3D[8];
-            int index = -1;
-            for (Vector3D v : List.of(
-                    new Vector3D(-1d, -1d, -1d),
-                    new Vector3D(-1d, 1d, -1d),
-                    new Vector3D(1d, 1d, -1d),
-                    new Vector3D(1d, -1d, -1d),
-                    new Vector3D(-1d, -1d, 1d),
-                    new Vector3D(-1d, 1d, 1d),
-                    new Vector3D(1d, 1d, 1d),
-                    new Vector3D(1d, -1d, 1d)
-            )) {
-                vs[++index] = v.times(.5 * sideLength).rotate(rotation).sum(position);
-            }
-            viewer.drawTriangle(vs[0], vs[1], vs[2], CUBE_COLOR);
-            viewer.drawTriangle(vs[0], vs[2], vs[3], CUBE_COLOR);
-            viewer.drawTriangle(vs[0], vs[3], vs[7], CUBE_COLOR);
-            viewer.drawTriangle(vs[0], vs[4], vs[7], CUBE_COLOR);
-            viewer.drawTriangle(vs[0], vs[1], vs[5], CUBE_COLOR);
-            viewer.drawTriangle(vs[0], vs[4], vs[5], CUBE_COLOR);
-            viewer.drawTriangle(vs[1], vs[2], vs[5], CUBE_COLOR);
-            viewer.drawTriangle(vs[2], vs[5], vs[6], CUBE_COLOR);
-            viewer.drawTriangle(vs[2], vs[3], vs[7], CUBE_COLOR);
-            viewer.drawTriangle(vs[2], vs[6], vs[7], CUBE_COLOR);
-            viewer.drawTriangle(vs[4], vs[5], vs[6], CUBE_COLOR);
-            viewer.drawTriangle(vs[4], vs[6], vs[7], CUBE_COLOR);
-            if (mode == Ode4jEngine.Mode.DEBUG) {
-                viewer.drawLine(vs[0], vs[1], Color.BLACK);
-                viewer.drawLine(vs[1], vs[2], Color.BLACK);
-                viewer.drawLine(vs[2], vs[3], Color.BLACK);
-                viewer.drawLine(vs[0], vs[3], Color.BLACK);
-                viewer.drawLine(vs[0], vs[4], Color.BLACK);
-                viewer.drawLine(vs[1], vs[5], Color.BLACK);
-                viewer.drawLine(vs[2], vs[6], Color.BLACK);
-                viewer.drawLine(vs[3], vs[7], Color.BLACK);
-                viewer.drawLine(vs[4], vs[5], Color.BLACK);
-                viewer.drawLine(vs[5], vs[6], Color.BLACK);
-                viewer.drawLine(vs[6], vs[7], Color.BLACK);
-                viewer.drawLine(vs[4], vs[7], Color.BLACK);
+        public BoundingBox boundingBox() {
+            Vector3D ax = new Vector3D(.5 * sideLength, 0, 0).rotate(rotation);
+            Vector3D ay = new Vector3D(0, .5 * sideLength, 0).rotate(rotation);
+            Vector3D az = new Vector3D(0, 0, .5 * sideLength).rotate(rotation);
+            Vector3D extent = new Vector3D(
+                    Math.abs(ax.x()) + Math.abs(ay.x()) + Math.abs(az.x()),
+                    Math.abs(ax.y()) + Math.abs(ay.y()) + Math.abs(az.y()),
+                    Math.abs(ax.z()) + Math.abs(ay.z()) + Math.abs(az.z()));
+            return new BoundingBox(position.vectorDistance(extent), position.sum(extent));
+        }
+
+        // rotations are converted to the displacement they cause at the surface of the cube
+        @Override
+        public double poseDistance(BodySnapshot other) {
+            double distance = BodySnapshot.super.poseDistance(other);
+            if (other instanceof CubeSnapshot cube) {
+                Vector3D angles = rotation.vectorDistance(cube.rotation).forEach(a -> Math.abs(Math.IEEEremainder(a, 2 * Math.PI)));
+                distance += .5 * sideLength * Math.max(angles.x(), Math.max(angles.y(), angles.z()));
             }
+            return distance;
+        }
+
+        @Override
+        public CubeSnapshot interpolate(CubeSnapshot next, double alpha) {
+            return new CubeSnapshot(
+                    next.sideLength,
+                    next.mass,
+                    InterpolableSnapshot.lerp(position, next.position, alpha),
+                    InterpolableSnapshot.lerpAngles(rotation, next.rotation, alpha),
+                    InterpolableSnapshot.lerp(velocity, next.velocity, alpha),
+                    next.mode
+            );
+        }
+
+        @Override
+        public void draw(Viewer viewer) {
+            viewer.drawCube(position, rotation, sideLength, CUBE_COLOR, mode == Ode4jEngine.Mode.DEBUG ? Color.BLACK : null);
         }
     }
 
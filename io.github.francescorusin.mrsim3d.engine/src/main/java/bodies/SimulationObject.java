@@ -44,5 +44,22 @@ public interface SimulationObject {
 
   default void cacheAction(ActionSnapshot actionSnapshot) {}
 
+  // only valid after assembly
+  default void setAutoDisable(Ode4jEngine.AutoDisable autoDisable) {
+    for (Body body : bodyParts()) {
+      body.setAutoDisable(autoDisable);
+    }
+  }
+
+  default void wake() {
+    for (Body body : bodyParts()) {
+      body.wake();
+    }
+  }
+
+  default boolean isResting() {
+    return bodyParts().stream().noneMatch(Body::isAwake);
+  }
+
   BodySnapshot snapshot(Ode4jEngine engine, Ode4jEngine.Mode mode);
 }
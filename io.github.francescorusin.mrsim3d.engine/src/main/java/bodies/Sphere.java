@@ -21,10 +21,12 @@ package bodies;
 
 import engine.Ode4jEngine;
 import geometry.BoundingBox;
+import geometry.Orientation;
 import geometry.Vector3D;
 import org.ode4j.math.DVector3C;
 import org.ode4j.ode.OdeHelper;
 import snapshot.BodySnapshot;
+import snapshot.InterpolableSnapshot;
 import viewer.Viewer;
 
 import java.awt.*;
@@ -60,9 +62,16 @@ public class Sphere extends Body {
     return new Vector3D();
   }
 
+  @Override
+  public Orientation orientation(double t) {
+    return Orientation.IDENTITY;
+  }
+
   @Override
   public void assemble(Ode4jEngine engine, Vector3D position) {
+    cache.bind(engine::nOfSteps);
     body = OdeHelper.createBody(engine.world());
+    applyAutoDisable();
     collisionGeometry = OdeHelper.createSphere(engine.bodySpace(), radius);
     collisionGeometry.setBody(body);
     body.setPosition(position.x(), position.y(), position.z());
@@ -73,8 +82,24 @@ public class Sphere extends Body {
   public void rotate(Ode4jEngine engine, Vector3D eulerAngles) {}
 
   public record SphereSnapshot(double radius, double mass, Vector3D position, Vector3D velocity)
-      implements BodySnapshot {
+      implements BodySnapshot, InterpolableSnapshot<SphereSnapshot> {
     private static final Color SPHERE_COLOR = Color.CYAN;
+
+    @Override
+    public BoundingBox boundingBox() {
+      Vector3D extent = new Vector3D(radius, radius, radius);
+      return new BoundingBox(position.vectorDistance(extent), position.sum(extent));
+    }
+
+    @Override
+    public SphereSnapshot interpolate(SphereSnapshot next, double alpha) {
+      return new SphereSnapshot(
+          next.radius,
+          next.mass,
+          InterpolableSnapshot.lerp(position, next.position, alpha),
+          InterpolableSnapshot.lerp(velocity, next.velocity, alpha));
+    }
+
     @Override
     public void draw(Viewer viewer) {
       viewer.drawSphere(position, radius, SPHERE_COLOR);
@@ -23,6 +23,8 @@ import actions.EmitSignal;
 import ad.Attachable;
 import engine.Ode4jEngine;
 import geometry.BoundingBox;
+import geometry.Orientation;
+import geometry.MutableVector3D;
 import geometry.Vector3D;
 
 import java.awt.*;
@@ -36,6 +38,7 @@ import org.ode4j.ode.DRay;
 import sensors.*;
 import snapshot.*;
 import utils.Pair;
+import utils.TickCache;
 import utils.UnorderedPair;
 import viewer.Viewer;
 
@@ -161,6 +164,8 @@ public class Voxel extends MultiBody
     protected Map<UlteriorBody, Body> ulteriorBodies;
     protected final List<Sensor> internalSensors;
     protected final List<NearFieldCommunicationSensor> commSensors;
+    // internal sensors followed by the communication ones, as read by controllers every step
+    private final List<Sensor> sensors;
     private final Map<Body, Set<Body>> attachedBodies;
     private final double bodyCenterToBodyCenterLength;
     private final double rigidBodyLength;
@@ -170,18 +175,25 @@ public class Voxel extends MultiBody
     private final double dampingConstant;
     private final double restVolume;
     private final double[] edgeLengthControlRatio;
+    private final double[] lastControlInput;
+    private static final double WAKE_CONTROL_THRESHOLD = 1e-3;
 
-    private enum Cache {
-        ANGLE,
-        BBOX,
-        POSITION,
-        SIDECPOSITIONS,
-        VELOCITY,
-        VOLUME
-    }
-
-    private final EnumMap<Cache, Double> cacheTime;
-    private final EnumMap<Cache, Object> cacher;
+    // per-step cache of derived quantities, bound to the engine on assembly
+    private final TickCache cache = new TickCache();
+    private final TickCache.Slot<Vector3D> angleCache = cache.slot();
+    private final TickCache.Slot<BoundingBox> boundingBoxCache = cache.slot();
+    private final TickCache.Slot<VoxelGeometry> geometryCache = cache.slot();
+    private final TickCache.Slot<Vector3D> positionCache = cache.slot();
+    private final TickCache.Slot<Map<List<Body>, Vector3D>> sideCPositionsCache = cache.slot();
+    private final TickCache.Slot<Vector3D> velocityCache = cache.slot();
+    private final VoxelGeometry geometry = new VoxelGeometry();
+    // scratch space of readSignal alone, which would otherwise allocate a vector per signal; no other
+    // method writes it, so that it cannot be overwritten while the contact side is computed
+    private final MutableVector3D contactScratch;
+    private static final List<Vector3D> SIDE_DIRECTIONS = List.of(
+            new Vector3D(0, 0, 1), new Vector3D(0, 0, -1),
+            new Vector3D(0, 1, 0), new Vector3D(0, -1, 0),
+            new Vector3D(1, 0, 0), new Vector3D(-1, 0, 0));
 
     public Voxel(
             double sideLength,
@@ -217,15 +229,19 @@ public class Voxel extends MultiBody
         this.internalSensors = new ArrayList<>();
         this.commSensors = new ArrayList<>();
         this.attachedBodies = new LinkedHashMap<>();
-        this.cacheTime = new EnumMap<>(Cache.class);
-        this.cacher = new EnumMap<>(Cache.class);
+        this.contactScratch = new MutableVector3D();
+        this.lastControlInput = new double[Edge.values().length];
+        Arrays.fill(lastControlInput, -1d);
         for (String s : sensorConfig.split("-")) {
             switch (s) {
                 case "ang" -> internalSensors.add(new AngleSensor(this));
                 case "vlm" -> internalSensors.add(new VolumeRatioSensor(this));
                 case "vlc" -> internalSensors.add(new VelocitySensor(this));
                 case "scr" -> internalSensors.add(new SideCompressionSensor(this));
-                case "cnt" -> internalSensors.add(new ContactSensor());
+                case "cnt" -> internalSensors.add(new ContactSensor(this));
+                case "cnf" -> internalSensors.add(new ContactSensor(this, EnumSet.allOf(ContactSensor.Reading.class)));
+                case "spt" -> internalSensors.add(new SpringTensionSensor(this));
+                case "grf" -> internalSensors.add(new GroundReactionSensor(this));
                 // TODO ADD SENSORS
             }
             if (s.matches("nfc[0-9]")) {
@@ -233,6 +249,7 @@ public class Voxel extends MultiBody
                         new NearFieldCommunicationSensor(this, Character.getNumericValue(s.charAt(3))));
             }
         }
+        this.sensors = Stream.concat(internalSensors.stream(), commSensors.stream()).toList();
     }
 
     public Voxel(EnumSet<JointOption> jointOptions, String sensorConfig) {
@@ -265,17 +282,32 @@ public class Voxel extends MultiBody
 
     @Override
     public List<Sensor> sensors() {
-        return Stream.concat(internalSensors.stream(), commSensors.stream()).toList();
+        return sensors;
     }
 
     public List<NearFieldCommunicationSensor> commSensors() {
         return commSensors;
     }
 
+    // corner of the voxel hull at the given vertex, i.e. the outer corner of its vertex cube
+    public Vector3D outerCorner(Vertex v) {
+        final int i = v.ordinal();
+        final Cube cube = rigidBodies.get(v);
+        return cube.relativePointPosition(
+                ((i >> 2) - .5) * cube.sideLength(),
+                ((i >> 1 & 1) - .5) * cube.sideLength(),
+                ((i & 1) - .5) * cube.sideLength());
+    }
+
     public Body vertexBody(Vertex v) {
         return rigidBodies.get(v);
     }
 
+    // spring joints between the two vertices of the edge, empty if not assembled with edge joints
+    public List<SpringJoint> edgeJoints(Edge e) {
+        return vertexToVertexJoints.getOrDefault(new UnorderedPair<>(e.v1, e.v2), List.of());
+    }
+
     @Override
     public List<? extends Joint> internalJoints() {
         return Stream.concat(
@@ -309,124 +341,54 @@ public class Voxel extends MultiBody
                 * edgeLengthControlRatio[1];
     }
 
+    // vertex positions, volume, edges, sides and orientation, computed at most once per step
+    public VoxelGeometry geometry(double t) {
+        if (!geometryCache.isValid()) {
+            geometryCache.set(geometry.update(rigidBodies));
+        }
+        return geometryCache.get();
+    }
+
     @Override
     public double currentVolume(double t) {
-        if (cacheTime.get(Cache.VOLUME) != t) {
-            cacheTime.put(Cache.VOLUME, t);
-            double volume = 0d;
-            Map<Vertex, Vector3D> currentVectorsFromV000 = new EnumMap<>(Vertex.class);
-            for (Vertex v :
-                    List.of(
-                            Vertex.V001,
-                            Vertex.V010,
-                            Vertex.V011,
-                            Vertex.V100,
-                            Vertex.V101,
-                            Vertex.V110,
-                            Vertex.V111)) {
-                currentVectorsFromV000.put(
-                        v,
-                        rigidBodies
-                                .get(v)
-                                .position(t)
-                                .vectorDistance(rigidBodies.get(Vertex.V000).position(t)));
-            }
-            for (Tetrahedron ttr : Tetrahedron.values()) {
-                volume +=
-                        Math.abs(
-                                currentVectorsFromV000
-                                        .get(ttr.v2)
-                                        .vectorProduct(currentVectorsFromV000.get(ttr.v3))
-                                        .scalarProduct(currentVectorsFromV000.get(ttr.v4)));
-            }
-            cacher.put(Cache.VOLUME, volume / 6d);
-        }
-        return (double) cacher.get(Cache.VOLUME);
+        return geometry(t).volume();
     }
 
     @Override
     public BoundingBox boundingBox(double t) {
-        if (cacheTime.get(Cache.BBOX) != t) {
-            cacheTime.put(Cache.BBOX, t);
-            cacher.put(Cache.BBOX, super.boundingBox(t));
+        if (!boundingBoxCache.isValid()) {
+            boundingBoxCache.set(super.boundingBox(t));
         }
-        return (BoundingBox) cacher.get(Cache.BBOX);
+        return boundingBoxCache.get();
     }
 
     @Override
     public Vector3D position(double t) {
-        if (cacheTime.get(Cache.POSITION) != t) {
-            cacheTime.put(Cache.POSITION, t);
-            cacher.put(Cache.POSITION, super.position(t));
+        if (!positionCache.isValid()) {
+            positionCache.set(super.position(t));
         }
-        return (Vector3D) cacher.get(Cache.POSITION);
+        return positionCache.get();
     }
 
     @Override
     public Vector3D velocity(double t) {
-        if (cacheTime.get(Cache.VELOCITY) != t) {
-            cacheTime.put(Cache.VELOCITY, t);
-            cacher.put(Cache.VELOCITY, super.velocity(t));
+        if (!velocityCache.isValid()) {
+            velocityCache.set(super.velocity(t));
         }
-        return (Vector3D) cacher.get(Cache.VELOCITY);
+        return velocityCache.get();
+    }
+
+    @Override
+    public Orientation orientation(double t) {
+        return geometry(t).orientation();
     }
 
     @Override
     public Vector3D angle(double t) {
-        if (cacheTime.get(Cache.ANGLE) != t) {
-            cacheTime.put(Cache.ANGLE, t);
-            double[] angle = new double[3];
-            Vector3D angleVector1 =
-                    Stream.of(Side.RIGHT.v1, Side.RIGHT.v2, Side.RIGHT.v3, Side.RIGHT.v4)
-                            .map(v -> rigidBodies.get(v).position(t))
-                            .reduce(Vector3D::sum)
-                            .get()
-                            .sum(
-                                    Stream.of(Side.LEFT.v1, Side.LEFT.v2, Side.LEFT.v3, Side.LEFT.v4)
-                                            .map(v -> rigidBodies.get(v).position(t))
-                                            .reduce(Vector3D::sum)
-                                            .get()
-                                            .times(-1d));
-            Vector3D angleVector2 =
-                    Stream.of(Side.FRONT.v1, Side.FRONT.v2, Side.FRONT.v3, Side.FRONT.v4)
-                            .map(v -> rigidBodies.get(v).position(t))
-                            .reduce(Vector3D::sum)
-                            .get()
-                            .sum(
-                                    Stream.of(Side.BACK.v1, Side.BACK.v2, Side.BACK.v3, Side.BACK.v4)
-                                            .map(v -> rigidBodies.get(v).position(t))
-                                            .reduce(Vector3D::sum)
-                                            .get()
-                                            .times(-1d));
-            Vector3D angleVector3 =
-                    Stream.of(Side.UP.v1, Side.UP.v2, Side.UP.v3, Side.UP.v4)
-                            .map(v -> rigidBodies.get(v).position(t))
-                            .reduce(Vector3D::sum)
-                            .get()
-                            .sum(
-                                    Stream.of(Side.DOWN.v1, Side.DOWN.v2, Side.DOWN.v3, Side.DOWN.v4)
-                                            .map(v -> rigidBodies.get(v).position(t))
-                                            .reduce(Vector3D::sum)
-                                            .get()
-                                            .times(-1d));
-            angleVector1 = angleVector1.normalize();
-            angleVector2 =
-                    angleVector2
-                            .sum(angleVector1.times(-angleVector1.scalarProduct(angleVector2)))
-                            .normalize();
-            angleVector3 =
-                    angleVector3
-                            .sum(
-                                    angleVector1
-                                            .times(-angleVector1.scalarProduct(angleVector3))
-                                            .sum(angleVector2.times(-angleVector2.scalarProduct(angleVector3))))
-                            .normalize();
-            angle[0] = Math.atan2(angleVector2.z(), angleVector3.z());
-            angle[1] = Math.asin(-angleVector1.z());
-            angle[2] = Math.atan2(angleVector1.y(), angleVector1.x());
-            cacher.put(Cache.ANGLE, new Vector3D(angle[0], angle[1], angle[2]));
+        if (!angleCache.isValid()) {
+            angleCache.set(orientation(t).eulerAngles());
         }
-        return (Vector3D) cacher.get(Cache.ANGLE);
+        return angleCache.get();
     }
 
     @Override
@@ -438,23 +400,17 @@ public class Voxel extends MultiBody
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Map<List<Body>, Vector3D> attachPossibilitiesPositions(double t) {
-        if (cacheTime.get(Cache.SIDECPOSITIONS) != t) {
-            cacheTime.put(Cache.SIDECPOSITIONS, t);
+        if (!sideCPositionsCache.isValid()) {
             Map<List<Body>, Vector3D> sideCPositions = new HashMap<>();
-            for (List<Body> bodies : attachPossibilities()) {
+            for (Side side : Side.values()) {
                 sideCPositions.put(
-                        bodies,
-                        bodies.stream()
-                                .map(b -> b.position(t).times(b.mass()))
-                                .reduce(Vector3D::sum)
-                                .orElseThrow()
-                                .times(1d / bodies.stream().mapToDouble(Body::mass).sum()));
+                        side.vertices().stream().map(v -> (Body) rigidBodies.get(v)).toList(),
+                        geometry(t).faceCentroid(side));
             }
-            cacher.put(Cache.SIDECPOSITIONS, sideCPositions);
+            sideCPositionsCache.set(sideCPositions);
         }
-        return (Map<List<Body>, Vector3D>) cacher.get(Cache.SIDECPOSITIONS);
+        return sideCPositionsCache.get();
     }
 
     @Override
@@ -476,9 +432,7 @@ public class Voxel extends MultiBody
         ulteriorJoints = new LinkedHashMap<>();
         jointMaxLength = new HashMap<>();
         jointMinLength = new HashMap<>();
-        for (Cache c : Cache.values()) {
-            cacheTime.put(c, -1d);
-        }
+        cache.bind(engine::nOfSteps);
         final double vertexBodyCenterShift = bodyCenterToBodyCenterLength / 2d;
         final double centralSphereMass = centralMassRatio * mass;
         final double rigidSphereMass = (mass - centralSphereMass) / 8d;
@@ -870,23 +824,26 @@ public class Voxel extends MultiBody
     @Override
     public void rotate(Ode4jEngine engine, Vector3D eulerAngles) {
         super.rotate(engine, eulerAngles);
-        cacheTime.put(Cache.ANGLE, -1d);
-        cacheTime.put(Cache.BBOX, -1d);
-        cacheTime.put(Cache.SIDECPOSITIONS, -1d);
-        cacheTime.put(Cache.VELOCITY, -1d);
+        cache.invalidateAll();
     }
 
     @Override
     public void translate(Ode4jEngine engine, Vector3D translation) {
         super.translate(engine, translation);
-        cacheTime.put(Cache.BBOX, -1d);
-        cacheTime.put(Cache.POSITION, -1d);
-        cacheTime.put(Cache.SIDECPOSITIONS, -1d);
+        cache.invalidateAll();
     }
 
     public interface VoxelSnapshot extends MultibodySnapshot {
         Color VOXEL_E_COLOR = Color.CYAN;
         Color VOXEL_C_COLOR = Color.YELLOW;
+
+        static Color volumeColor(double volumeRatio) {
+            return new Color(
+                    (int) (VOXEL_E_COLOR.getRed() * volumeRatio + VOXEL_C_COLOR.getRed() * (1 - volumeRatio)),
+                    (int) (VOXEL_E_COLOR.getGreen() * volumeRatio + VOXEL_C_COLOR.getGreen() * (1 - volumeRatio)),
+                    (int) (VOXEL_E_COLOR.getBlue() * volumeRatio + VOXEL_C_COLOR.getBlue() * (1 - volumeRatio))
+            );
+        }
         EnumMap<Vertex, Cube.CubeSnapshot> vertices();
         EnumMap<UlteriorBody, BodySnapshot> otherBodyParts();
 
@@ -900,37 +857,44 @@ public class Voxel extends MultiBody
             EnumMap<Vertex, Cube.CubeSnapshot> vertices,
     EnumMap<UlteriorBody, BodySnapshot> otherBodyParts,
             double volumeRatio
-    ) implements VoxelSnapshot {
+    ) implements VoxelSnapshot, InterpolableSnapshot<VoxelSnapshotBase> {
+        @Override
+        public double poseDistance(BodySnapshot other) {
+            if (!(other instanceof VoxelSnapshotBase voxel)) {
+                return VoxelSnapshot.super.poseDistance(other);
+            }
+            double distance = 0d;
+            for (Vertex v : Vertex.values()) {
+                distance = Math.max(distance, vertices.get(v).poseDistance(voxel.vertices.get(v)));
+            }
+            return distance;
+        }
+
+        @Override
+        public VoxelSnapshotBase interpolate(VoxelSnapshotBase next, double alpha) {
+            EnumMap<Vertex, Cube.CubeSnapshot> interpolatedVertices = new EnumMap<>(Vertex.class);
+            for (Vertex v : Vertex.values()) {
+                interpolatedVertices.put(v, vertices.get(v).interpolate(next.vertices.get(v), alpha));
+            }
+            return new VoxelSnapshotBase(
+                    interpolatedVertices,
+                    next.otherBodyParts,
+                    InterpolableSnapshot.lerp(volumeRatio, next.volumeRatio, alpha)
+            );
+        }
+
         @Override
         public void draw(Viewer viewer) {
-                    final Color drawColor = new Color(
-                            (int) (VOXEL_E_COLOR.getRed() * volumeRatio + VOXEL_C_COLOR.getRed() * (1 - volumeRatio)),
-                            (int) (VOXEL_E_COLOR.getGreen() * volumeRatio + VOXEL_C_COLOR.getGreen() * (1 - volumeRatio)),
-                            (int) (VOXEL_E_COLOR.getBlue() * volumeRatio + VOXEL_C_COLOR.getBlue() * (1 - volumeRatio))
-                    );
-                    EnumMap<Vertex, Vector3D> vPos = new EnumMap<>(Vertex.class);
-                    final Vector3D[] normalVertices = new Vector3D[]{
-                            new Vector3D(-1d, -1d, -1d),
-                            new Vector3D(-1d, -1d, 1d),
-                            new Vector3D(-1d, 1d, -1d),
-                            new Vector3D(-1d, 1d, 1d),
-                            new Vector3D(1d, -1d, -1d),
-                            new Vector3D(1d, -1d, 1d),
-                            new Vector3D(1d, 1d, -1d),
-                            new Vector3D(1d, 1d, 1d)
-                    };
+                    final Color drawColor = VoxelSnapshot.volumeColor(volumeRatio);
+                    // Vertex values are ordered as the hexahedron corners of the viewer
+                    final Vector3D[] corners = new Vector3D[8];
                     final Vertex[] vertexList = Vertex.values();
                     for (int i = 0; i < 8; ++i) {
                         Cube.CubeSnapshot cube = vertices.get(vertexList[i]);
-                        vPos.put(vertexList[i], normalVertices[i].times(.5 * cube.sideLength()).rotate(cube.rotation()).sum(cube.position()));
-                    }
-                    for (Side side : Side.values()) {
-                        viewer.drawTriangle(vPos.get(side.v1), vPos.get(side.v2), vPos.get(side.v3), drawColor);
-                        viewer.drawTriangle(vPos.get(side.v1), vPos.get(side.v3), vPos.get(side.v4), drawColor);
-                    }
-                    for (Edge edge : Edge.values()) {
-                        viewer.drawLine(vPos.get(edge.v1), vPos.get(edge.v2), Color.BLACK);
+                        corners[i] = new Vector3D((i >> 2) - .5, (i >> 1 & 1) - .5, (i & 1) - .5)
+                                .times(cube.sideLength()).rotate(cube.rotation()).sum(cube.position());
                     }
+                    viewer.drawHexahedron(corners, drawColor, Color.BLACK);
             }
     }
 
@@ -951,6 +915,11 @@ public class Voxel extends MultiBody
         }
     }
 
+    // 0 when fully contracted, 1 when fully expanded
+    public double volumeRatio(double t) {
+        return (currentVolume(t) - minVolume()) / (maxVolume() - minVolume());
+    }
+
     @Override
     public BodySnapshot snapshot(Ode4jEngine engine, Ode4jEngine.Mode mode) {
         EnumMap<Vertex, Cube.CubeSnapshot> vertexSnapshots = new EnumMap<>(Vertex.class);
@@ -966,7 +935,7 @@ public class Voxel extends MultiBody
                 return new VoxelSnapshotBase(
                         vertexSnapshots,
                         otherBodiesSnapshots,
-                        (currentVolume(engine.t()) - minVolume()) / (maxVolume() - minVolume())
+                        volumeRatio(engine.t())
                 );
             case DEBUG:
                 Map<UnorderedPair<Vertex>, List<JointSnapshot>> vertexToVertexJointSnapshots = new HashMap<>();
@@ -982,7 +951,7 @@ public class Voxel extends MultiBody
                         otherBodiesSnapshots,
                         vertexToVertexJointSnapshots,
                         ulteriorJointSnapshots,
-                        (currentVolume(engine.t()) - minVolume()) / (maxVolume() - minVolume())
+                        volumeRatio(engine.t())
                 );
         }
         throw new AssertionError("Problem with a switch: this point should be unreachable");
@@ -993,6 +962,17 @@ public class Voxel extends MultiBody
         for (Edge edge : Edge.values()) {
             denormalizedInput.put(edge, Math.max(Math.min(input.get(edge) * .5 + .5, 1d), 0d));
         }
+        // new rest lengths would be ignored by a resting voxel
+        boolean changed = false;
+        for (Edge edge : Edge.values()) {
+            if (Math.abs(lastControlInput[edge.ordinal()] - denormalizedInput.get(edge)) > WAKE_CONTROL_THRESHOLD) {
+                lastControlInput[edge.ordinal()] = denormalizedInput.get(edge);
+                changed = true;
+            }
+        }
+        if (changed) {
+            wake();
+        }
 
         // apply on edges
         for (Edge edge : Edge.values()) {
@@ -1082,13 +1062,9 @@ public class Voxel extends MultiBody
     public List<Action> emitSignals(Ode4jEngine engine, int channel, double[] values) {
         int index = -1;
         List<Action> outputActions = new ArrayList<>();
-        for (Vector3D sideCenter :
-                List.of(
-                        new Vector3D(0, 0, 1), new Vector3D(0, 0, -1),
-                        new Vector3D(0, 1, 0), new Vector3D(0, -1, 0),
-                        new Vector3D(1, 0, 0), new Vector3D(-1, 0, 0))) {
-            outputActions.add(
-                    new EmitSignal(this, sideCenter.rotate(angle(engine.t())), channel, values[++index]));
+        Orientation orientation = orientation(engine.t());
+        for (Vector3D sideCenter : SIDE_DIRECTIONS) {
+            outputActions.add(new EmitSignal(this, orientation.rotate(sideCenter), channel, values[++index]));
         }
         return outputActions;
     }
@@ -1098,11 +1074,12 @@ public class Voxel extends MultiBody
         if (commSensors.isEmpty()) {
             return;
         }
-        Vector3D relativeContactPosition =
-                contactPosition
-                        .vectorDistance(position(engine.t()))
-                        .normalize()
-                        .reverseRotate(angle(engine.t()));
+        MutableVector3D relativeContactPosition =
+                contactScratch
+                        .set(contactPosition)
+                        .sub(position(engine.t()))
+                        .normalize();
+        orientation(engine.t()).reverseRotate(relativeContactPosition);
         Side side = closestSide(relativeContactPosition);
         int channel = Math.toIntExact(~signal.getCollideBits());
         for (NearFieldCommunicationSensor sensor : commSensors) {
@@ -1112,23 +1089,25 @@ public class Voxel extends MultiBody
         }
     }
 
-    private static Side closestSide(Vector3D relativeContactPosition) {
-        Vector3D absoluteValues = relativeContactPosition.forEach(Math::abs);
+    private static Side closestSide(MutableVector3D relativeContactPosition) {
+        double absX = Math.abs(relativeContactPosition.x);
+        double absY = Math.abs(relativeContactPosition.y);
+        double absZ = Math.abs(relativeContactPosition.z);
         Side side;
-        if (absoluteValues.x() > absoluteValues.y() && absoluteValues.x() > absoluteValues.z()) {
-            if (relativeContactPosition.x() > 0) {
+        if (absX > absY && absX > absZ) {
+            if (relativeContactPosition.x > 0) {
                 side = Side.RIGHT;
             } else {
                 side = Side.LEFT;
             }
-        } else if (absoluteValues.y() > absoluteValues.x() && absoluteValues.y() > absoluteValues.z()) {
-            if (relativeContactPosition.y() > 0) {
+        } else if (absY > absX && absY > absZ) {
+            if (relativeContactPosition.y > 0) {
                 side = Side.FRONT;
             } else {
                 side = Side.BACK;
             }
         } else {
-            if (relativeContactPosition.z() > 0) {
+            if (relativeContactPosition.z > 0) {
                 side = Side.UP;
             } else {
                 side = Side.DOWN;
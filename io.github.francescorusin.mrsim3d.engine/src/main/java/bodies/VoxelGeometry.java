@@ -0,0 +1,170 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package bodies;
+
+import geometry.MutableVector3D;
+import geometry.Orientation;
+import geometry.Vector3D;
+import java.util.EnumMap;
+import org.ode4j.math.DVector3C;
+
+// geometry of a voxel, derived in a single pass from a primitive copy of the positions of its
+// eight vertex bodies; computed once per step and shared by the volume, the orientation, the
+// sensors and the attachment points of the voxel
+public final class VoxelGeometry {
+    private static final Voxel.Vertex[] VERTICES = Voxel.Vertex.values();
+    private static final Voxel.Edge[] EDGES = Voxel.Edge.values();
+    private static final Voxel.Side[] SIDES = Voxel.Side.values();
+    // offsets of the first coordinate of the vertices of each edge, side and tetrahedron
+    private static final int[] EDGE_VERTICES = new int[2 * EDGES.length];
+    private static final int[] SIDE_VERTICES = new int[4 * SIDES.length];
+    private static final int[] TETRAHEDRON_VERTICES = new int[4 * Voxel.Tetrahedron.values().length];
+
+    static {
+        for (Voxel.Edge edge : EDGES) {
+            EDGE_VERTICES[2 * edge.ordinal()] = 3 * edge.v1.ordinal();
+            EDGE_VERTICES[2 * edge.ordinal() + 1] = 3 * edge.v2.ordinal();
+        }
+        for (Voxel.Side side : SIDES) {
+            SIDE_VERTICES[4 * side.ordinal()] = 3 * side.v1.ordinal();
+            SIDE_VERTICES[4 * side.ordinal() + 1] = 3 * side.v2.ordinal();
+            SIDE_VERTICES[4 * side.ordinal() + 2] = 3 * side.v3.ordinal();
+            SIDE_VERTICES[4 * side.ordinal() + 3] = 3 * side.v4.ordinal();
+        }
+        for (Voxel.Tetrahedron tetrahedron : Voxel.Tetrahedron.values()) {
+            TETRAHEDRON_VERTICES[4 * tetrahedron.ordinal()] = 3 * tetrahedron.v1.ordinal();
+            TETRAHEDRON_VERTICES[4 * tetrahedron.ordinal() + 1] = 3 * tetrahedron.v2.ordinal();
+            TETRAHEDRON_VERTICES[4 * tetrahedron.ordinal() + 2] = 3 * tetrahedron.v3.ordinal();
+            TETRAHEDRON_VERTICES[4 * tetrahedron.ordinal() + 3] = 3 * tetrahedron.v4.ordinal();
+        }
+    }
+
+    private final double[] vertices = new double[3 * VERTICES.length];
+    private final double[] edgeLengths = new double[EDGES.length];
+    private final double[] faceCentroids = new double[3 * SIDES.length];
+    private final double[] faceNormals = new double[3 * SIDES.length];
+    private final MutableVector3D[] axes =
+            new MutableVector3D[]{new MutableVector3D(), new MutableVector3D(), new MutableVector3D()};
+    private double volume;
+    private Orientation orientation = Orientation.IDENTITY;
+
+    VoxelGeometry update(EnumMap<Voxel.Vertex, Cube> rigidBodies) {
+        for (Voxel.Vertex v : VERTICES) {
+            DVector3C position = rigidBodies.get(v).body.getPosition();
+            vertices[3 * v.ordinal()] = position.get0();
+            vertices[3 * v.ordinal() + 1] = position.get1();
+            vertices[3 * v.ordinal() + 2] = position.get2();
+        }
+        // the six tetrahedra share the main diagonal of the voxel and partition it
+        double sum = 0d;
+        for (int i = 0; i < TETRAHEDRON_VERTICES.length; i += 4) {
+            int o = TETRAHEDRON_VERTICES[i];
+            int a = TETRAHEDRON_VERTICES[i + 1];
+            int b = TETRAHEDRON_VERTICES[i + 2];
+            int c = TETRAHEDRON_VERTICES[i + 3];
+            double ax = vertices[a] - vertices[o], ay = vertices[a + 1] - vertices[o + 1], az = vertices[a + 2] - vertices[o + 2];
+            double bx = vertices[b] - vertices[o], by = vertices[b + 1] - vertices[o + 1], bz = vertices[b + 2] - vertices[o + 2];
+            double cx = vertices[c] - vertices[o], cy = vertices[c + 1] - vertices[o + 1], cz = vertices[c + 2] - vertices[o + 2];
+            sum += Math.abs((ay * bz - az * by) * cx + (az * bx - ax * bz) * cy + (ax * by - ay * bx) * cz);
+        }
+        volume = sum / 6d;
+        for (int e = 0; e < EDGES.length; ++e) {
+            int v1 = EDGE_VERTICES[2 * e];
+            int v2 = EDGE_VERTICES[2 * e + 1];
+            double dx = vertices[v2] - vertices[v1];
+            double dy = vertices[v2 + 1] - vertices[v1 + 1];
+            double dz = vertices[v2 + 2] - vertices[v1 + 2];
+            edgeLengths[e] = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+        // side vertices are listed counterclockwise from the outside, so the cross product of the
+        // diagonals points outwards
+        for (int s = 0; s < SIDES.length; ++s) {
+            int v1 = SIDE_VERTICES[4 * s];
+            int v2 = SIDE_VERTICES[4 * s + 1];
+            int v3 = SIDE_VERTICES[4 * s + 2];
+            int v4 = SIDE_VERTICES[4 * s + 3];
+            for (int axis = 0; axis < 3; ++axis) {
+                faceCentroids[3 * s + axis] =
+                        .25 * (vertices[v1 + axis] + vertices[v2 + axis] + vertices[v3 + axis] + vertices[v4 + axis]);
+            }
+            double d1x = vertices[v3] - vertices[v1], d1y = vertices[v3 + 1] - vertices[v1 + 1], d1z = vertices[v3 + 2] - vertices[v1 + 2];
+            double d2x = vertices[v4] - vertices[v2], d2y = vertices[v4 + 1] - vertices[v2 + 1], d2z = vertices[v4 + 2] - vertices[v2 + 2];
+            double nx = d1y * d2z - d1z * d2y;
+            double ny = d1z * d2x - d1x * d2z;
+            double nz = d1x * d2y - d1y * d2x;
+            double norm = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            faceNormals[3 * s] = nx / norm;
+            faceNormals[3 * s + 1] = ny / norm;
+            faceNormals[3 * s + 2] = nz / norm;
+        }
+        // the axes of the voxel, from the centroids of opposite sides, orthonormalized
+        MutableVector3D axis1 = centroidDifference(Voxel.Side.RIGHT, Voxel.Side.LEFT, axes[0]);
+        MutableVector3D axis2 = centroidDifference(Voxel.Side.FRONT, Voxel.Side.BACK, axes[1]);
+        MutableVector3D axis3 = centroidDifference(Voxel.Side.UP, Voxel.Side.DOWN, axes[2]);
+        axis1.normalize();
+        axis2.addScaled(axis1, -axis1.dot(axis2)).normalize();
+        double projection1 = axis1.dot(axis3);
+        double projection2 = axis2.dot(axis3);
+        axis3.addScaled(axis1, -projection1).addScaled(axis2, -projection2).normalize();
+        orientation = Orientation.fromAxes(axis1, axis2, axis3);
+        return this;
+    }
+
+    private MutableVector3D centroidDifference(Voxel.Side positive, Voxel.Side negative, MutableVector3D result) {
+        int p = 3 * positive.ordinal();
+        int n = 3 * negative.ordinal();
+        return result.set(
+                faceCentroids[p] - faceCentroids[n],
+                faceCentroids[p + 1] - faceCentroids[n + 1],
+                faceCentroids[p + 2] - faceCentroids[n + 2]);
+    }
+
+    public double volume() {
+        return volume;
+    }
+
+    public double edgeLength(Voxel.Edge edge) {
+        return edgeLengths[edge.ordinal()];
+    }
+
+    public Orientation orientation() {
+        return orientation;
+    }
+
+    public MutableVector3D vertex(Voxel.Vertex vertex, MutableVector3D result) {
+        int i = 3 * vertex.ordinal();
+        return result.set(vertices[i], vertices[i + 1], vertices[i + 2]);
+    }
+
+    public Vector3D faceCentroid(Voxel.Side side) {
+        int i = 3 * side.ordinal();
+        return new Vector3D(faceCentroids[i], faceCentroids[i + 1], faceCentroids[i + 2]);
+    }
+
+    public MutableVector3D faceCentroid(Voxel.Side side, MutableVector3D result) {
+        int i = 3 * side.ordinal();
+        return result.set(faceCentroids[i], faceCentroids[i + 1], faceCentroids[i + 2]);
+    }
+
+    public MutableVector3D faceNormal(Voxel.Side side, MutableVector3D result) {
+        int i = 3 * side.ordinal();
+        return result.set(faceNormals[i], faceNormals[i + 1], faceNormals[i + 2]);
+    }
+}
@@ -0,0 +1,283 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package controllers;
+
+import java.util.*;
+import java.util.function.DoubleUnaryOperator;
+
+// Multi-layer perceptrons sharing a topology, evaluated together: every member submits its input,
+// and the first member asking for its output triggers the evaluation of all the pending ones, with
+// their inputs stacked in a matrix and taken through the layers together.
+// Members compute what jsdynsym's MultiLayerPerceptron wrapped in OutStepped does, with parameters
+// laid out as in its getParams/setParams: layer by layer, neuron by neuron, bias first; as there,
+// the activation function is applied to the inputs too.
+public class BatchedMultiLayerPerceptron {
+  public enum ActivationFunction implements DoubleUnaryOperator {
+    TANH, RELU, SIGMOID, IDENTITY;
+
+    @Override
+    public double applyAsDouble(double x) {
+      return switch (this) {
+        case TANH -> Math.tanh(x);
+        case RELU -> Math.max(0d, x);
+        case SIGMOID -> 1d / (1d + Math.exp(-x));
+        case IDENTITY -> x;
+      };
+    }
+  }
+
+  private static final int ROW_BLOCK = 8;
+  private static final int NEURON_BLOCK = 32;
+
+  private final ActivationFunction activationFunction;
+  private final int[] neurons;
+  private final int nOfParams;
+  private final List<Member> pending;
+  // per layer activation matrices, row-major, grown on demand
+  private final double[][] activations;
+
+  public BatchedMultiLayerPerceptron(
+      ActivationFunction activationFunction, int nOfInputs, int[] innerNeurons, int nOfOutputs) {
+    this.activationFunction = activationFunction;
+    this.neurons = new int[innerNeurons.length + 2];
+    neurons[0] = nOfInputs;
+    System.arraycopy(innerNeurons, 0, neurons, 1, innerNeurons.length);
+    neurons[neurons.length - 1] = nOfOutputs;
+    int params = 0;
+    for (int l = 1; l < neurons.length; ++l) {
+      params += (neurons[l - 1] + 1) * neurons[l];
+    }
+    this.nOfParams = params;
+    this.pending = new ArrayList<>();
+    this.activations = new double[neurons.length][0];
+  }
+
+  public int nOfInputs() {
+    return neurons[0];
+  }
+
+  public int nOfOutputs() {
+    return neurons[neurons.length - 1];
+  }
+
+  public int nOfParams() {
+    return nOfParams;
+  }
+
+  // weights can be shared by any number of members: members sharing them are evaluated as a single
+  // matrix product
+  public final class Weights {
+    private final double[][] layers;
+
+    private Weights(double[] params) {
+      if (params.length != nOfParams) {
+        throw new IllegalArgumentException(
+            String.format("Attempted to set %d parameters on a perceptron with %d", params.length, nOfParams));
+      }
+      layers = new double[neurons.length - 1][];
+      int index = 0;
+      for (int l = 1; l < neurons.length; ++l) {
+        layers[l - 1] = Arrays.copyOfRange(params, index, index + (neurons[l - 1] + 1) * neurons[l]);
+        index += layers[l - 1].length;
+      }
+    }
+
+    public BatchedMultiLayerPerceptron batch() {
+      return BatchedMultiLayerPerceptron.this;
+    }
+
+    public double[] params() {
+      double[] params = new double[nOfParams];
+      int index = 0;
+      for (double[] layer : layers) {
+        System.arraycopy(layer, 0, params, index, layer.length);
+        index += layer.length;
+      }
+      return params;
+    }
+  }
+
+  public Weights weights(double[] params) {
+    return new Weights(params);
+  }
+
+  public Member member(Weights weights, double stepT) {
+    return new Member(weights, stepT);
+  }
+
+  public Member member(double[] params, double stepT) {
+    return member(weights(params), stepT);
+  }
+
+  public Member member(double[] params) {
+    return member(params, 0d);
+  }
+
+  // a single controller of the batch; as with OutStepped, the output is only recomputed if at least
+  // stepT time has passed since the last computation
+  public final class Member {
+    private final Weights weights;
+    private final double stepT;
+    private final double[] input;
+    private final double[] output;
+    private double lastT;
+    private boolean isPending;
+
+    private Member(Weights weights, double stepT) {
+      this.weights = weights;
+      this.stepT = stepT;
+      this.input = new double[nOfInputs()];
+      this.output = new double[nOfOutputs()];
+      this.lastT = Double.NEGATIVE_INFINITY;
+    }
+
+    public BatchedMultiLayerPerceptron batch() {
+      return BatchedMultiLayerPerceptron.this;
+    }
+
+    public int nOfInputs() {
+      return BatchedMultiLayerPerceptron.this.nOfInputs();
+    }
+
+    public int nOfOutputs() {
+      return BatchedMultiLayerPerceptron.this.nOfOutputs();
+    }
+
+    public void submit(double t, double[] input) {
+      if (input.length != this.input.length) {
+        throw new IllegalArgumentException(
+            String.format("Wrong input size: %d instead of %d", input.length, this.input.length));
+      }
+      submit(t, input, 0);
+    }
+
+    // submits the slice of input starting at offset, so that members can share an input buffer
+    public void submit(double t, double[] input, int offset) {
+      if (offset < 0 || offset + this.input.length > input.length) {
+        throw new IllegalArgumentException(
+            String.format(
+                "Input slice [%d, %d) out of a buffer of size %d", offset, offset + this.input.length, input.length));
+      }
+      synchronized (BatchedMultiLayerPerceptron.this) {
+        if (t - lastT < stepT || isPending) {
+          return;
+        }
+        lastT = t;
+        System.arraycopy(input, offset, this.input, 0, this.input.length);
+        isPending = true;
+        pending.add(this);
+      }
+    }
+
+    // the returned array is owned by the member and overwritten by the next evaluation
+    public double[] output() {
+      synchronized (BatchedMultiLayerPerceptron.this) {
+        if (isPending) {
+          evaluatePending();
+        }
+        return output;
+      }
+    }
+
+    public double[] step(double t, double[] input) {
+      submit(t, input);
+      return output();
+    }
+
+    public void reset() {
+      synchronized (BatchedMultiLayerPerceptron.this) {
+        lastT = Double.NEGATIVE_INFINITY;
+        Arrays.fill(output, 0d);
+      }
+    }
+  }
+
+  // all the pending members go through the layers together, as the rows of one activation matrix
+  // per layer; rows of members sharing the weights are contiguous, so that each group is a single
+  // tiled product, while each of the other members is a matrix-vector product within the same pass
+  private void evaluatePending() {
+    Map<Weights, List<Member>> groups = new LinkedHashMap<>();
+    for (Member member : pending) {
+      groups.computeIfAbsent(member.weights, w -> new ArrayList<>()).add(member);
+    }
+    final int rows = pending.size();
+    for (int l = 0; l < neurons.length; ++l) {
+      if (activations[l].length < rows * neurons[l]) {
+        activations[l] = new double[rows * neurons[l]];
+      }
+    }
+    List<Member> members = new ArrayList<>(rows);
+    List<Weights> groupWeights = new ArrayList<>(groups.size());
+    int[] groupStarts = new int[groups.size() + 1];
+    for (Map.Entry<Weights, List<Member>> group : groups.entrySet()) {
+      groupWeights.add(group.getKey());
+      members.addAll(group.getValue());
+      groupStarts[groupWeights.size()] = members.size();
+    }
+    for (int r = 0; r < rows; ++r) {
+      double[] input = members.get(r).input;
+      for (int i = 0; i < neurons[0]; ++i) {
+        activations[0][r * neurons[0] + i] = activationFunction.applyAsDouble(input[i]);
+      }
+    }
+    for (int l = 1; l < neurons.length; ++l) {
+      for (int g = 0; g < groupWeights.size(); ++g) {
+        multiply(
+            activations[l - 1],
+            groupWeights.get(g).layers[l - 1],
+            activations[l],
+            groupStarts[g],
+            groupStarts[g + 1],
+            neurons[l - 1],
+            neurons[l]);
+      }
+    }
+    final double[] lastLayer = activations[neurons.length - 1];
+    for (int r = 0; r < rows; ++r) {
+      Member member = members.get(r);
+      System.arraycopy(lastLayer, r * nOfOutputs(), member.output, 0, nOfOutputs());
+      member.isPending = false;
+    }
+    pending.clear();
+  }
+
+  // out[r][o] = f(w[o][0] + sum_i in[r][i] * w[o][i + 1]) for the rows in [rowStart, rowEnd), tiled
+  // so that a block of weight rows is reused across a block of input rows while still in cache
+  private void multiply(double[] in, double[] w, double[] out, int rowStart, int rowEnd, int nIn, int nOut) {
+    final int stride = nIn + 1;
+    for (int r0 = rowStart; r0 < rowEnd; r0 += ROW_BLOCK) {
+      final int rMax = Math.min(rowEnd, r0 + ROW_BLOCK);
+      for (int o0 = 0; o0 < nOut; o0 += NEURON_BLOCK) {
+        final int oMax = Math.min(nOut, o0 + NEURON_BLOCK);
+        for (int r = r0; r < rMax; ++r) {
+          final int inOffset = r * nIn;
+          for (int o = o0; o < oMax; ++o) {
+            final int wOffset = o * stride;
+            double sum = w[wOffset];
+            for (int i = 0; i < nIn; ++i) {
+              sum += in[inOffset + i] * w[wOffset + 1 + i];
+            }
+            out[r * nOut + o] = activationFunction.applyAsDouble(sum);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,302 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package distributed;
+
+import tasks.Metric;
+import tasks.Outcome;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Coordinator side of the distributed evaluation: workers connect to the server socket and receive
+// batches of genotypes, while apply blocks until the corresponding summary comes back. Workers only
+// send back the values of the given metrics and the descriptor, so the outcomes returned by apply
+// answer those metrics only. Evaluations
+// held by a worker that disconnects or stops sending heartbeats are queued again, up to maxAttempts
+// times.
+public class Coordinator implements Function<List<Double>, Outcome>, AutoCloseable {
+    private static final class PendingTask {
+        private final long id;
+        private final double[] genotype;
+        private final CompletableFuture<OutcomeSummary> future;
+        private int attempts;
+
+        private PendingTask(long id, double[] genotype) {
+            this.id = id;
+            this.genotype = genotype;
+            this.future = new CompletableFuture<>();
+        }
+    }
+
+    private final ServerSocket serverSocket;
+    private final List<Metric> metrics;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final BlockingDeque<PendingTask> queue;
+    private final AtomicLong idCounter;
+    private final Set<Socket> connections;
+    private volatile boolean isClosed;
+
+    public Coordinator(int port, List<Metric> metrics, int batchSize, int maxAttempts) throws IOException {
+        if (batchSize < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid coordinator: batch size %d, max attempts %d", batchSize, maxAttempts));
+        }
+        this.serverSocket = new ServerSocket(port);
+        this.metrics = List.copyOf(metrics);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.queue = new LinkedBlockingDeque<>();
+        this.idCounter = new AtomicLong();
+        this.connections = ConcurrentHashMap.newKeySet();
+        Thread acceptor = new Thread(this::accept, "coordinator-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public Coordinator(int port, List<Metric> metrics) throws IOException {
+        this(port, metrics, 4, 3);
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    public Future<OutcomeSummary> submit(double[] genotype) {
+        if (isClosed) {
+            throw new RejectedExecutionException("Coordinator is closed");
+        }
+        PendingTask task = new PendingTask(idCounter.getAndIncrement(), genotype);
+        queue.addLast(task);
+        return task.future;
+    }
+
+    @Override
+    public Outcome apply(List<Double> genotype) {
+        try {
+            return submit(genotype.stream().mapToDouble(d -> d).toArray()).get().toOutcome(metrics);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the evaluation");
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private void accept() {
+        while (!isClosed) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.add(socket);
+                Thread handler = new Thread(() -> serve(socket), "coordinator-" + socket.getRemoteSocketAddress());
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (!isClosed) {
+                    System.err.printf("Coordinator failed accepting a worker: %s%n", e.getMessage());
+                }
+            }
+        }
+    }
+
+    // the handler thread reads what the worker sends, while a writer thread sends tasks as soon as
+    // they are queued and the worker has room for them
+    private void serve(Socket socket) {
+        Map<Long, PendingTask> inFlight = new ConcurrentHashMap<>();
+        Thread writer = null;
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            socket.setSoTimeout(Protocol.HEARTBEAT_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            if (in.readByte() != Protocol.HELLO || in.readInt() != Protocol.VERSION) {
+                throw new IOException("Unexpected handshake");
+            }
+            // keep every worker thread busy while the next batch is on its way
+            Semaphore slots = new Semaphore(2 * Math.max(1, in.readInt()));
+            out.writeByte(Protocol.METRICS);
+            Protocol.writeMetrics(out, metrics);
+            out.flush();
+            writer = new Thread(() -> dispatch(socket, out, inFlight, slots), Thread.currentThread().getName() + "-writer");
+            writer.setDaemon(true);
+            writer.start();
+            while (!isClosed) {
+                byte type = in.readByte();
+                switch (type) {
+                    case Protocol.RESULT -> {
+                        PendingTask task = inFlight.remove(in.readLong());
+                        if (Objects.nonNull(task)) {
+                            slots.release();
+                        }
+                        if (in.readBoolean()) {
+                            OutcomeSummary summary = OutcomeSummary.read(in);
+                            if (summary.values().length != metrics.size()) {
+                                throw new IOException(String.format(
+                                        "Summary with %d values instead of %d", summary.values().length, metrics.size()));
+                            }
+                            if (Objects.nonNull(task)) {
+                                task.future.complete(summary);
+                            }
+                        } else {
+                            String message = in.readUTF();
+                            if (Objects.nonNull(task)) {
+                                task.future.completeExceptionally(new RuntimeException(message));
+                            }
+                        }
+                    }
+                    case Protocol.HEARTBEAT -> {
+                    }
+                    default -> throw new IOException(String.format("Unexpected message type %d", type));
+                }
+            }
+            stop(writer);
+            writer = null;
+            synchronized (out) {
+                out.writeByte(Protocol.SHUTDOWN);
+                out.flush();
+            }
+        } catch (IOException e) {
+            if (!isClosed) {
+                System.err.printf("Lost worker %s: %s%n", socket.getRemoteSocketAddress(), e.getMessage());
+            }
+        } finally {
+            // once the writer is stopped, every task taken from the queue is in flight
+            stop(writer);
+            connections.remove(socket);
+            for (PendingTask task : inFlight.values()) {
+                retry(task);
+            }
+        }
+    }
+
+    private void dispatch(Socket socket, DataOutputStream out, Map<Long, PendingTask> inFlight, Semaphore slots) {
+        try {
+            while (!isClosed) {
+                slots.acquire();
+                PendingTask first;
+                try {
+                    first = queue.takeFirst();
+                } catch (InterruptedException e) {
+                    slots.release();
+                    throw e;
+                }
+                List<PendingTask> batch = new ArrayList<>();
+                PendingTask task = first;
+                while (true) {
+                    if (task.future.isDone()) {
+                        slots.release();
+                    } else {
+                        batch.add(task);
+                        inFlight.put(task.id, task);
+                    }
+                    if (batch.size() >= batchSize || !slots.tryAcquire()) {
+                        break;
+                    }
+                    task = queue.pollFirst();
+                    if (Objects.isNull(task)) {
+                        slots.release();
+                        break;
+                    }
+                }
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                synchronized (out) {
+                    out.writeByte(Protocol.TASKS);
+                    out.writeInt(batch.size());
+                    for (PendingTask sent : batch) {
+                        out.writeLong(sent.id);
+                        Protocol.writeGenotype(out, sent.genotype);
+                    }
+                    out.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            // stopped by the handler
+        } catch (IOException e) {
+            // closing the socket makes the handler fail and queue the tasks in flight again
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static void stop(Thread writer) {
+        if (Objects.isNull(writer)) {
+            return;
+        }
+        writer.interrupt();
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void retry(PendingTask task) {
+        if (task.future.isDone()) {
+            return;
+        }
+        if (isClosed) {
+            task.future.cancel(false);
+        } else if (++task.attempts >= maxAttempts) {
+            task.future.completeExceptionally(
+                    new RuntimeException(String.format("Evaluation %d lost %d times", task.id, task.attempts)));
+        } else {
+            queue.addFirst(task);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        isClosed = true;
+        serverSocket.close();
+        // workers are told to shut down by their handlers at the next message; give them the time of a
+        // heartbeat before dropping the connections
+        try {
+            Thread.sleep(2L * Protocol.HEARTBEAT_INTERVAL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Socket socket : connections) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed by its handler
+            }
+        }
+        for (PendingTask task : queue) {
+            task.future.cancel(false);
+        }
+        queue.clear();
+    }
+}
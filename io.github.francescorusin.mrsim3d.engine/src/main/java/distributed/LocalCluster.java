@@ -0,0 +1,89 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package distributed;
+
+import experiments.BipedExperiment;
+import tasks.Locomotion;
+import tasks.Outcome;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+// Runs a coordinator and several workers on localhost, has them evaluate random genotypes and checks
+// that every outcome matches the one computed locally; arguments: [nOfWorkers] [nOfThreads]
+// [nOfGenotypes] [duration] [seed]
+public class LocalCluster {
+    private LocalCluster() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int nOfWorkers = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        final int nOfThreads = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        final int nOfGenotypes = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+        final double duration = args.length > 3 ? Double.parseDouble(args[3]) : 2d;
+        final Random random = new Random(args.length > 4 ? Long.parseLong(args[4]) : 0L);
+        Locomotion task = new Locomotion(duration);
+        List<double[]> genotypes = new ArrayList<>();
+        for (int i = 0; i < nOfGenotypes; ++i) {
+            genotypes.add(random.doubles(BipedExperiment.N_OF_GENES, -1d, 1d).toArray());
+        }
+        int mismatches = check(
+                nOfWorkers,
+                nOfThreads,
+                genotypes,
+                g -> task.run(() -> BipedExperiment.robot(g.stream().mapToDouble(d -> d).toArray())));
+        System.out.printf("%d genotypes on %d workers: %d mismatches%n", nOfGenotypes, nOfWorkers, mismatches);
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+
+    // number of genotypes whose remote outcome differs from the local one in the values of the
+    // metrics of the experiment or in its descriptor
+    public static int check(
+            int nOfWorkers, int nOfThreads, List<double[]> genotypes, Function<List<Double>, Outcome> evaluator
+    ) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(nOfWorkers);
+        try (Coordinator coordinator = new Coordinator(0, BipedExperiment.METRICS)) {
+            for (int w = 0; w < nOfWorkers; ++w) {
+                workers.submit(() -> {
+                    new Worker("localhost", coordinator.port(), nOfThreads, evaluator).run();
+                    return null;
+                });
+            }
+            List<Future<OutcomeSummary>> remote = new ArrayList<>();
+            for (double[] genotype : genotypes) {
+                remote.add(coordinator.submit(genotype));
+            }
+            int mismatches = 0;
+            for (int i = 0; i < genotypes.size(); ++i) {
+                OutcomeSummary expected = OutcomeSummary.of(
+                        evaluator.apply(Arrays.stream(genotypes.get(i)).boxed().toList()), BipedExperiment.METRICS);
+                OutcomeSummary actual = remote.get(i).get();
+                if (!Arrays.equals(expected.values(), actual.values())
+                        || !Arrays.equals(expected.descriptor(), actual.descriptor())) {
+                    ++mismatches;
+                }
+            }
+            return mismatches;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+}
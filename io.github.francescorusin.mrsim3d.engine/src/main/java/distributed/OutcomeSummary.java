@@ -0,0 +1,80 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package distributed;
+
+import tasks.EvaluationCache;
+import tasks.Metric;
+import tasks.Outcome;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+// What travels back from a worker in place of the full outcome: the values of the metrics the
+// coordinator asked for, in its order, plus the behavior descriptor. The coordinator rebuilds a
+// summarized outcome from it, which answers those metrics only.
+public record OutcomeSummary(double[] values, double[] descriptor) {
+    // outcomes are persisted in the same form in which they travel
+    public static EvaluationCache.Codec<Outcome> codec(List<Metric> metrics) {
+        return new EvaluationCache.Codec<>() {
+            @Override
+            public void write(Outcome outcome, DataOutput out) throws IOException {
+                OutcomeSummary.of(outcome, metrics).write(out);
+            }
+
+            @Override
+            public Outcome read(DataInput in) throws IOException {
+                return OutcomeSummary.read(in).toOutcome(metrics);
+            }
+        };
+    }
+
+    public static OutcomeSummary of(Outcome outcome, List<Metric> metrics) {
+        return new OutcomeSummary(outcome.get(metrics), outcome.descriptor());
+    }
+
+    public Outcome toOutcome(List<Metric> metrics) {
+        return Outcome.summarized(metrics, values, descriptor);
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(values.length);
+        for (double value : values) {
+            out.writeDouble(value);
+        }
+        out.writeInt(descriptor.length);
+        for (double d : descriptor) {
+            out.writeDouble(d);
+        }
+    }
+
+    public static OutcomeSummary read(DataInput in) throws IOException {
+        double[] values = new double[in.readInt()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = in.readDouble();
+        }
+        double[] descriptor = new double[in.readInt()];
+        for (int i = 0; i < descriptor.length; ++i) {
+            descriptor[i] = in.readDouble();
+        }
+        return new OutcomeSummary(values, descriptor);
+    }
+}
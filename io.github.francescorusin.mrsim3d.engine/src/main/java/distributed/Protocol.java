@@ -0,0 +1,103 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package distributed;
+
+import geometry.Vector3D;
+import tasks.Metric;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// Binary protocol between coordinator and workers; every message starts with its type byte.
+// HELLO (worker -> coordinator): version, number of evaluation threads
+// METRICS (coordinator -> worker): count, then each metric to summarize outcomes with; sent once,
+// in reply to HELLO
+// TASKS (coordinator -> worker): count, then for each task its id and genotype
+// RESULT (worker -> coordinator): task id, success flag, then summary or error message
+// HEARTBEAT (worker -> coordinator): nothing else, sent periodically while connected
+// SHUTDOWN (coordinator -> worker): nothing else, the worker closes the connection and exits
+public final class Protocol {
+    public static final int VERSION = 5;
+    public static final byte HELLO = 1;
+    public static final byte TASKS = 2;
+    public static final byte RESULT = 3;
+    public static final byte HEARTBEAT = 4;
+    public static final byte SHUTDOWN = 5;
+    public static final byte METRICS = 6;
+
+    public static final int HEARTBEAT_INTERVAL_MILLIS = 500;
+    public static final int HEARTBEAT_TIMEOUT_MILLIS = 10_000;
+
+    private Protocol() {
+    }
+
+    public static void writeGenotype(DataOutput out, double[] genotype) throws IOException {
+        out.writeInt(genotype.length);
+        for (double gene : genotype) {
+            out.writeDouble(gene);
+        }
+    }
+
+    public static double[] readGenotype(DataInput in) throws IOException {
+        double[] genotype = new double[in.readInt()];
+        for (int i = 0; i < genotype.length; ++i) {
+            genotype[i] = in.readDouble();
+        }
+        return genotype;
+    }
+
+    // enums by ordinal, the missing target and axis as a negative marker
+    public static void writeMetrics(DataOutput out, List<Metric> metrics) throws IOException {
+        out.writeInt(metrics.size());
+        for (Metric metric : metrics) {
+            out.writeByte(metric.quantity().ordinal());
+            out.writeBoolean(Objects.nonNull(metric.target()));
+            if (Objects.nonNull(metric.target())) {
+                out.writeDouble(metric.target().x());
+                out.writeDouble(metric.target().y());
+                out.writeDouble(metric.target().z());
+            }
+            out.writeByte(Objects.isNull(metric.axis()) ? -1 : metric.axis().ordinal());
+            out.writeByte(metric.agentSelector().ordinal());
+            out.writeByte(metric.timeOperator().ordinal());
+        }
+    }
+
+    public static List<Metric> readMetrics(DataInput in) throws IOException {
+        int count = in.readInt();
+        List<Metric> metrics = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            Metric.Quantity quantity = Metric.Quantity.values()[in.readByte()];
+            Vector3D target = in.readBoolean() ? new Vector3D(in.readDouble(), in.readDouble(), in.readDouble()) : null;
+            byte axis = in.readByte();
+            metrics.add(new Metric(
+                    quantity,
+                    target,
+                    axis < 0 ? null : Metric.Axis.values()[axis],
+                    Metric.AgentSelector.values()[in.readByte()],
+                    Metric.TimeOperator.values()[in.readByte()]));
+        }
+        return metrics;
+    }
+}
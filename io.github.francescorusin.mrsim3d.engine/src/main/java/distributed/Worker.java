@@ -0,0 +1,132 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package distributed;
+
+import tasks.Metric;
+import tasks.Outcome;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+// Worker side of the distributed evaluation: evaluates the genotypes received from the coordinator on
+// a local thread pool and sends back the outcome summaries, with heartbeats in between; outcomes are
+// summarized with the metrics the coordinator sends right after the handshake
+public class Worker {
+    @FunctionalInterface
+    private interface Message {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private final String host;
+    private final int port;
+    private final int nOfThreads;
+    private final Function<List<Double>, Outcome> evaluator;
+
+    public Worker(String host, int port, int nOfThreads, Function<List<Double>, Outcome> evaluator) {
+        this.host = host;
+        this.port = port;
+        this.nOfThreads = nOfThreads;
+        this.evaluator = evaluator;
+    }
+
+    // returns when the coordinator asks to shut down or the connection is lost
+    public void run() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(nOfThreads);
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor();
+        try (Socket socket = new Socket(host, port);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            socket.setTcpNoDelay(true);
+            send(socket, out, o -> {
+                o.writeByte(Protocol.HELLO);
+                o.writeInt(Protocol.VERSION);
+                o.writeInt(nOfThreads);
+            });
+            heartbeat.scheduleAtFixedRate(
+                    () -> send(socket, out, o -> o.writeByte(Protocol.HEARTBEAT)),
+                    Protocol.HEARTBEAT_INTERVAL_MILLIS,
+                    Protocol.HEARTBEAT_INTERVAL_MILLIS,
+                    TimeUnit.MILLISECONDS);
+            if (in.readByte() != Protocol.METRICS) {
+                throw new IOException("Unexpected handshake");
+            }
+            List<Metric> metrics = Protocol.readMetrics(in);
+            while (true) {
+                byte type = in.readByte();
+                if (type == Protocol.SHUTDOWN) {
+                    return;
+                }
+                if (type != Protocol.TASKS) {
+                    throw new IOException(String.format("Unexpected message type %d", type));
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; ++i) {
+                    long id = in.readLong();
+                    double[] genotype = Protocol.readGenotype(in);
+                    executor.submit(() -> evaluate(socket, out, id, genotype, metrics));
+                }
+            }
+        } finally {
+            heartbeat.shutdownNow();
+            executor.shutdownNow();
+        }
+    }
+
+    private void evaluate(Socket socket, DataOutputStream out, long id, double[] genotype, List<Metric> metrics) {
+        OutcomeSummary summary;
+        try {
+            summary = OutcomeSummary.of(evaluator.apply(Arrays.stream(genotype).boxed().toList()), metrics);
+        } catch (Throwable e) {
+            // errors too are reported, as a task with no result would be waited for forever
+            send(socket, out, o -> {
+                o.writeByte(Protocol.RESULT);
+                o.writeLong(id);
+                o.writeBoolean(false);
+                o.writeUTF(String.valueOf(e));
+            });
+            return;
+        }
+        send(socket, out, o -> {
+            o.writeByte(Protocol.RESULT);
+            o.writeLong(id);
+            o.writeBoolean(true);
+            summary.write(o);
+        });
+    }
+
+    private static void send(Socket socket, DataOutputStream out, Message message) {
+        synchronized (out) {
+            try {
+                message.write(out);
+                out.flush();
+            } catch (IOException e) {
+                // closing the socket makes the reading loop fail and the worker stop
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.ode4j.ode.DJoint;
+
+// reusable ODE joint feedback objects, each with the indexes of the two bodies it reports to (-1
+// for none) in the order in which ODE stores them, and whether the joint is a contact with the
+// terrain; feedback is only attached to joints whose forces are read, as ODE skips the others
+final class JointFeedbackPool {
+  private final List<DJoint.DJointFeedback> feedbacks;
+  private int[] owners;
+  private boolean[] withTerrain;
+  private int used;
+
+  JointFeedbackPool() {
+    feedbacks = new ArrayList<>();
+    owners = new int[0];
+    withTerrain = new boolean[0];
+  }
+
+  DJoint.DJointFeedback acquire(int owner1, int owner2, boolean withTerrain) {
+    if (used == feedbacks.size()) {
+      feedbacks.add(new DJoint.DJointFeedback());
+      owners = Arrays.copyOf(owners, 2 * feedbacks.size());
+      this.withTerrain = Arrays.copyOf(this.withTerrain, feedbacks.size());
+    }
+    owners[2 * used] = owner1;
+    owners[2 * used + 1] = owner2;
+    this.withTerrain[used] = withTerrain;
+    return feedbacks.get(used++);
+  }
+
+  void releaseAll() {
+    used = 0;
+  }
+
+  int size() {
+    return used;
+  }
+
+  DJoint.DJointFeedback get(int i) {
+    return feedbacks.get(i);
+  }
+
+  int owner1(int i) {
+    return owners[2 * i];
+  }
+
+  int owner2(int i) {
+    return owners[2 * i + 1];
+  }
+
+  boolean isWithTerrain(int i) {
+    return withTerrain[i];
+  }
+}
@@ -20,8 +20,10 @@ package engine; /*-
 
 import actions.Action;
 import ad.Attachable;
+import agents.BatchableAgent;
 import agents.EmbodiedAgent;
 import bodies.*;
+import geometry.MutableVector3D;
 import geometry.Vector3D;
 import java.util.*;
 import java.util.stream.Stream;
@@ -32,8 +34,6 @@ import joints.SpringJoint;
 import org.ode4j.math.DVector3;
 import org.ode4j.math.DVector3C;
 import org.ode4j.ode.*;
-import sensors.ContactSensor;
-import sensors.Sensor;
 import snapshot.InstantSnapshot;
 import terrains.FlatTerrain;
 import terrains.Terrain;
@@ -50,9 +50,11 @@ public class Ode4jEngine {
       double attractForceModule,
       double attachSpringConstant,
       double attachDampingConstant,
-      double nfcRange) {
+      double nfcRange,
+      Stepper stepper,
+      AutoDisable autoDisable) {
 
-    public Configuration(Terrain terrain, Mode mode) {
+    public Configuration(Terrain terrain, Mode mode, Stepper stepper, AutoDisable autoDisable) {
       this(
               new Vector3D(0d, 0d, -9.81),
               terrain,
@@ -63,20 +65,105 @@ public class Ode4jEngine {
               8d,
               Voxel.DEFAULT_SPRING_CONSTANT * 10,
               Voxel.DEFAULT_DAMPING_CONSTANT * 10,
-              Voxel.DEFAULT_SIDE_LENGTH * 1.5
+              Voxel.DEFAULT_SIDE_LENGTH * 1.5,
+              stepper,
+              autoDisable
       );
     }
 
+    public Configuration(Terrain terrain, Mode mode, Stepper stepper) {
+      this(terrain, mode, stepper, AutoDisable.NEVER);
+    }
+
+    public Configuration(Terrain terrain, Mode mode) {
+      this(terrain, mode, Stepper.DEFAULT);
+    }
+
     public Configuration(Mode mode) {
       this(new FlatTerrain(), mode);
     }
   }
 
+  // Stepping method of the world: QUICK_STEP is the iterative solver (cost linear in the number of
+  // constraints, accuracy depending on iterations and over-relaxation), STEP is the exact (and much
+  // slower) big matrix solver, only sensible for small scenes or reference runs
+  public record Stepper(Method method, int iterations, double overRelaxation) {
+    public enum Method {
+      QUICK_STEP, STEP
+    }
+
+    // ODE defaults
+    public static final Stepper DEFAULT = new Stepper(Method.QUICK_STEP, 20, 1.3);
+    public static final Stepper FAST = new Stepper(Method.QUICK_STEP, 8, 1.3);
+    public static final Stepper ACCURATE = new Stepper(Method.QUICK_STEP, 60, 1d);
+    public static final Stepper EXACT = new Stepper(Method.STEP, 0, 1d);
+
+    public Stepper {
+      if (method == Method.QUICK_STEP && iterations < 1) {
+        throw new IllegalArgumentException(
+                String.format("Attempted to use quick step with invalid number of iterations (%d)", iterations));
+      }
+      if (overRelaxation <= 0d || overRelaxation >= 2d) {
+        throw new IllegalArgumentException(
+                String.format("Attempted to use invalid over-relaxation parameter (%.4f)", overRelaxation));
+      }
+    }
+
+    public static Stepper quickStep(int iterations) {
+      return new Stepper(Method.QUICK_STEP, iterations, DEFAULT.overRelaxation);
+    }
+  }
+
+  // Thresholds under which a body is considered at rest: a body is disabled (i.e., not integrated)
+  // after its velocities stay below the thresholds for both the given number of steps and the given
+  // amount of simulated time; disabled bodies are still collided, so that they have their contacts
+  // if an action wakes them up before the next step
+  public record AutoDisable(
+      boolean enabled,
+      double linearThreshold,
+      double angularThreshold,
+      int steps,
+      double time,
+      int averageSamples) {
+    public static final AutoDisable NEVER = new AutoDisable(false, 0d, 0d, 0, 0d, 1);
+    // ODE defaults
+    public static final AutoDisable DEFAULT = new AutoDisable(true, .01, .01, 10, 0d, 1);
+
+    public AutoDisable {
+      if (linearThreshold < 0d || angularThreshold < 0d || steps < 0 || time < 0d || averageSamples < 1) {
+        throw new IllegalArgumentException("Attempted to use invalid auto-disable parameters");
+      }
+    }
+
+    public void apply(DWorld world) {
+      world.setAutoDisableFlag(enabled);
+      world.setAutoDisableLinearThreshold(linearThreshold);
+      world.setAutoDisableAngularThreshold(angularThreshold);
+      world.setAutoDisableSteps(steps);
+      world.setAutoDisableTime(time);
+      world.setAutoDisableAverageSamplesCount(averageSamples);
+    }
+
+    public void apply(DBody body) {
+      body.setAutoDisableFlag(enabled);
+      body.setAutoDisableLinearThreshold(linearThreshold);
+      body.setAutoDisableAngularThreshold(angularThreshold);
+      body.setAutoDisableSteps(steps);
+      body.setAutoDisableTime(time);
+      body.setAutoDisableAverageSamplesCount(averageSamples);
+    }
+  }
+
   // The mode defines what is saved in the snapshots: debug mode saves everything, display mode saves what is needed to draw, computation mode the bare minimum
   public enum Mode {
     DEBUG, DISPLAY, COMPUTATION
   }
 
+  // what an agent body touched: the terrain, another agent, or a passive body
+  public enum ContactKind {
+    TERRAIN, AGENT, OBJECT
+  }
+
   static {
     OdeHelper.initODE2(0);
   }
@@ -86,6 +173,7 @@ public class Ode4jEngine {
   private final DSpace signalSpace;
   private final DJointGroup collisionGroup;
   private double time;
+  private long nOfSteps;
   private final double timeStep;
   public final List<EmbodiedAgent> agents;
   private final Map<DGeom, AbstractBody> agentGeometryMapper;
@@ -96,6 +184,26 @@ public class Ode4jEngine {
   private final Map<DGeom, List<DGeom>> collisionExceptions;
   private final Map<UnorderedPair<Body>, List<SpringJoint>> springJoints;
   private final Map<UnorderedPair<Body>, List<FixedJoint>> fixedJoints;
+  // actions of every agent, in agent order, between sense and actuate; null for the agents whose
+  // controllers are waiting for the batched evaluation
+  private final List<List<Action>> pendingActions;
+  // index in agents of the agent owning each geometry, and contacts of each agent in the last step
+  private final Map<DGeom, Integer> geometryAgentIndexes;
+  private int[] agentContacts;
+  // per-step contact state of the bodies of the agents, by body index: number of contacts with
+  // anything but the agent itself, kinds of the touched objects as bits, sum of the contact normals
+  // pointing towards the body, magnitude of the contact forces applied to it in the last step and
+  // force applied to it by the terrain in the last step
+  private final Map<DGeom, Integer> geometryBodyIndexes;
+  private int[] bodyContacts;
+  private int[] bodyContactKinds;
+  private double[] bodyContactNormals;
+  private double[] bodyContactForces;
+  private double[] bodyTerrainForces;
+  private boolean[] bodyContactForceTracking;
+  private final JointFeedbackPool contactFeedbacks;
+  // feedback objects of spring joints that are no longer tracked, to be reused
+  private final Deque<DJoint.DJointFeedback> spareJointFeedbacks;
   private int IDCounter;
 
 
@@ -108,6 +216,11 @@ public class Ode4jEngine {
     world.setGravity(configuration.gravity.x(), configuration.gravity.y(), configuration.gravity.z());
     world.setERP(1d - 1e-5);
     world.setCFM(1e-5);
+    if (configuration.stepper.method() == Stepper.Method.QUICK_STEP) {
+      world.setQuickStepNumIterations(configuration.stepper.iterations());
+      world.setQuickStepW(configuration.stepper.overRelaxation());
+    }
+    configuration.autoDisable.apply(world);
     agents = new ArrayList<>();
     agentGeometryMapper = new HashMap<>();
     agentMapper = new HashMap<>();
@@ -117,6 +230,18 @@ public class Ode4jEngine {
     springJoints = new HashMap<>();
     fixedJoints = new HashMap<>();
     collisionExceptions = new HashMap<>();
+    pendingActions = new ArrayList<>();
+    geometryAgentIndexes = new HashMap<>();
+    agentContacts = new int[0];
+    geometryBodyIndexes = new HashMap<>();
+    bodyContacts = new int[0];
+    bodyContactKinds = new int[0];
+    bodyContactNormals = new double[0];
+    bodyContactForces = new double[0];
+    bodyTerrainForces = new double[0];
+    bodyContactForceTracking = new boolean[0];
+    contactFeedbacks = new JointFeedbackPool();
+    spareJointFeedbacks = new ArrayDeque<>();
     configuration.terrain.generate(bodySpace);
     time = 0d;
     timeStep = 1d / 60d;
@@ -158,30 +283,55 @@ public class Ode4jEngine {
     contact.surface.mode = 0;
     contact.surface.mu = OdeConstants.dInfinity;
     if (0 != OdeHelper.collide(o1, o2, 1, contacts.getGeomBuffer())) {
-      OdeHelper.createContactJoint(world, collisionGroup, contact)
-          .attach(o1.getBody(), o2.getBody());
-      if (Objects.isNull(agentGeometryMapper.get(o1))
-          || Objects.isNull(agentGeometryMapper.get(o2))
-          || agentMapper.get(agentGeometryMapper.get(o1))
-              != agentMapper.get(agentGeometryMapper.get(o2))) {
-        if (agentGeometryMapper.get(o1) instanceof SensingBody sb) {
-          for (Sensor s : sb.sensors()) {
-            if (s instanceof ContactSensor cs) {
-              cs.detectContact();
-            }
-          }
+      DContactJoint contactJoint = OdeHelper.createContactJoint(world, collisionGroup, contact);
+      contactJoint.attach(o1.getBody(), o2.getBody());
+      Integer agent1 = geometryAgentIndexes.get(o1);
+      Integer agent2 = geometryAgentIndexes.get(o2);
+      if (!Objects.equals(agent1, agent2)) {
+        if (Objects.nonNull(agent1)) {
+          ++agentContacts[agent1];
+        }
+        if (Objects.nonNull(agent2)) {
+          ++agentContacts[agent2];
+        }
+        // the normal pushes o1 away from o2
+        int body1 = geometryBodyIndexes.getOrDefault(o1, -1);
+        int body2 = geometryBodyIndexes.getOrDefault(o2, -1);
+        if (body1 >= 0) {
+          recordContact(body1, contactKind(o2, agent2), contact.geom.normal, 1d);
+        }
+        if (body2 >= 0) {
+          recordContact(body2, contactKind(o1, agent1), contact.geom.normal, -1d);
         }
-        if (agentGeometryMapper.get(o2) instanceof SensingBody sb) {
-          for (Sensor s : sb.sensors()) {
-            if (s instanceof ContactSensor cs) {
-              cs.detectContact();
-            }
-          }
+        if ((body1 >= 0 && bodyContactForceTracking[body1])
+            || (body2 >= 0 && bodyContactForceTracking[body2])) {
+          boolean withTerrain = Objects.isNull(o1.getBody()) || Objects.isNull(o2.getBody());
+          // ODE stores a joint attached to a single body as if it were the first one, and reports
+          // the force applied to it in f1
+          contactJoint.setFeedback(
+              Objects.isNull(o1.getBody())
+                  ? contactFeedbacks.acquire(body2, -1, withTerrain)
+                  : contactFeedbacks.acquire(body1, body2, withTerrain));
         }
       }
     }
   }
 
+  private static ContactKind contactKind(DGeom other, Integer otherAgent) {
+    if (Objects.nonNull(otherAgent)) {
+      return ContactKind.AGENT;
+    }
+    return Objects.isNull(other.getBody()) ? ContactKind.TERRAIN : ContactKind.OBJECT;
+  }
+
+  private void recordContact(int body, ContactKind kind, DVector3C normal, double sign) {
+    ++bodyContacts[body];
+    bodyContactKinds[body] |= 1 << kind.ordinal();
+    bodyContactNormals[3 * body] += sign * normal.get0();
+    bodyContactNormals[3 * body + 1] += sign * normal.get1();
+    bodyContactNormals[3 * body + 2] += sign * normal.get2();
+  }
+
   private void signalCollision(Object data, DGeom o1, DGeom o2) {
     if (agentGeometryMapper.get(o1) instanceof SignalDetector detector
         && signalDetectors.get(o1)
@@ -208,6 +358,11 @@ public class Ode4jEngine {
     return time;
   }
 
+  // monotonically increasing step counter, used to stamp per-step caches of bodies and agents
+  public long nOfSteps() {
+    return nOfSteps;
+  }
+
   public InstantSnapshot currentState() {
     return new InstantSnapshot(
             configuration,
@@ -228,8 +383,43 @@ public class Ode4jEngine {
   }
 
   public InstantSnapshot tick() {
-    world.quickStep(timeStep);
+    stepPhysics();
+    sense();
+    actuate();
+    return currentState();
+  }
+
+  // the three phases of a tick are exposed so that several engines can be advanced in lockstep,
+  // with the batched controllers of all of them evaluated between sense and actuate
+  public void stepPhysics() {
+    switch (configuration.stepper.method()) {
+      case QUICK_STEP -> world.quickStep(timeStep);
+      case STEP -> world.step(timeStep);
+    }
+    ++nOfSteps;
+    // contact joints report the forces of the step just taken before being discarded
+    Arrays.fill(bodyContactForces, 0d);
+    Arrays.fill(bodyTerrainForces, 0d);
+    for (int i = 0; i < contactFeedbacks.size(); ++i) {
+      DJoint.DJointFeedback feedback = contactFeedbacks.get(i);
+      if (contactFeedbacks.owner1(i) >= 0) {
+        bodyContactForces[contactFeedbacks.owner1(i)] += feedback.f1.length();
+        if (contactFeedbacks.isWithTerrain(i)) {
+          bodyTerrainForces[3 * contactFeedbacks.owner1(i)] += feedback.f1.get0();
+          bodyTerrainForces[3 * contactFeedbacks.owner1(i) + 1] += feedback.f1.get1();
+          bodyTerrainForces[3 * contactFeedbacks.owner1(i) + 2] += feedback.f1.get2();
+        }
+      }
+      if (contactFeedbacks.owner2(i) >= 0) {
+        bodyContactForces[contactFeedbacks.owner2(i)] += feedback.f2.length();
+      }
+    }
+    contactFeedbacks.releaseAll();
     collisionGroup.clear();
+    Arrays.fill(agentContacts, 0);
+    Arrays.fill(bodyContacts, 0);
+    Arrays.fill(bodyContactKinds, 0);
+    Arrays.fill(bodyContactNormals, 0d);
     bodySpace.collide(0, this::bodyCollision);
     OdeHelper.spaceCollide2(bodySpace, signalSpace, 0, this::signalCollision);
     for (DGeom signal : signalSpace.getGeoms()) {
@@ -237,14 +427,80 @@ public class Ode4jEngine {
     }
     signalEmitters.clear();
     time += timeStep;
-    List<Action> actions = new ArrayList<>();
+  }
+
+  public void sense() {
+    pendingActions.clear();
     for (EmbodiedAgent agent : agents) {
-      actions.addAll(agent.act(this));
+      if (agent instanceof BatchableAgent batchableAgent && batchableAgent.submitControllerInput(this)) {
+        pendingActions.add(null);
+      } else {
+        pendingActions.add(agent.act(this));
+      }
+    }
+  }
+
+  // actions are executed in agent order, whether their agents were batched or not
+  public void actuate() {
+    for (int i = 0; i < pendingActions.size(); ++i) {
+      if (Objects.isNull(pendingActions.get(i))) {
+        pendingActions.set(i, ((BatchableAgent) agents.get(i)).applyControllerOutput(this));
+      }
     }
-    for (Action action : actions) {
-      action.execute(this);
+    for (List<Action> actions : pendingActions) {
+      for (Action action : actions) {
+        action.execute(this);
+      }
     }
-    return currentState();
+    pendingActions.clear();
+  }
+
+  // number of contacts between the geometries of the agent and anything else in the last step
+  public int contacts(int agentIndex) {
+    return agentContacts[agentIndex];
+  }
+
+  // index of an agent body in the per-step contact arrays, or -1 if not part of an agent
+  public int bodyIndex(Body body) {
+    return geometryBodyIndexes.getOrDefault(body.collisionGeometry(), -1);
+  }
+
+  public int bodyContacts(int bodyIndex) {
+    return bodyContacts[bodyIndex];
+  }
+
+  public boolean isBodyInContact(int bodyIndex, ContactKind kind) {
+    return (bodyContactKinds[bodyIndex] & 1 << kind.ordinal()) != 0;
+  }
+
+  // sum of the normals of the contacts of the last step, each pointing towards the body
+  public MutableVector3D bodyContactNormal(int bodyIndex, MutableVector3D result) {
+    return result.set(bodyContactNormals, 3 * bodyIndex);
+  }
+
+  // only available for bodies whose contact forces are tracked, from the step after tracking starts
+  public double bodyContactForce(int bodyIndex) {
+    return bodyContactForces[bodyIndex];
+  }
+
+  // force applied by the terrain in the last step, under the same conditions of bodyContactForce
+  public MutableVector3D bodyTerrainForce(int bodyIndex, MutableVector3D result) {
+    return result.set(bodyTerrainForces, 3 * bodyIndex);
+  }
+
+  public void trackContactForces(int bodyIndex) {
+    bodyContactForceTracking[bodyIndex] = true;
+  }
+
+  // feedback of the spring joint, attached on the first request and filled by ODE at every step
+  // from then on; f1 is the force applied to the first body of the joint
+  public DJoint.DJointFeedback trackJointForces(SpringJoint joint) {
+    DJoint.DJointFeedback feedback = joint.joint().getFeedback();
+    if (Objects.isNull(feedback)) {
+      feedback = spareJointFeedbacks.isEmpty() ? new DJoint.DJointFeedback() : spareJointFeedbacks.pop();
+      joint.joint().setFeedback(feedback);
+    }
+    return feedback;
   }
 
   public DWorld world() {
@@ -259,12 +515,20 @@ public class Ode4jEngine {
     return signalSpace;
   }
 
+  public void addAgent(EmbodiedAgent agent, Vector3D position, AutoDisable autoDisable) {
+    addAgent(agent, position);
+    agent.setAutoDisable(autoDisable);
+  }
+
   public void addAgent(EmbodiedAgent agent, Vector3D position) {
     agent.assemble(this, position);
     agents.add(agent);
+    agentContacts = Arrays.copyOf(agentContacts, agents.size());
     for (AbstractBody aBody : agent.components()) {
       for (Body body : aBody.bodyParts()) {
         agentMapper.put(body, agent);
+        geometryAgentIndexes.put(body.collisionGeometry(), agents.size() - 1);
+        geometryBodyIndexes.put(body.collisionGeometry(), geometryBodyIndexes.size());
         agentGeometryMapper.put(body.collisionGeometry(), aBody);
         signalDetectors.put(body.collisionGeometry(), false);
       }
@@ -274,6 +538,17 @@ public class Ode4jEngine {
         }
       }
     }
+    bodyContacts = Arrays.copyOf(bodyContacts, geometryBodyIndexes.size());
+    bodyContactKinds = Arrays.copyOf(bodyContactKinds, geometryBodyIndexes.size());
+    bodyContactNormals = Arrays.copyOf(bodyContactNormals, 3 * geometryBodyIndexes.size());
+    bodyContactForces = Arrays.copyOf(bodyContactForces, geometryBodyIndexes.size());
+    bodyTerrainForces = Arrays.copyOf(bodyTerrainForces, 3 * geometryBodyIndexes.size());
+    bodyContactForceTracking = Arrays.copyOf(bodyContactForceTracking, geometryBodyIndexes.size());
+  }
+
+  public void addPassiveBody(Body body, Vector3D position, AutoDisable autoDisable) {
+    body.setAutoDisable(autoDisable);
+    addPassiveBody(body, position);
   }
 
   public void addPassiveBody(Body body, Vector3D position) {
@@ -289,6 +564,9 @@ public class Ode4jEngine {
       Vector3D position1,
       Vector3D position2) {
     UnorderedPair<Body> bodyPair = new UnorderedPair<>(body1, body2);
+    // a joint between two resting bodies would never be solved
+    body1.wake();
+    body2.wake();
     DDoubleBallJoint joint = OdeHelper.createDBallJoint(world);
     joint.attach(body1.dBody(), body2.dBody());
     joint.setParam(DJoint.PARAM_N.dParamERP1, ERP(springConstant, dampingConstant));
@@ -327,9 +605,14 @@ public class Ode4jEngine {
     UnorderedPair<Body> bodyPair = new UnorderedPair<>(body1, body2);
     if (Objects.nonNull(springJoints.get(bodyPair))) {
       for (SpringJoint joint : springJoints.get(bodyPair)) {
+        if (Objects.nonNull(joint.joint().getFeedback())) {
+          spareJointFeedbacks.push(joint.joint().getFeedback());
+        }
         joint.joint().destroy();
       }
       springJoints.remove(bodyPair);
+      body1.wake();
+      body2.wake();
     }
   }
 
@@ -340,6 +623,8 @@ public class Ode4jEngine {
         joint.joint().destroy();
       }
       fixedJoints.remove(bodyPair);
+      body1.wake();
+      body2.wake();
     }
   }
 
@@ -0,0 +1,130 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package experiments;
+
+import agents.CentralizedGridRobot;
+import bodies.Voxel;
+import controllers.BatchedMultiLayerPerceptron;
+import geometry.Vector3D;
+import io.github.ericmedvet.jsdynsym.core.composed.OutStepped;
+import io.github.ericmedvet.jsdynsym.core.numerical.NumericalDynamicalSystem;
+import io.github.ericmedvet.jsdynsym.core.numerical.ann.MultiLayerPerceptron;
+import tasks.Metric;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+// The biped evolved by Main: a 4x3x2 body standing on four sensing feet, driven by a single
+// perceptron over the readings of all voxels. Everything that simulates evolved genotypes builds
+// its robots from here, so that they cannot drift from the evolved configuration; batched robots
+// read genotypes as plain ones do, which checkBatchedController verifies.
+public class BipedExperiment {
+    public static final String SHAPE = "biped";
+    public static final int N_OF_INPUTS = 80;
+    public static final int N_OF_HIDDEN = 80;
+    public static final int N_OF_OUTPUTS = 336;
+    public static final double CONTROLLER_STEP = 0.1;
+    public static final int N_OF_GENES = (N_OF_INPUTS + 1) * N_OF_HIDDEN + (N_OF_HIDDEN + 1) * N_OF_OUTPUTS;
+    public static final Metric FITNESS = Metric.distanceFromTarget(new Vector3D()).over(Metric.TimeOperator.FINAL);
+    // all that is read of an outcome besides its descriptor, and all that remote workers and
+    // persistent caches keep of it
+    public static final List<Metric> METRICS = List.of(FITNESS);
+
+    // batches are per thread, so that the robots simulated together on a thread are controlled together
+    private static final ThreadLocal<BatchedMultiLayerPerceptron> BATCHES = ThreadLocal.withInitial(
+            () -> new BatchedMultiLayerPerceptron(
+                    BatchedMultiLayerPerceptron.ActivationFunction.TANH,
+                    N_OF_INPUTS,
+                    new int[]{N_OF_HIDDEN},
+                    N_OF_OUTPUTS
+            ));
+
+    private BipedExperiment() {
+    }
+
+    public static NumericalDynamicalSystem<?> controller(double[] genotype) {
+        MultiLayerPerceptron mlp = new MultiLayerPerceptron(
+                MultiLayerPerceptron.ActivationFunction.TANH,
+                N_OF_INPUTS,
+                new int[]{N_OF_HIDDEN},
+                N_OF_OUTPUTS
+        );
+        mlp.setParams(genotype);
+        return NumericalDynamicalSystem.from(
+                new OutStepped<>(mlp, CONTROLLER_STEP),
+                N_OF_INPUTS,
+                N_OF_OUTPUTS
+        );
+    }
+
+    public static CentralizedGridRobot robot(double[] genotype) {
+        return new CentralizedGridRobot(testGrid(SHAPE), controller(genotype));
+    }
+
+    // the same robot, with its controller evaluated together with the ones of the other batched
+    // robots of the calling thread
+    public static CentralizedGridRobot batchedRobot(double[] genotype) {
+        return new CentralizedGridRobot(testGrid(SHAPE), BATCHES.get().member(genotype, CONTROLLER_STEP));
+    }
+
+    // steps the controller of robot and the one of batchedRobot with the same random inputs and
+    // throws if their outputs ever differ, i.e., if the batch does not read genotypes as jsdynsym
+    public static void checkBatchedController(double[] genotype, Random random) {
+        NumericalDynamicalSystem<?> controller = controller(genotype);
+        BatchedMultiLayerPerceptron.Member member = BATCHES.get().member(genotype, CONTROLLER_STEP);
+        double[] input = new double[N_OF_INPUTS];
+        for (int step = 0; step < 10; ++step) {
+            double t = step * CONTROLLER_STEP / 2;
+            for (int i = 0; i < input.length; ++i) {
+                input[i] = random.nextGaussian();
+            }
+            double[] expected = controller.step(t, input);
+            double[] actual = member.step(t, input);
+            for (int o = 0; o < N_OF_OUTPUTS; ++o) {
+                if (Math.abs(expected[o] - actual[o]) > 1e-9) {
+                    throw new IllegalStateException(String.format(
+                            "Batched controller output %d at time %.2f is %f instead of %f", o, t, actual[o], expected[o]));
+                }
+            }
+        }
+    }
+
+    public static Voxel[][][] testGrid(String shape) {
+        return switch (shape) {
+            case "biped" -> {
+                Voxel[][][] grid = new Voxel[4][3][3];
+                for (int i = 0; i < 4; i++) {
+                    for (int j = 0; j < 3; j++) {
+                        for (int k = 1; k < 3; k++) {
+                            grid[i][j][k] = new Voxel(EnumSet.allOf(Voxel.JointOption.class), "");
+                        }
+                    }
+                }
+                grid[0][0][0] = new Voxel(EnumSet.allOf(Voxel.JointOption.class), "ang-vlm-vlc-scr-cnt");
+                grid[3][0][0] = new Voxel(EnumSet.allOf(Voxel.JointOption.class), "ang-vlm-vlc-scr-cnt");
+                grid[0][2][0] = new Voxel(EnumSet.allOf(Voxel.JointOption.class), "ang-vlm-vlc-scr-cnt");
+                grid[3][2][0] = new Voxel(EnumSet.allOf(Voxel.JointOption.class), "ang-vlm-vlc-scr-cnt");
+                yield grid;
+            }
+            default -> throw new IllegalArgumentException(String.format("Unknown shape: %s", shape));
+        };
+    }
+}
@@ -0,0 +1,302 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package experiments;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+// Binary, append-only log of the evaluations of an experiment. Every record is length-prefixed and
+// checksummed: after a crash the log is cut at the end of the last intact record when reopened.
+// A sidecar index (the log path plus ".idx") holds, for every record, its offset and its fitness,
+// so that the best records can be found without scanning the log. Records are written from any
+// number of threads, each one serializing its own records outside of the lock.
+public class ExperimentLog implements AutoCloseable {
+    // generation of the records holding the final result of a run
+    public static final int FINAL_GENERATION = -1;
+
+    private static final int MAGIC = 0x4d52534c;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    // length and checksum of the payload
+    private static final int RECORD_PREFIX_BYTES = 2 * Integer.BYTES;
+    private static final int INDEX_ENTRY_BYTES = Long.BYTES + Double.BYTES;
+
+    public record Entry(int generation, double fitness, double[] genotype, double[] descriptor) {}
+
+    private final FileChannel log;
+    private final FileChannel index;
+    private final ThreadLocal<ByteBuffer> buffers;
+    private final ByteBuffer indexEntry;
+    private long end;
+    private int size;
+
+    private ExperimentLog(FileChannel log, FileChannel index, long end, int size) {
+        this.log = log;
+        this.index = index;
+        this.end = end;
+        this.size = size;
+        this.buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN));
+        this.indexEntry = ByteBuffer.allocate(INDEX_ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static Path indexPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".idx");
+    }
+
+    // opens the log for appending, creating it if needed and recovering it after a crash
+    public static ExperimentLog open(Path path) throws IOException {
+        FileChannel log = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel index = FileChannel.open(indexPath(path), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (log.size() < HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            log.truncate(0);
+            log.write(header, 0);
+            index.truncate(0);
+        } else {
+            checkHeader(log, path);
+        }
+        // the indexed records are trusted, as long as the last one is intact; the ones after it
+        // are checked and indexed
+        int size = (int) (index.size() / INDEX_ENTRY_BYTES);
+        long end = HEADER_BYTES;
+        while (size > 0) {
+            long offset = readIndexEntry(index, size - 1).getLong();
+            long recordEnd = checkRecord(log, offset);
+            if (recordEnd > 0) {
+                end = recordEnd;
+                break;
+            }
+            --size;
+        }
+        index.truncate((long) size * INDEX_ENTRY_BYTES);
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (long recordEnd = checkRecord(log, end); recordEnd > 0; recordEnd = checkRecord(log, end)) {
+            ByteBuffer fitness = ByteBuffer.allocate(Integer.BYTES + Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            log.read(fitness, end + RECORD_PREFIX_BYTES);
+            entry.clear();
+            entry.putLong(end).putDouble(fitness.getDouble(Integer.BYTES)).flip();
+            index.write(entry, (long) size * INDEX_ENTRY_BYTES);
+            ++size;
+            end = recordEnd;
+        }
+        log.truncate(end);
+        return new ExperimentLog(log, index, end, size);
+    }
+
+    private static void checkHeader(FileChannel log, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        log.read(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(Integer.BYTES) != VERSION) {
+            throw new IllegalArgumentException(String.format("%s is not an experiment log of version %d", path, VERSION));
+        }
+    }
+
+    private static ByteBuffer readIndexEntry(FileChannel index, int i) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        index.read(entry, (long) i * INDEX_ENTRY_BYTES);
+        return entry.flip();
+    }
+
+    // end of the record starting at offset, or -1 if it is truncated or corrupted
+    private static long checkRecord(FileChannel log, long offset) throws IOException {
+        ByteBuffer prefix = ByteBuffer.allocate(RECORD_PREFIX_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        if (log.read(prefix, offset) < RECORD_PREFIX_BYTES) {
+            return -1;
+        }
+        int length = prefix.getInt(0);
+        if (length < 0 || offset + RECORD_PREFIX_BYTES + length > log.size()) {
+            return -1;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        log.read(payload, offset + RECORD_PREFIX_BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(payload.flip());
+        return (int) crc.getValue() == prefix.getInt(Integer.BYTES) ? offset + RECORD_PREFIX_BYTES + length : -1;
+    }
+
+    public void append(int generation, double fitness, double[] genotype, double[] descriptor) throws IOException {
+        int length = 2 * Integer.BYTES + Double.BYTES + Integer.BYTES + Double.BYTES * (genotype.length + descriptor.length);
+        ByteBuffer buffer = buffers.get();
+        if (buffer.capacity() < RECORD_PREFIX_BYTES + length) {
+            buffer = ByteBuffer.allocate(RECORD_PREFIX_BYTES + length).order(ByteOrder.LITTLE_ENDIAN);
+            buffers.set(buffer);
+        }
+        buffer.clear();
+        buffer.position(RECORD_PREFIX_BYTES);
+        buffer.putInt(generation).putDouble(fitness);
+        buffer.putInt(genotype.length);
+        buffer.asDoubleBuffer().put(genotype);
+        buffer.position(buffer.position() + Double.BYTES * genotype.length);
+        buffer.putInt(descriptor.length);
+        buffer.asDoubleBuffer().put(descriptor);
+        buffer.position(buffer.position() + Double.BYTES * descriptor.length);
+        buffer.flip();
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(RECORD_PREFIX_BYTES, length));
+        buffer.putInt(0, length).putInt(Integer.BYTES, (int) crc.getValue());
+        synchronized (this) {
+            long offset = end;
+            while (buffer.hasRemaining()) {
+                end += log.write(buffer, end);
+            }
+            // the index entry is written after the record, so that it never points past the log
+            indexEntry.clear();
+            indexEntry.putLong(offset).putDouble(fitness).flip();
+            index.write(indexEntry, (long) size * INDEX_ENTRY_BYTES);
+            ++size;
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // forces the records written so far to the disk
+    public synchronized void sync() throws IOException {
+        log.force(false);
+        index.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        log.close();
+        index.close();
+    }
+
+    // Memory-mapped view of a log, as it was when opened; records are never copied out of the
+    // mapping until asked for.
+    public static class Reader implements AutoCloseable {
+        // mappings never split a record, so that each record can be read from a single one
+        private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+        private final FileChannel log;
+        private final long[] offsets;
+        private final double[] fitnesses;
+        private final List<MappedByteBuffer> segments;
+        private final long[] segmentStarts;
+
+        public Reader(Path path) throws IOException {
+            log = FileChannel.open(path, StandardOpenOption.READ);
+            checkHeader(log, path);
+            try (FileChannel index = FileChannel.open(indexPath(path), StandardOpenOption.READ)) {
+                ByteBuffer entries = index.map(FileChannel.MapMode.READ_ONLY, 0, index.size()).order(ByteOrder.LITTLE_ENDIAN);
+                int n = (int) (index.size() / INDEX_ENTRY_BYTES);
+                offsets = new long[n];
+                fitnesses = new double[n];
+                for (int i = 0; i < n; ++i) {
+                    offsets[i] = entries.getLong(i * INDEX_ENTRY_BYTES);
+                    fitnesses[i] = entries.getDouble(i * INDEX_ENTRY_BYTES + Long.BYTES);
+                }
+            }
+            segments = new ArrayList<>();
+            List<Long> starts = new ArrayList<>();
+            long logSize = log.size();
+            int first = 0;
+            while (first < offsets.length) {
+                int last = first;
+                while (last + 1 < offsets.length && offsets[last + 1] - offsets[first] < MAX_SEGMENT_BYTES) {
+                    ++last;
+                }
+                long segmentEnd = last + 1 < offsets.length ? offsets[last + 1] : logSize;
+                starts.add(offsets[first]);
+                segments.add(log.map(FileChannel.MapMode.READ_ONLY, offsets[first], segmentEnd - offsets[first]));
+                first = last + 1;
+            }
+            segmentStarts = starts.stream().mapToLong(Long::longValue).toArray();
+        }
+
+        public int size() {
+            return offsets.length;
+        }
+
+        public double fitness(int i) {
+            return fitnesses[i];
+        }
+
+        public Entry get(int i) {
+            int segment = Arrays.binarySearch(segmentStarts, offsets[i]);
+            if (segment < 0) {
+                segment = -segment - 2;
+            }
+            ByteBuffer record = segments.get(segment).duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            record.position((int) (offsets[i] - segmentStarts[segment]) + RECORD_PREFIX_BYTES);
+            int generation = record.getInt();
+            double fitness = record.getDouble();
+            double[] genotype = new double[record.getInt()];
+            record.asDoubleBuffer().get(genotype);
+            record.position(record.position() + Double.BYTES * genotype.length);
+            double[] descriptor = new double[record.getInt()];
+            record.asDoubleBuffer().get(descriptor);
+            return new Entry(generation, fitness, genotype, descriptor);
+        }
+
+        // the k records with the highest fitness, best first; only the index is scanned
+        public List<Entry> topK(int k) {
+            PriorityQueue<Integer> best = new PriorityQueue<>(Comparator.comparingDouble(i -> fitnesses[i]));
+            for (int i = 0; i < fitnesses.length; ++i) {
+                if (best.size() < k) {
+                    best.add(i);
+                } else if (k > 0 && fitnesses[i] > fitnesses[best.peek()]) {
+                    best.poll();
+                    best.add(i);
+                }
+            }
+            List<Entry> entries = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                entries.add(get(best.poll()));
+            }
+            Collections.reverse(entries);
+            return entries;
+        }
+
+        // the k distinct individuals with the highest fitness, best first: the records of the final
+        // result and the ones of genotypes already seen, e.g., survivors and clones, are skipped
+        public List<Entry> topKDistinctGenotypes(int k) {
+            PriorityQueue<Integer> best = new PriorityQueue<>(Comparator.comparingDouble(i -> -fitnesses[i]));
+            for (int i = 0; i < fitnesses.length; ++i) {
+                best.add(i);
+            }
+            Set<List<Double>> seen = new HashSet<>();
+            List<Entry> entries = new ArrayList<>(k);
+            while (entries.size() < k && !best.isEmpty()) {
+                Entry entry = get(best.poll());
+                if (entry.generation() != FINAL_GENERATION
+                        && seen.add(Arrays.stream(entry.genotype()).boxed().toList())) {
+                    entries.add(entry);
+                }
+            }
+            return entries;
+        }
+
+        @Override
+        public void close() throws IOException {
+            log.close();
+        }
+    }
+}
@@ -30,16 +30,25 @@ public class AngleSensor implements Sensor {
         this.body = body;
     }
 
+    public AbstractBody body() {
+        return body;
+    }
+
     @Override
     public double[] sense(Ode4jEngine engine) {
-        Vector3D vectorAngle = body.angle(engine.t());
         double[] arrayAngle = new double[3];
-        arrayAngle[0] = vectorAngle.x() / Math.PI;
-        arrayAngle[1] = vectorAngle.y() / Math.PI;
-        arrayAngle[2] = vectorAngle.z() / Math.PI;
+        sense(engine, arrayAngle, 0);
         return arrayAngle;
     }
 
+    @Override
+    public void sense(Ode4jEngine engine, double[] out, int offset) {
+        Vector3D vectorAngle = body.angle(engine.t());
+        out[offset] = vectorAngle.x() / Math.PI;
+        out[offset + 1] = vectorAngle.y() / Math.PI;
+        out[offset + 2] = vectorAngle.z() / Math.PI;
+    }
+
     @Override
     public int outputSize() {
         return 3;
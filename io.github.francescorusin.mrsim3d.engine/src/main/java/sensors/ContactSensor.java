@@ -19,17 +19,117 @@
  */
 package sensors;
 
-public class ContactSensor extends StatefulSensor {
-  public ContactSensor() {
-    this.currentState = new double[1];
+import bodies.AbstractBody;
+import engine.Ode4jEngine;
+import geometry.MutableVector3D;
+import java.util.EnumSet;
+
+// reads the per-step contact state that the engine keeps for the bodies of the agents
+public class ContactSensor implements Sensor {
+  public enum Reading {
+    // 1 if any part of the body touches something outside of its agent, -1 otherwise
+    CONTACT(1),
+    // 1 if any part of the body touches the terrain, -1 otherwise
+    TERRAIN(1),
+    // average contact normal, pushing the body, in the frame of the body
+    NORMAL(3),
+    // magnitude of the contact forces relative to the weight of the body, in [-1, 1]
+    FORCE(1);
+    private final int size;
+
+    Reading(int size) {
+      this.size = size;
+    }
+  }
+
+  private final AbstractBody body;
+  private final EnumSet<Reading> readings;
+  private final int outputSize;
+  private final MutableVector3D normal;
+  private final MutableVector3D bodyNormal;
+  // indexes of the parts of the body in the contact arrays of the engine they refer to
+  private Ode4jEngine engine;
+  private int[] bodyIndexes;
+
+  public ContactSensor(AbstractBody body, EnumSet<Reading> readings) {
+    if (readings.isEmpty()) {
+      throw new IllegalArgumentException("Attempted to create contact sensor with no readings");
+    }
+    this.body = body;
+    this.readings = readings;
+    this.outputSize = readings.stream().mapToInt(r -> r.size).sum();
+    this.normal = new MutableVector3D();
+    this.bodyNormal = new MutableVector3D();
+  }
+
+  public ContactSensor(AbstractBody body) {
+    this(body, EnumSet.of(Reading.CONTACT));
   }
 
-  public void detectContact() {
-    currentState[0] = 1;
+  private int[] bodyIndexes(Ode4jEngine engine) {
+    if (this.engine != engine) {
+      this.engine = engine;
+      bodyIndexes = body.bodyParts().stream().mapToInt(engine::bodyIndex).filter(i -> i >= 0).toArray();
+      if (readings.contains(Reading.FORCE)) {
+        for (int i : bodyIndexes) {
+          engine.trackContactForces(i);
+        }
+      }
+    }
+    return bodyIndexes;
+  }
+
+  public boolean isInContact(Ode4jEngine engine) {
+    for (int i : bodyIndexes(engine)) {
+      if (engine.bodyContacts(i) > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public double[] sense(Ode4jEngine engine) {
+    double[] result = new double[outputSize];
+    sense(engine, result, 0);
+    return result;
+  }
+
+  @Override
+  public void sense(Ode4jEngine engine, double[] out, int offset) {
+    int contacts = 0;
+    boolean terrain = false;
+    double force = 0d;
+    normal.set(0d, 0d, 0d);
+    for (int i : bodyIndexes(engine)) {
+      contacts += engine.bodyContacts(i);
+      terrain |= engine.isBodyInContact(i, Ode4jEngine.ContactKind.TERRAIN);
+      normal.add(engine.bodyContactNormal(i, bodyNormal));
+      force += engine.bodyContactForce(i);
+    }
+    int index = offset;
+    for (Reading reading : readings) {
+      switch (reading) {
+        case CONTACT -> out[index++] = contacts > 0 ? 1d : -1d;
+        case TERRAIN -> out[index++] = terrain ? 1d : -1d;
+        case NORMAL -> {
+          if (normal.norm() > 0d) {
+            body.orientation(engine.t()).reverseRotate(normal.normalize());
+          }
+          out[index++] = normal.x;
+          out[index++] = normal.y;
+          out[index++] = normal.z;
+        }
+        case FORCE -> {
+          double weight = body.mass() * engine.configuration.gravity().norm();
+          out[index++] = force > 0d ? 2 * Math.tanh(weight > 0d ? force / weight : force) - 1d : -1d;
+        }
+      }
+    }
   }
 
   @Override
-  void resetReadings() {
-    currentState[0] = -1;
+  public int outputSize() {
+    return outputSize;
   }
 }
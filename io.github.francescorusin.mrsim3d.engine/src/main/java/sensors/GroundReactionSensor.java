@@ -0,0 +1,83 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package sensors;
+
+import bodies.Voxel;
+import engine.Ode4jEngine;
+import geometry.MutableVector3D;
+
+// force applied by the terrain to the vertices of the bottom face of the voxel, in the frame of the
+// voxel and relative to its weight
+public class GroundReactionSensor implements Sensor {
+  private final Voxel voxel;
+  private final MutableVector3D force;
+  private final MutableVector3D vertexForce;
+  // indexes of the vertex bodies in the contact arrays of the engine they refer to
+  private Ode4jEngine engine;
+  private int[] bodyIndexes;
+
+  public GroundReactionSensor(Voxel voxel) {
+    this.voxel = voxel;
+    this.force = new MutableVector3D();
+    this.vertexForce = new MutableVector3D();
+  }
+
+  private int[] bodyIndexes(Ode4jEngine engine) {
+    if (this.engine != engine) {
+      this.engine = engine;
+      bodyIndexes = Voxel.Side.DOWN.vertices().stream()
+          .mapToInt(v -> engine.bodyIndex(voxel.vertexBody(v)))
+          .filter(i -> i >= 0)
+          .toArray();
+      for (int i : bodyIndexes) {
+        engine.trackContactForces(i);
+      }
+    }
+    return bodyIndexes;
+  }
+
+  @Override
+  public double[] sense(Ode4jEngine engine) {
+    double[] result = new double[3];
+    sense(engine, result, 0);
+    return result;
+  }
+
+  @Override
+  public void sense(Ode4jEngine engine, double[] out, int offset) {
+    force.set(0d, 0d, 0d);
+    for (int i : bodyIndexes(engine)) {
+      force.add(engine.bodyTerrainForce(i, vertexForce));
+    }
+    voxel.orientation(engine.t()).reverseRotate(force);
+    double weight = voxel.mass() * engine.configuration.gravity().norm();
+    if (weight > 0d) {
+      force.scale(1d / weight);
+    }
+    out[offset] = Math.tanh(force.x);
+    out[offset + 1] = Math.tanh(force.y);
+    out[offset + 2] = Math.tanh(force.z);
+  }
+
+  @Override
+  public int outputSize() {
+    return 3;
+  }
+}
@@ -24,5 +24,11 @@ import engine.Ode4jEngine;
 public interface Sensor {
     double[] sense(Ode4jEngine engine);
 
+    // writes the readings in out from offset on; sensors read every step should override it, as
+    // this default goes through the array returned by sense
+    default void sense(Ode4jEngine engine, double[] out, int offset) {
+        System.arraycopy(sense(engine), 0, out, offset, outputSize());
+    }
+
     int outputSize();
 }
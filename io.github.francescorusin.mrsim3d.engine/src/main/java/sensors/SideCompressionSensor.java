@@ -20,11 +20,13 @@
 package sensors;
 
 import bodies.Voxel;
+import bodies.VoxelGeometry;
 import engine.Ode4jEngine;
 
 public class SideCompressionSensor implements Sensor {
   private final Voxel voxel;
   private final double[] range;
+  private static final Voxel.Edge[] EDGES = Voxel.Edge.values();
 
   public SideCompressionSensor(Voxel voxel, double range) {
     this.voxel = voxel;
@@ -39,28 +41,36 @@ public class SideCompressionSensor implements Sensor {
     this(voxel, .5);
   }
 
+  public double minRatio() {
+    return range[0];
+  }
+
+  public double maxRatio() {
+    return range[1];
+  }
+
   @Override
   public double[] sense(Ode4jEngine engine) {
-    double average = Math.pow(voxel.currentVolume(engine.t()), 1d / 3d);
     double[] result = new double[12];
-    int index = -1;
-    for (Voxel.Edge edge : Voxel.Edge.values()) {
-      result[++index] =
-          voxel
-                  .vertexBody(edge.v1)
-                  .position(engine.t())
-                  .vectorDistance(voxel.vertexBody(edge.v2).position(engine.t()))
-                  .norm()
-              / average;
-      if (result[index] < range[0]) {
-        result[index] = range[0];
-      } else if (result[index] > range[1]) {
-        result[index] = range[1];
+    sense(engine, result, 0);
+    return result;
+  }
+
+  @Override
+  public void sense(Ode4jEngine engine, double[] out, int offset) {
+    VoxelGeometry geometry = voxel.geometry(engine.t());
+    double inverseAverage = 1d / Math.cbrt(geometry.volume());
+    int index = offset - 1;
+    for (Voxel.Edge edge : EDGES) {
+      out[++index] = geometry.edgeLength(edge) * inverseAverage;
+      if (out[index] < range[0]) {
+        out[index] = range[0];
+      } else if (out[index] > range[1]) {
+        out[index] = range[1];
       } else {
-        result[index] = 2 * (result[index] - range[0]) / (range[1] - range[0]) - 1d;
+        out[index] = 2 * (out[index] - range[0]) / (range[1] - range[0]) - 1d;
       }
     }
-    return result;
   }
 
   @Override
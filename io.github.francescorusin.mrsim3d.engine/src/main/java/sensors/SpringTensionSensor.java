@@ -0,0 +1,94 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package sensors;
+
+import bodies.Voxel;
+import engine.Ode4jEngine;
+import java.util.List;
+import joints.SpringJoint;
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.DJoint;
+
+// force along every edge of the voxel, summed over its springs and relative to the weight of the
+// voxel: positive when the edge is pulled apart, negative when it is compressed
+public class SpringTensionSensor implements Sensor {
+  private static final Voxel.Edge[] EDGES = Voxel.Edge.values();
+  private final Voxel voxel;
+  private final DVector3 anchor1;
+  private final DVector3 anchor2;
+  // springs of each edge and their feedback, in the engine they were tracked in
+  private Ode4jEngine engine;
+  private SpringJoint[][] joints;
+  private DJoint.DJointFeedback[][] feedbacks;
+
+  public SpringTensionSensor(Voxel voxel) {
+    this.voxel = voxel;
+    this.anchor1 = new DVector3();
+    this.anchor2 = new DVector3();
+  }
+
+  private void track(Ode4jEngine engine) {
+    if (this.engine != engine) {
+      this.engine = engine;
+      joints = new SpringJoint[EDGES.length][];
+      feedbacks = new DJoint.DJointFeedback[EDGES.length][];
+      for (Voxel.Edge e : EDGES) {
+        List<SpringJoint> edgeJoints = voxel.edgeJoints(e);
+        joints[e.ordinal()] = edgeJoints.toArray(SpringJoint[]::new);
+        feedbacks[e.ordinal()] = edgeJoints.stream().map(engine::trackJointForces).toArray(DJoint.DJointFeedback[]::new);
+      }
+    }
+  }
+
+  @Override
+  public double[] sense(Ode4jEngine engine) {
+    double[] result = new double[EDGES.length];
+    sense(engine, result, 0);
+    return result;
+  }
+
+  @Override
+  public void sense(Ode4jEngine engine, double[] out, int offset) {
+    track(engine);
+    double weight = voxel.mass() * engine.configuration.gravity().norm();
+    for (int e = 0; e < EDGES.length; ++e) {
+      double tension = 0d;
+      for (int j = 0; j < joints[e].length; ++j) {
+        // the force on the first body, projected on the direction towards the second one
+        joints[e][j].joint().getAnchor1(anchor1);
+        joints[e][j].joint().getAnchor2(anchor2);
+        double dx = anchor2.get0() - anchor1.get0();
+        double dy = anchor2.get1() - anchor1.get1();
+        double dz = anchor2.get2() - anchor1.get2();
+        double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (length > 0d) {
+          DVector3 f1 = feedbacks[e][j].f1;
+          tension += (f1.get0() * dx + f1.get1() * dy + f1.get2() * dz) / length;
+        }
+      }
+      out[offset + e] = Math.tanh(weight > 0d ? tension / weight : tension);
+    }
+  }
+
+  @Override
+  public int outputSize() {
+    return EDGES.length;
+  }
+}
@@ -35,12 +35,17 @@ public abstract class StatefulSensor implements Sensor {
 
   @Override
   public double[] sense(Ode4jEngine engine) {
-    double[] readingsCopy = new double[currentState.length];
+    double[] readings = new double[currentState.length];
+    sense(engine, readings, 0);
+    return readings;
+  }
+
+  @Override
+  public void sense(Ode4jEngine engine, double[] out, int offset) {
     for (int i = 0; i < currentState.length; ++i) {
-      readingsCopy[i] = Math.max(-1d, Math.min(1d, currentState[i]));
+      out[offset + i] = Math.max(-1d, Math.min(1d, currentState[i]));
     }
     resetReadings();
-    return readingsCopy;
   }
 
   @Override
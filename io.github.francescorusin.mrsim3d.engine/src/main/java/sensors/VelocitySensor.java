@@ -21,19 +21,34 @@ package sensors;
 
 import bodies.AbstractBody;
 import engine.Ode4jEngine;
-import geometry.Vector3D;
+import geometry.MutableVector3D;
 
 public class VelocitySensor implements Sensor {
   private final AbstractBody body;
+  private final MutableVector3D velocity;
 
   public VelocitySensor(AbstractBody body) {
     this.body = body;
+    this.velocity = new MutableVector3D();
+  }
+
+  public AbstractBody body() {
+    return body;
   }
 
   @Override
   public double[] sense(Ode4jEngine engine) {
-    Vector3D vectorVelocity = body.velocity(engine.t()).reverseRotate(body.angle(engine.t()));
-    return new double[] {vectorVelocity.x(), vectorVelocity.y(), vectorVelocity.z()};
+    double[] result = new double[3];
+    sense(engine, result, 0);
+    return result;
+  }
+
+  @Override
+  public void sense(Ode4jEngine engine, double[] out, int offset) {
+    body.orientation(engine.t()).reverseRotate(velocity.set(body.velocity(engine.t())));
+    out[offset] = velocity.x;
+    out[offset + 1] = velocity.y;
+    out[offset + 2] = velocity.z;
   }
 
   @Override
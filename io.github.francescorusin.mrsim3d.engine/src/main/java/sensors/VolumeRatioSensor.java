@@ -29,14 +29,22 @@ public class VolumeRatioSensor implements Sensor {
     this.body = body;
   }
 
+  public SoftBody body() {
+    return body;
+  }
+
   @Override
   public double[] sense(Ode4jEngine engine) {
-    return new double[] {
-      2
-              * (body.currentVolume(engine.t()) - body.minVolume())
-              / (body.maxVolume() - body.minVolume())
-          - 1d
-    };
+    double[] result = new double[1];
+    sense(engine, result, 0);
+    return result;
+  }
+
+  @Override
+  public void sense(Ode4jEngine engine, double[] out, int offset) {
+    out[offset] =
+        2 * (body.currentVolume(engine.t()) - body.minVolume()) / (body.maxVolume() - body.minVolume())
+            - 1d;
   }
 
   @Override
@@ -19,6 +19,7 @@
  */
 package snapshot;
 
+import geometry.BoundingBox;
 import geometry.Vector3D;
 
 public interface BodySnapshot extends AbstractSnapshot {
@@ -28,5 +29,15 @@ public interface BodySnapshot extends AbstractSnapshot {
 
   double mass();
 
+  default BoundingBox boundingBox() {
+    return new BoundingBox(position());
+  }
+
+  // how far the pose of this body is from the one in the other snapshot of the same body, in meters;
+  // snapshots knowing more than their position should override it
+  default double poseDistance(BodySnapshot other) {
+    return position().vectorDistance(other.position()).norm();
+  }
+
   //TODO REMEMBER TO DRAW THE ACTIONS TOO IN THE DRAW FUNCTION!
 }
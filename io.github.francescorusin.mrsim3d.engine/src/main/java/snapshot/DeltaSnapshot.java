@@ -0,0 +1,38 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package snapshot;
+
+import engine.Ode4jEngine;
+
+import java.util.List;
+
+// changes with respect to the previously emitted frame: bodies are identified by their index in the
+// lists of the full snapshot, and only the ones that moved are present; keyframes contain every body
+public record DeltaSnapshot(
+    Ode4jEngine.Configuration configuration,
+    boolean isKeyframe,
+    int nOfActiveBodies,
+    int nOfPassiveBodies,
+    int[] changedActiveIndexes,
+    List<BodySnapshot> changedActiveBodies,
+    int[] changedPassiveIndexes,
+    List<BodySnapshot> changedPassiveBodies,
+    List<JointSnapshot> interbodyJoints,
+    double t) {}
@@ -0,0 +1,73 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package snapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+// Consumer side of a DeltaSnapshotStream: applies every delta to the last reconstructed frame and
+// returns the full snapshot; frames received before the first keyframe cannot be reconstructed and
+// give null
+public class DeltaSnapshotReconstructor implements Function<DeltaSnapshot, InstantSnapshot> {
+  private final List<BodySnapshot> activeBodies;
+  private final List<BodySnapshot> passiveBodies;
+  private boolean hasKeyframe;
+
+  public DeltaSnapshotReconstructor() {
+    this.activeBodies = new ArrayList<>();
+    this.passiveBodies = new ArrayList<>();
+  }
+
+  @Override
+  public InstantSnapshot apply(DeltaSnapshot delta) {
+    if (delta.isKeyframe()) {
+      hasKeyframe = true;
+      activeBodies.clear();
+      activeBodies.addAll(delta.changedActiveBodies());
+      passiveBodies.clear();
+      passiveBodies.addAll(delta.changedPassiveBodies());
+    } else {
+      if (!hasKeyframe) {
+        return null;
+      }
+      if (delta.nOfActiveBodies() != activeBodies.size() || delta.nOfPassiveBodies() != passiveBodies.size()) {
+        throw new IllegalStateException(
+            String.format(
+                "Delta for %d+%d bodies applied to a frame with %d+%d bodies",
+                delta.nOfActiveBodies(), delta.nOfPassiveBodies(), activeBodies.size(), passiveBodies.size()));
+      }
+      apply(activeBodies, delta.changedActiveIndexes(), delta.changedActiveBodies());
+      apply(passiveBodies, delta.changedPassiveIndexes(), delta.changedPassiveBodies());
+    }
+    return new InstantSnapshot(
+        delta.configuration(),
+        List.copyOf(activeBodies),
+        List.copyOf(passiveBodies),
+        delta.interbodyJoints(),
+        delta.t());
+  }
+
+  private static void apply(List<BodySnapshot> bodies, int[] indexes, List<BodySnapshot> changed) {
+    for (int i = 0; i < indexes.length; ++i) {
+      bodies.set(indexes[i], changed.get(i));
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package snapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Turns a stream of full snapshots into delta snapshots for a downstream consumer: a body is emitted
+// only when its pose distance from the last emitted version of it exceeds the tolerance. Every
+// keyframeInterval frames, and whenever the number of bodies changes, a keyframe is emitted instead.
+public class DeltaSnapshotStream implements Consumer<InstantSnapshot> {
+  private final double tolerance;
+  private final int keyframeInterval;
+  private final Consumer<DeltaSnapshot> consumer;
+  private final List<BodySnapshot> lastActive;
+  private final List<BodySnapshot> lastPassive;
+  private int framesSinceKeyframe;
+
+  public DeltaSnapshotStream(double tolerance, int keyframeInterval, Consumer<DeltaSnapshot> consumer) {
+    if (tolerance < 0 || keyframeInterval < 1) {
+      throw new IllegalArgumentException(
+          String.format("Invalid delta stream: tolerance %f, keyframe interval %d", tolerance, keyframeInterval));
+    }
+    this.tolerance = tolerance;
+    this.keyframeInterval = keyframeInterval;
+    this.consumer = consumer;
+    this.lastActive = new ArrayList<>();
+    this.lastPassive = new ArrayList<>();
+    this.framesSinceKeyframe = -1;
+  }
+
+  @Override
+  public void accept(InstantSnapshot snapshot) {
+    boolean isKeyframe =
+        framesSinceKeyframe < 0
+            || framesSinceKeyframe + 1 >= keyframeInterval
+            || snapshot.activeBodies().size() != lastActive.size()
+            || snapshot.passiveBodies().size() != lastPassive.size();
+    framesSinceKeyframe = isKeyframe ? 0 : framesSinceKeyframe + 1;
+    List<BodySnapshot> changedActive = new ArrayList<>();
+    int[] activeIndexes = changes(snapshot.activeBodies(), lastActive, isKeyframe, changedActive);
+    List<BodySnapshot> changedPassive = new ArrayList<>();
+    int[] passiveIndexes = changes(snapshot.passiveBodies(), lastPassive, isKeyframe, changedPassive);
+    consumer.accept(
+        new DeltaSnapshot(
+            snapshot.configuration(),
+            isKeyframe,
+            snapshot.activeBodies().size(),
+            snapshot.passiveBodies().size(),
+            activeIndexes,
+            changedActive,
+            passiveIndexes,
+            changedPassive,
+            snapshot.interbodyJoints(),
+            snapshot.t()));
+  }
+
+  private int[] changes(List<BodySnapshot> bodies, List<BodySnapshot> last, boolean isKeyframe, List<BodySnapshot> changed) {
+    if (isKeyframe) {
+      last.clear();
+      last.addAll(bodies);
+      changed.addAll(bodies);
+      int[] indexes = new int[bodies.size()];
+      Arrays.setAll(indexes, i -> i);
+      return indexes;
+    }
+    int[] indexes = new int[bodies.size()];
+    int nOfChanges = 0;
+    for (int i = 0; i < bodies.size(); ++i) {
+      BodySnapshot body = bodies.get(i);
+      if (body.getClass() != last.get(i).getClass() || body.poseDistance(last.get(i)) > tolerance) {
+        last.set(i, body);
+        changed.add(body);
+        indexes[nOfChanges++] = i;
+      }
+    }
+    return Arrays.copyOf(indexes, nOfChanges);
+  }
+}
@@ -22,6 +22,7 @@ package snapshot;
 import engine.Ode4jEngine;
 import viewer.Viewer;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public record InstantSnapshot(Ode4jEngine.Configuration configuration, List<BodySnapshot> activeBodies, List<BodySnapshot> passiveBodies, List<JointSnapshot> interbodyJoints, double t) implements AbstractSnapshot {
@@ -38,4 +39,31 @@ public record InstantSnapshot(Ode4jEngine.Configuration configuration, List<Body
       joint.draw(viewer);
     }
   }
+
+  // bodies are matched by position in the lists; the ones that cannot be interpolated are taken from next
+  public InstantSnapshot interpolate(InstantSnapshot next, double alpha) {
+    return new InstantSnapshot(
+        next.configuration,
+        interpolate(activeBodies, next.activeBodies, alpha),
+        interpolate(passiveBodies, next.passiveBodies, alpha),
+        next.interbodyJoints,
+        InterpolableSnapshot.lerp(t, next.t, alpha));
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static List<BodySnapshot> interpolate(List<BodySnapshot> from, List<BodySnapshot> to, double alpha) {
+    if (from.size() != to.size()) {
+      return to;
+    }
+    List<BodySnapshot> bodies = new ArrayList<>(to.size());
+    for (int i = 0; i < to.size(); ++i) {
+      BodySnapshot body = from.get(i);
+      if (body instanceof InterpolableSnapshot interpolable && body.getClass() == to.get(i).getClass()) {
+        bodies.add((BodySnapshot) interpolable.interpolate((InterpolableSnapshot) to.get(i), alpha));
+      } else {
+        bodies.add(to.get(i));
+      }
+    }
+    return bodies;
+  }
 }
@@ -0,0 +1,44 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package snapshot;
+
+import geometry.Vector3D;
+
+// snapshot that can be blended with a later snapshot of the same object, to draw frames falling
+// between two simulation ticks
+public interface InterpolableSnapshot<S extends InterpolableSnapshot<S>> extends AbstractSnapshot {
+  S interpolate(S next, double alpha);
+
+  static double lerp(double from, double to, double alpha) {
+    return from + (to - from) * alpha;
+  }
+
+  static Vector3D lerp(Vector3D from, Vector3D to, double alpha) {
+    return new Vector3D(lerp(from.x(), to.x(), alpha), lerp(from.y(), to.y(), alpha), lerp(from.z(), to.z(), alpha));
+  }
+
+  // euler angles are blended component-wise along the shortest way around
+  static Vector3D lerpAngles(Vector3D from, Vector3D to, double alpha) {
+    return new Vector3D(
+        from.x() + Math.IEEEremainder(to.x() - from.x(), 2 * Math.PI) * alpha,
+        from.y() + Math.IEEEremainder(to.y() - from.y(), 2 * Math.PI) * alpha,
+        from.z() + Math.IEEEremainder(to.z() - from.z(), 2 * Math.PI) * alpha);
+  }
+}
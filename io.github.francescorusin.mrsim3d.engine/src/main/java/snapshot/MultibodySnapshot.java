@@ -1,5 +1,6 @@
 package snapshot;
 
+import geometry.BoundingBox;
 import geometry.Vector3D;
 
 import java.util.List;
@@ -20,4 +21,9 @@ public interface MultibodySnapshot extends BodySnapshot {
     default double mass() {
         return bodyParts().stream().mapToDouble(BodySnapshot::mass).sum();
     }
+
+    @Override
+    default BoundingBox boundingBox() {
+        return BoundingBox.enclosing(bodyParts().stream().map(BodySnapshot::boundingBox).toArray(BoundingBox[]::new));
+    }
 }
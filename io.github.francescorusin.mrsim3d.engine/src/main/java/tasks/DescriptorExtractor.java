@@ -0,0 +1,194 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package tasks;
+
+import bodies.AbstractBody;
+import bodies.SensingBody;
+import bodies.Voxel;
+import engine.Ode4jEngine;
+import geometry.Vector3D;
+import sensors.ContactSensor;
+import sensors.Sensor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Behavior descriptors for quality-diversity and novelty search, accumulated while the simulation
+// runs with a fixed amount of memory per evaluation, so that no trajectory has to be kept around.
+// The accumulator observes the engine after every physics step, before the agents sense, and is
+// asked for the descriptor once the evaluation is over; descriptors refer to the first agent.
+public interface DescriptorExtractor {
+    Accumulator accumulator(Ode4jEngine engine);
+
+    // identifies the extractor in evaluation cache keys; the name of a lambda class is not stable
+    // across runs, so extractors not built here are never found again in persistent caches
+    default String key() {
+        return getClass().getName();
+    }
+
+    static DescriptorExtractor named(String key, DescriptorExtractor extractor) {
+        return new DescriptorExtractor() {
+            @Override
+            public Accumulator accumulator(Ode4jEngine engine) {
+                return extractor.accumulator(engine);
+            }
+
+            @Override
+            public String key() {
+                return key;
+            }
+        };
+    }
+
+    interface Accumulator {
+        void observe(Ode4jEngine engine);
+
+        double[] descriptor(Ode4jEngine engine);
+    }
+
+    DescriptorExtractor NONE = named("none", engine -> new Accumulator() {
+        @Override
+        public void observe(Ode4jEngine engine) {
+        }
+
+        @Override
+        public double[] descriptor(Ode4jEngine engine) {
+            return new double[0];
+        }
+    });
+
+    // for every contact sensor of the agent, in component order, the fraction of steps in contact
+    static DescriptorExtractor footContactPattern() {
+        return named("foot-contact-pattern", engine -> {
+            List<ContactSensor> sensors = new ArrayList<>();
+            for (AbstractBody component : engine.agents.getFirst().components()) {
+                if (component instanceof SensingBody sensingBody) {
+                    for (Sensor sensor : sensingBody.sensors()) {
+                        if (sensor instanceof ContactSensor contactSensor) {
+                            sensors.add(contactSensor);
+                        }
+                    }
+                }
+            }
+            return new Accumulator() {
+                private final double[] contactSteps = new double[sensors.size()];
+                private int steps;
+
+                @Override
+                public void observe(Ode4jEngine engine) {
+                    for (int s = 0; s < contactSteps.length; ++s) {
+                        if (sensors.get(s).isInContact(engine)) {
+                            ++contactSteps[s];
+                        }
+                    }
+                    ++steps;
+                }
+
+                @Override
+                public double[] descriptor(Ode4jEngine engine) {
+                    double[] descriptor = new double[contactSteps.length];
+                    for (int s = 0; s < descriptor.length; ++s) {
+                        descriptor[s] = steps == 0 ? 0d : contactSteps[s] / steps;
+                    }
+                    return descriptor;
+                }
+            };
+        });
+    }
+
+    // indexes of the cell of the horizontal grid in which the agent ends up
+    static DescriptorExtractor finalPositionCell(double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid cell size: %f", cellSize));
+        }
+        return named(String.format("final-position-cell-%s", cellSize), engine -> new Accumulator() {
+            @Override
+            public void observe(Ode4jEngine engine) {
+            }
+
+            @Override
+            public double[] descriptor(Ode4jEngine engine) {
+                Vector3D position = engine.agents.getFirst().position(engine.t());
+                return new double[]{Math.floor(position.x() / cellSize), Math.floor(position.y() / cellSize)};
+            }
+        });
+    }
+
+    // for every voxel of the agent, in component order, its average volume ratio
+    static DescriptorExtractor volumeRatioProfile() {
+        return named("volume-ratio-profile", engine -> {
+            List<Voxel> voxels = new ArrayList<>();
+            for (AbstractBody component : engine.agents.getFirst().components()) {
+                if (component instanceof Voxel voxel) {
+                    voxels.add(voxel);
+                }
+            }
+            return new Accumulator() {
+                private final double[] volumeRatioSums = new double[voxels.size()];
+                private int steps;
+
+                @Override
+                public void observe(Ode4jEngine engine) {
+                    for (int v = 0; v < volumeRatioSums.length; ++v) {
+                        volumeRatioSums[v] += voxels.get(v).volumeRatio(engine.t());
+                    }
+                    ++steps;
+                }
+
+                @Override
+                public double[] descriptor(Ode4jEngine engine) {
+                    double[] descriptor = new double[volumeRatioSums.length];
+                    for (int v = 0; v < descriptor.length; ++v) {
+                        descriptor[v] = steps == 0 ? 0d : volumeRatioSums[v] / steps;
+                    }
+                    return descriptor;
+                }
+            };
+        });
+    }
+
+    // the descriptors of the extractors, one after the other
+    static DescriptorExtractor concatenated(List<DescriptorExtractor> extractors) {
+        String key = String.join(",", extractors.stream().map(DescriptorExtractor::key).toList());
+        return named(String.format("concatenated(%s)", key), engine -> {
+            List<Accumulator> accumulators = extractors.stream().map(e -> e.accumulator(engine)).toList();
+            return new Accumulator() {
+                @Override
+                public void observe(Ode4jEngine engine) {
+                    for (Accumulator accumulator : accumulators) {
+                        accumulator.observe(engine);
+                    }
+                }
+
+                @Override
+                public double[] descriptor(Ode4jEngine engine) {
+                    List<double[]> descriptors = accumulators.stream().map(a -> a.descriptor(engine)).toList();
+                    double[] descriptor = new double[descriptors.stream().mapToInt(d -> d.length).sum()];
+                    int index = 0;
+                    for (double[] d : descriptors) {
+                        System.arraycopy(d, 0, descriptor, index, d.length);
+                        index += d.length;
+                    }
+                    return descriptor;
+                }
+            };
+        });
+    }
+}
@@ -0,0 +1,40 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package tasks;
+
+// a single run of a task, advanced one tick at a time; the phases mirror the ones of Ode4jEngine, so
+// that several evaluations can be interleaved with their batched controllers evaluated together
+public interface Evaluation<O> {
+    boolean isDone();
+
+    void stepPhysics();
+
+    void sense();
+
+    void actuate();
+
+    O outcome();
+
+    default void tick() {
+        stepPhysics();
+        sense();
+        actuate();
+    }
+}
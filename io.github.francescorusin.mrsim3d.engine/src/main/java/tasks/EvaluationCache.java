@@ -0,0 +1,233 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package tasks;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+// Bounded memoization of a quality function over genotypes, for deterministic tasks only: results
+// are keyed by a 128 bits hash of the genotype and of a string identifying the task configuration,
+// and the least recently used ones are evicted. Concurrent requests for the same genotype wait for
+// a single evaluation. Persistent caches append results to a file and load them back on creation,
+// so that they survive restarts; on creation, the file is also compacted down to the results that
+// are loaded, so that it does not grow across runs.
+public class EvaluationCache<O> implements Function<List<Double>, O>, AutoCloseable {
+    public interface Codec<O> {
+        void write(O o, DataOutput out) throws IOException;
+
+        O read(DataInput in) throws IOException;
+    }
+
+    private record Key(long high, long low) {}
+
+    private final Function<List<Double>, O> evaluator;
+    private final String taskKey;
+    private final int capacity;
+    private final Map<Key, O> results;
+    private final Map<Key, CompletableFuture<O>> inFlight;
+    private final Codec<O> codec;
+    private final DataOutputStream persistence;
+    private long hits;
+    private long misses;
+
+    private EvaluationCache(
+            Function<List<Double>, O> evaluator, String taskKey, int capacity, Codec<O> codec, DataOutputStream persistence
+    ) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(String.format("Invalid cache capacity: %d", capacity));
+        }
+        this.evaluator = evaluator;
+        this.taskKey = taskKey;
+        this.capacity = capacity;
+        this.results = new LinkedHashMap<>(16, .75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, O> eldest) {
+                return size() > EvaluationCache.this.capacity;
+            }
+        };
+        this.inFlight = new HashMap<>();
+        this.codec = codec;
+        this.persistence = persistence;
+    }
+
+    public EvaluationCache(Function<List<Double>, O> evaluator, String taskKey, int capacity) {
+        this(evaluator, taskKey, capacity, null, null);
+    }
+
+    // a record truncated by a crashed run, and whatever follows it, is dropped; only the last
+    // capacity records are kept in memory while reading, and the file is rewritten with them
+    public static <O> EvaluationCache<O> persistent(
+            Function<List<Double>, O> evaluator, String taskKey, int capacity, Path file, Codec<O> codec
+    ) throws IOException {
+        Map<Key, O> loaded = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, O> eldest) {
+                return size() > capacity;
+            }
+        };
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                while (true) {
+                    try {
+                        Key key = new Key(in.readLong(), in.readLong());
+                        O o = codec.read(in);
+                        // re-inserted, so that the latest records are the ones surviving eviction
+                        loaded.remove(key);
+                        loaded.put(key, o);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                }
+            }
+            Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(compacted)))) {
+                for (Map.Entry<Key, O> entry : loaded.entrySet()) {
+                    out.writeLong(entry.getKey().high());
+                    out.writeLong(entry.getKey().low());
+                    codec.write(entry.getValue(), out);
+                }
+            }
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        EvaluationCache<O> cache = new EvaluationCache<>(
+                evaluator,
+                taskKey,
+                capacity,
+                codec,
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile(), true)))
+        );
+        cache.results.putAll(loaded);
+        return cache;
+    }
+
+    private static long mix(long h) {
+        // splitmix64 finalizer
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    private Key key(List<Double> genotype) {
+        long high = 0x9e3779b97f4a7c15L;
+        long low = 0xc2b2ae3d27d4eb4fL;
+        for (byte b : taskKey.getBytes(StandardCharsets.UTF_8)) {
+            high = mix(high ^ b);
+            low = mix(low + b);
+        }
+        high = mix(high ^ genotype.size());
+        low = mix(low + genotype.size());
+        for (Double gene : genotype) {
+            long bits = Double.doubleToLongBits(gene);
+            high = mix(high ^ bits);
+            low = mix(low + Long.rotateLeft(bits, 32));
+        }
+        return new Key(high, low);
+    }
+
+    @Override
+    public O apply(List<Double> genotype) {
+        Key key = key(genotype);
+        CompletableFuture<O> future;
+        boolean isOwner = false;
+        synchronized (this) {
+            O cached = results.get(key);
+            if (Objects.nonNull(cached)) {
+                ++hits;
+                return cached;
+            }
+            future = inFlight.get(key);
+            if (Objects.isNull(future)) {
+                ++misses;
+                future = new CompletableFuture<>();
+                inFlight.put(key, future);
+                isOwner = true;
+            } else {
+                ++hits;
+            }
+        }
+        if (!isOwner) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        O o;
+        try {
+            o = evaluator.apply(genotype);
+        } catch (Throwable e) {
+            // errors too complete the future, or concurrent requests would wait forever
+            synchronized (this) {
+                inFlight.remove(key);
+            }
+            future.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            results.put(key, o);
+            inFlight.remove(key);
+        }
+        future.complete(o);
+        if (Objects.nonNull(persistence)) {
+            persist(key, o);
+        }
+        return o;
+    }
+
+    private synchronized void persist(Key key, O o) {
+        try {
+            persistence.writeLong(key.high());
+            persistence.writeLong(key.low());
+            codec.write(o, persistence);
+            persistence.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (Objects.nonNull(persistence)) {
+            persistence.close();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Runs evaluations of a steppable task interleaving up to worldsPerThread of them on each worker
+// thread: every round steps the physics of all of them, then senses all of them and finally actuates
+// all of them. Agents whose controllers are members of a batch shared by the thread, such as the
+// ones of BipedExperiment.batchedRobot, thus have their controllers evaluated once per round for
+// the whole group; apart from that, the worlds share nothing. Finished evaluations are replaced by
+// queued ones as soon as they end.
+public class LockstepExecutor<A, O> implements AutoCloseable {
+    private record Job<A, O>(A a, CompletableFuture<O> future) {}
+
+    private record Slot<A, O>(Job<A, O> job, Evaluation<O> evaluation) {}
+
+    private final SteppableTask<A, O> task;
+    private final int worldsPerThread;
+    private final BlockingQueue<Job<A, O>> queue;
+    private final List<Thread> workers;
+    private volatile boolean isShutdown;
+
+    public LockstepExecutor(SteppableTask<A, O> task, int nOfThreads, int worldsPerThread) {
+        if (nOfThreads < 1 || worldsPerThread < 1) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid lockstep executor: %d threads with %d worlds each", nOfThreads, worldsPerThread));
+        }
+        this.task = task;
+        this.worldsPerThread = worldsPerThread;
+        this.queue = new LinkedBlockingQueue<>();
+        this.workers = new ArrayList<>(nOfThreads);
+        for (int i = 0; i < nOfThreads; ++i) {
+            Thread worker = new Thread(this::work, "lockstep-worker-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    public Future<O> submit(A a) {
+        if (isShutdown) {
+            throw new RejectedExecutionException("Lockstep executor is shut down");
+        }
+        CompletableFuture<O> future = new CompletableFuture<>();
+        queue.add(new Job<>(a, future));
+        return future;
+    }
+
+    // blocking shorthand, usable as a quality function
+    public O run(A a) {
+        try {
+            return submit(a).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the evaluation");
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private void work() {
+        List<Slot<A, O>> slots = new ArrayList<>(worldsPerThread);
+        try {
+            while (!isShutdown || !queue.isEmpty() || !slots.isEmpty()) {
+                // refill the free slots, blocking only if there is nothing to advance
+                while (slots.size() < worldsPerThread) {
+                    Job<A, O> job = slots.isEmpty() ? queue.poll(100, TimeUnit.MILLISECONDS) : queue.poll();
+                    if (job == null) {
+                        break;
+                    }
+                    try {
+                        Evaluation<O> evaluation = task.start(job.a());
+                        if (evaluation.isDone()) {
+                            job.future().complete(evaluation.outcome());
+                        } else {
+                            slots.add(new Slot<>(job, evaluation));
+                        }
+                    } catch (RuntimeException e) {
+                        job.future().completeExceptionally(e);
+                    }
+                }
+                round(slots);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Slot<A, O> slot : slots) {
+            slot.job().future().cancel(true);
+        }
+    }
+
+    private void round(List<Slot<A, O>> slots) {
+        List<Slot<A, O>> failed = new ArrayList<>();
+        for (Slot<A, O> slot : slots) {
+            run(slot, slot.evaluation()::stepPhysics, failed);
+        }
+        for (Slot<A, O> slot : slots) {
+            run(slot, slot.evaluation()::sense, failed);
+        }
+        for (Slot<A, O> slot : slots) {
+            run(slot, slot.evaluation()::actuate, failed);
+        }
+        slots.removeAll(failed);
+        slots.removeIf(slot -> {
+            if (slot.evaluation().isDone()) {
+                slot.job().future().complete(slot.evaluation().outcome());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private void run(Slot<A, O> slot, Runnable phase, List<Slot<A, O>> failed) {
+        if (failed.contains(slot)) {
+            return;
+        }
+        try {
+            phase.run();
+        } catch (RuntimeException e) {
+            slot.job().future().completeExceptionally(e);
+            failed.add(slot);
+        }
+    }
+
+    // queued evaluations are still completed before the workers stop
+    public void shutdown() {
+        isShutdown = true;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        shutdown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+}
@@ -1,48 +1,160 @@
 package tasks;
 
 import agents.EmbodiedAgent;
+import bodies.Body;
 import engine.Ode4jEngine;
 import geometry.Vector3D;
 import snapshot.InstantSnapshot;
 import terrains.FlatTerrain;
 import terrains.Terrain;
 
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.List;
+import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
-public class Locomotion implements Task<Supplier<EmbodiedAgent>, Outcome> {
+public class Locomotion implements SteppableTask<Supplier<EmbodiedAgent>, Outcome> {
     private final Terrain terrain;
     private final double duration;
     private final Vector3D initialPosition;
+    private final Ode4jEngine.Stepper stepper;
+    private final DescriptorExtractor descriptorExtractor;
 
-    public Locomotion(Terrain terrain, double duration, Vector3D initialPosition) {
+    public Locomotion(
+            Terrain terrain,
+            double duration,
+            Vector3D initialPosition,
+            Ode4jEngine.Stepper stepper,
+            DescriptorExtractor descriptorExtractor
+    ) {
         this.terrain = terrain;
         this.duration = duration;
         this.initialPosition = initialPosition;
+        this.stepper = stepper;
+        this.descriptorExtractor = descriptorExtractor;
+    }
+
+    public Locomotion(Terrain terrain, double duration, Vector3D initialPosition, Ode4jEngine.Stepper stepper) {
+        this(terrain, duration, initialPosition, stepper, DescriptorExtractor.NONE);
+    }
+
+    public Locomotion(Terrain terrain, double duration, Vector3D initialPosition) {
+        this(terrain, duration, initialPosition, Ode4jEngine.Stepper.DEFAULT);
+    }
+
+    public Locomotion(double duration, Ode4jEngine.Stepper stepper) {
+        this(new FlatTerrain(), duration, new Vector3D(0, 0, 1), stepper);
     }
 
     public Locomotion(double duration) {
-        this(new FlatTerrain(), duration, new Vector3D(0, 0, 1));
+        this(duration, Ode4jEngine.Stepper.DEFAULT);
+    }
+
+    public Locomotion(double duration, DescriptorExtractor descriptorExtractor) {
+        this(new FlatTerrain(), duration, new Vector3D(0, 0, 1), Ode4jEngine.Stepper.DEFAULT, descriptorExtractor);
+    }
+
+    // identifies the configuration of the task in evaluation cache keys
+    public String key() {
+        return String.format(
+                "locomotion-%s-%s-%s-%s-%s",
+                terrain.getClass().getSimpleName(),
+                duration,
+                initialPosition,
+                stepper,
+                descriptorExtractor.key());
     }
 
     @Override
-    public Outcome run(Supplier<EmbodiedAgent> embodiedAgentSupplier, Ode4jEngine.Mode mode, Consumer<InstantSnapshot> snapshotConsumer) {
-        Ode4jEngine engine = new Ode4jEngine(new Ode4jEngine.Configuration(terrain, mode));
+    public Evaluation<Outcome> start(Supplier<EmbodiedAgent> embodiedAgentSupplier, Ode4jEngine.Mode mode, Consumer<InstantSnapshot> snapshotConsumer) {
+        Ode4jEngine engine = new Ode4jEngine(new Ode4jEngine.Configuration(terrain, mode, stepper));
         EmbodiedAgent agent = embodiedAgentSupplier.get();
         engine.addAgent(agent, new Vector3D(0, 0, 0));
         // align the agent so that its lowest point has height initialPosition.z
         agent.translate(engine, new Vector3D(initialPosition.x(), initialPosition.y(), initialPosition.z() - agent.boundingBox(0).min().z()));
-        SortedMap<Double, InstantSnapshot> observations = new TreeMap<>();
-        InstantSnapshot state = engine.currentState();
-        observations.put(0d, state);
-        snapshotConsumer.accept(state);
-        while (engine.t() < duration) {
-            state = engine.tick();
-            observations.put(engine.t(), state);
-            snapshotConsumer.accept(state);
+        return new LocomotionEvaluation(engine, snapshotConsumer);
+    }
+
+    // nobody looks at the snapshots, so they are not even built
+    @Override
+    public Evaluation<Outcome> start(Supplier<EmbodiedAgent> embodiedAgentSupplier) {
+        return start(embodiedAgentSupplier, Ode4jEngine.Mode.COMPUTATION, null);
+    }
+
+    private class LocomotionEvaluation implements Evaluation<Outcome> {
+        private final Ode4jEngine engine;
+        private final Consumer<InstantSnapshot> snapshotConsumer;
+        private final TrajectoryStore trajectory;
+        private final DescriptorExtractor.Accumulator descriptorAccumulator;
+
+        private LocomotionEvaluation(Ode4jEngine engine, Consumer<InstantSnapshot> snapshotConsumer) {
+            this.engine = engine;
+            this.snapshotConsumer = snapshotConsumer;
+            this.descriptorAccumulator = descriptorExtractor.accumulator(engine);
+            // one row per tick plus the initial one, assuming the default 60Hz time step
+            this.trajectory = new TrajectoryStore(engine.agents.size(), (int) Math.ceil(duration * 60) + 2);
+            record();
+        }
+
+        // the agent position and velocity are those of its center of mass, as in the snapshots
+        private void record() {
+            int row = trajectory.addRow(engine.t());
+            double t = engine.t();
+            for (int a = 0; a < engine.agents.size(); ++a) {
+                EmbodiedAgent agent = engine.agents.get(a);
+                List<Body> bodies = agent.bodyParts();
+                double mass = 0d;
+                double px = 0d, py = 0d, pz = 0d, vx = 0d, vy = 0d, vz = 0d;
+                for (Body body : bodies) {
+                    double bodyMass = body.mass();
+                    Vector3D position = body.position(t);
+                    Vector3D velocity = body.velocity(t);
+                    mass += bodyMass;
+                    px += position.x() * bodyMass;
+                    py += position.y() * bodyMass;
+                    pz += position.z() * bodyMass;
+                    vx += velocity.x() * bodyMass;
+                    vy += velocity.y() * bodyMass;
+                    vz += velocity.z() * bodyMass;
+                }
+                trajectory.setMass(a, mass);
+                trajectory.set(row, a,
+                        new Vector3D(px / mass, py / mass, pz / mass),
+                        new Vector3D(vx / mass, vy / mass, vz / mass),
+                        agent.boundingBox(t));
+                trajectory.setContacts(row, a, engine.contacts(a));
+            }
+            if (Objects.nonNull(snapshotConsumer)) {
+                snapshotConsumer.accept(engine.currentState());
+            }
+        }
+
+        @Override
+        public boolean isDone() {
+            return engine.t() >= duration;
+        }
+
+        @Override
+        public void stepPhysics() {
+            engine.stepPhysics();
+            descriptorAccumulator.observe(engine);
+        }
+
+        @Override
+        public void sense() {
+            engine.sense();
+        }
+
+        @Override
+        public void actuate() {
+            engine.actuate();
+            record();
+        }
+
+        @Override
+        public Outcome outcome() {
+            trajectory.trim();
+            return new Outcome(trajectory, descriptorAccumulator.descriptor(engine));
         }
-        return new Outcome(observations);
     }
-}
\ No newline at end of file
+}
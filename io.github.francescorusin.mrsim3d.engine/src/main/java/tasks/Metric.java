@@ -0,0 +1,114 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package tasks;
+
+import geometry.Vector3D;
+
+import java.util.Objects;
+
+// A scalar computed on an outcome: a per-agent quantity, aggregated first over the agents and then
+// over time. Metrics are values, so that outcomes can cache them by all their arguments; build them
+// with the static factories and refine them with of and over, e.g.
+// Metric.displacement(Axis.X).of(AgentSelector.ALL_AGENTS_AVERAGE).over(TimeOperator.FINAL)
+public record Metric(Quantity quantity, Vector3D target, Axis axis, AgentSelector agentSelector, TimeOperator timeOperator) {
+    public enum Quantity {
+        DISTANCE_FROM_TARGET, SPEED, VELOCITY, DISPLACEMENT, HEIGHT, KINETIC_ENERGY, CONTACT, BOUNDING_BOX_VOLUME,
+        INTER_AGENT_DISTANCE
+    }
+
+    public enum Axis {
+        X, Y, Z
+    }
+
+    public enum AgentSelector {
+        SINGLE_AGENT, ALL_AGENTS_AVERAGE, ALL_AGENTS_MIN, ALL_AGENTS_MAX
+    }
+
+    public enum TimeOperator {
+        AVERAGE, INITIAL, FINAL, MIN, MAX
+    }
+
+    public Metric {
+        if (quantity == Quantity.DISTANCE_FROM_TARGET && Objects.isNull(target)) {
+            throw new IllegalArgumentException("Distance from target requires a target");
+        }
+        if ((quantity == Quantity.VELOCITY || quantity == Quantity.DISPLACEMENT) && Objects.isNull(axis)) {
+            throw new IllegalArgumentException(String.format("Metric %s requires an axis", quantity));
+        }
+    }
+
+    private static Metric of(Quantity quantity, Vector3D target, Axis axis) {
+        return new Metric(quantity, target, axis, AgentSelector.SINGLE_AGENT, TimeOperator.FINAL);
+    }
+
+    public static Metric distanceFromTarget(Vector3D target) {
+        return of(Quantity.DISTANCE_FROM_TARGET, target, null);
+    }
+
+    // norm of the velocity of the center of mass
+    public static Metric speed() {
+        return of(Quantity.SPEED, null, null);
+    }
+
+    public static Metric velocity(Axis axis) {
+        return of(Quantity.VELOCITY, null, axis);
+    }
+
+    // along the axis, with respect to the position at the start of the outcome
+    public static Metric displacement(Axis axis) {
+        return of(Quantity.DISPLACEMENT, null, axis);
+    }
+
+    // of the center of mass
+    public static Metric height() {
+        return of(Quantity.HEIGHT, null, null);
+    }
+
+    // of the center of mass
+    public static Metric kineticEnergy() {
+        return of(Quantity.KINETIC_ENERGY, null, null);
+    }
+
+    // 1 when the agent touches anything but itself, 0 otherwise: averaged over time, the contact ratio
+    public static Metric contact() {
+        return of(Quantity.CONTACT, null, null);
+    }
+
+    public static Metric contactRatio() {
+        return contact().over(TimeOperator.AVERAGE);
+    }
+
+    public static Metric boundingBoxVolume() {
+        return of(Quantity.BOUNDING_BOX_VOLUME, null, null);
+    }
+
+    // distance between the center of mass of the agent and the closest one of any other agent
+    public static Metric interAgentDistance() {
+        return of(Quantity.INTER_AGENT_DISTANCE, null, null);
+    }
+
+    public Metric of(AgentSelector agentSelector) {
+        return new Metric(quantity, target, axis, agentSelector, timeOperator);
+    }
+
+    public Metric over(TimeOperator timeOperator) {
+        return new Metric(quantity, target, axis, agentSelector, timeOperator);
+    }
+}
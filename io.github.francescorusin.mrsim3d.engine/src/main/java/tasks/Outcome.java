@@ -7,82 +7,248 @@ import snapshot.InstantSnapshot;
 
 import java.util.*;
 
+// A view on the rows [from, to) of a trajectory store, plus the behavior descriptor of the whole
+// evaluation; suboutcomes share both with their parent
 public class Outcome {
-    protected final SortedMap<Double, InstantSnapshot> observations;
-    private final Map<DoubleRange, Outcome> subOutcomeCacher;
-    private final Map<Key, Double> resultsCacher;
-    private static final int MAX_CACHED_SUBOUTCOMES = 3;
+    protected final TrajectoryStore trajectory;
+    private final double[] descriptor;
+    private final int from;
+    private final int to;
+    private final Map<Metric, Double> resultsCacher;
+    // summarized outcomes have no trajectory, only the values of the metrics they were built with
+    private final boolean isSummarized;
+
+    private Outcome(TrajectoryStore trajectory, double[] descriptor, int from, int to, boolean isSummarized) {
+        this.trajectory = trajectory;
+        this.descriptor = descriptor;
+        this.from = from;
+        this.to = to;
+        this.resultsCacher = new HashMap<>();
+        this.isSummarized = isSummarized;
+    }
+
+    public Outcome(TrajectoryStore trajectory, double[] descriptor) {
+        this(trajectory, descriptor, 0, trajectory.size(), false);
+    }
+
+    // an outcome reduced to the values of some metrics and to the descriptor; any other metric is
+    // unknown to it
+    public static Outcome summarized(List<Metric> metrics, double[] values, double[] descriptor) {
+        if (metrics.size() != values.length) {
+            throw new IllegalArgumentException(
+                    String.format("Attempted to summarize %d metrics with %d values", metrics.size(), values.length));
+        }
+        Outcome outcome = new Outcome(new TrajectoryStore(0, 1), descriptor, 0, 0, true);
+        for (int m = 0; m < values.length; ++m) {
+            outcome.resultsCacher.put(metrics.get(m), values[m]);
+        }
+        return outcome;
+    }
+
+    public boolean isSummarized() {
+        return isSummarized;
+    }
+
+    public Outcome(TrajectoryStore trajectory) {
+        this(trajectory, new double[0]);
+    }
 
     public Outcome(Map<Double, InstantSnapshot> observations) {
-        this.observations = new TreeMap<>(observations);
-        this.subOutcomeCacher = new HashMap<>();
-        this.resultsCacher = new HashMap<>();
+        this(store(new TreeMap<>(observations)));
+    }
+
+    private static TrajectoryStore store(SortedMap<Double, InstantSnapshot> observations) {
+        int nOfAgents = observations.isEmpty() ? 0 : observations.get(observations.firstKey()).activeBodies().size();
+        TrajectoryStore trajectory = new TrajectoryStore(nOfAgents, Math.max(1, observations.size()));
+        for (Map.Entry<Double, InstantSnapshot> observation : observations.entrySet()) {
+            int row = trajectory.addRow(observation.getKey());
+            List<BodySnapshot> agents = observation.getValue().activeBodies();
+            for (int a = 0; a < nOfAgents; ++a) {
+                BodySnapshot agent = agents.get(a);
+                trajectory.setMass(a, agent.mass());
+                trajectory.set(row, a, agent.position(), agent.velocity(), agent.boundingBox());
+            }
+        }
+        return trajectory;
+    }
+
+    public double[] descriptor() {
+        return descriptor.clone();
+    }
+
+    public TrajectoryStore trajectory() {
+        return trajectory;
+    }
+
+    // indexes of the rows of this outcome in its trajectory store
+    public int firstRow() {
+        return from;
+    }
+
+    public int endRow() {
+        return to;
+    }
+
+    public int size() {
+        return to - from;
+    }
+
+    public double startTime() {
+        return trajectory.time(from);
+    }
+
+    public double endTime() {
+        return trajectory.time(to - 1);
     }
 
     public double averageDistanceFromTarget(Vector3D target) {
-        return get(new Key(AgentSelector.SINGLE_AGENT, Function.DISTANCE_FROM_TARGET, TimeOperator.AVERAGE), target);
+        return get(Metric.distanceFromTarget(target).over(Metric.TimeOperator.AVERAGE));
     }
 
     public double finalDistanceFromTarget(Vector3D target) {
-        return get(new Key(AgentSelector.SINGLE_AGENT, Function.DISTANCE_FROM_TARGET, TimeOperator.FINAL), target);
+        return get(Metric.distanceFromTarget(target).over(Metric.TimeOperator.FINAL));
     }
 
     public double maxDistanceFromTarget(Vector3D target) {
-        return get(new Key(AgentSelector.SINGLE_AGENT, Function.DISTANCE_FROM_TARGET, TimeOperator.MAX), target);
+        return get(Metric.distanceFromTarget(target).over(Metric.TimeOperator.MAX));
     }
 
     public double minDistanceFromTarget(Vector3D target) {
-        return get(new Key(AgentSelector.SINGLE_AGENT, Function.DISTANCE_FROM_TARGET, TimeOperator.MIN), target);
+        return get(Metric.distanceFromTarget(target).over(Metric.TimeOperator.MIN));
     }
 
-    private enum Function {
-        DISTANCE_FROM_TARGET
+    public double get(Metric metric) {
+        return get(List.of(metric))[0];
     }
 
-    private enum AgentSelector {
-        SINGLE_AGENT, ALL_AGENTS_AVERAGE, ALL_AGENTS_MIN, ALL_AGENTS_MAX
+    public double[] get(Metric... metrics) {
+        return get(Arrays.asList(metrics));
     }
 
-    private enum TimeOperator {
-        AVERAGE, FINAL, MIN, MAX
+    // the metrics which are not cached yet are all computed in a single pass over the trajectory
+    public double[] get(List<Metric> metrics) {
+        List<Metric> missing = metrics.stream().filter(m -> !resultsCacher.containsKey(m)).distinct().toList();
+        if (!missing.isEmpty()) {
+            if (isSummarized) {
+                throw new IllegalArgumentException(
+                        String.format("Metric %s is not part of the summarized outcome", missing.getFirst()));
+            }
+            compute(missing);
+        }
+        double[] results = new double[metrics.size()];
+        for (int i = 0; i < results.length; ++i) {
+            results[i] = resultsCacher.get(metrics.get(i));
+        }
+        return results;
     }
 
-    private record Key(AgentSelector agentSelector, Function function, TimeOperator timeOperator) {}
+    private void compute(List<Metric> metrics) {
+        double[] results = new double[metrics.size()];
+        for (int row = from; row < to; ++row) {
+            for (int m = 0; m < results.length; ++m) {
+                Metric metric = metrics.get(m);
+                Metric.TimeOperator timeOperator = metric.timeOperator();
+                if ((timeOperator == Metric.TimeOperator.INITIAL && row != from)
+                        || (timeOperator == Metric.TimeOperator.FINAL && row != to - 1)) {
+                    continue;
+                }
+                double value = get(row, metric);
+                results[m] = row == from || timeOperator == Metric.TimeOperator.FINAL ? value : switch (timeOperator) {
+                    case AVERAGE -> results[m] + value;
+                    case MIN -> Math.min(results[m], value);
+                    case MAX -> Math.max(results[m], value);
+                    case INITIAL, FINAL -> results[m];
+                };
+            }
+        }
+        for (int m = 0; m < results.length; ++m) {
+            if (metrics.get(m).timeOperator() == Metric.TimeOperator.AVERAGE && to > from) {
+                results[m] /= (to - from);
+            }
+            resultsCacher.put(metrics.get(m), results[m]);
+        }
+    }
 
-    private Double get(BodySnapshot body, Function function, Object... args) {
-        return switch (function) {
-            case DISTANCE_FROM_TARGET -> body.position().vectorDistance((Vector3D) args[0]).norm();
-        };
+    private double get(int row, Metric metric) {
+        int nOfAgents = trajectory.nOfAgents();
+        if (nOfAgents == 0) {
+            return 0d;
+        }
+        if (metric.agentSelector() == Metric.AgentSelector.SINGLE_AGENT) {
+            return get(row, 0, metric);
+        }
+        double result = get(row, 0, metric);
+        for (int a = 1; a < nOfAgents; ++a) {
+            double value = get(row, a, metric);
+            result = switch (metric.agentSelector()) {
+                case ALL_AGENTS_AVERAGE -> result + value;
+                case ALL_AGENTS_MIN -> Math.min(result, value);
+                case ALL_AGENTS_MAX -> Math.max(result, value);
+                case SINGLE_AGENT -> result;
+            };
+        }
+        return metric.agentSelector() == Metric.AgentSelector.ALL_AGENTS_AVERAGE ? result / nOfAgents : result;
     }
 
-    private Double get(InstantSnapshot snapshot, AgentSelector agentSelector, Function function, Object... args) {
-        return switch (agentSelector) {
-            case SINGLE_AGENT -> get(snapshot.activeBodies().getFirst(), function, args);
-            case ALL_AGENTS_AVERAGE -> snapshot.activeBodies().stream().mapToDouble(b -> get(b, function, args)).average().orElse(0d);
-            case ALL_AGENTS_MIN -> snapshot.activeBodies().stream().mapToDouble(b -> get(b, function, args)).min().orElse(0d);
-            case ALL_AGENTS_MAX -> snapshot.activeBodies().stream().mapToDouble(b -> get(b, function, args)).max().orElse(0d);
+    private double get(int row, int agent, Metric metric) {
+        return switch (metric.quantity()) {
+            case DISTANCE_FROM_TARGET -> {
+                Vector3D target = metric.target();
+                yield norm(
+                        trajectory.position(row, agent, 0) - target.x(),
+                        trajectory.position(row, agent, 1) - target.y(),
+                        trajectory.position(row, agent, 2) - target.z());
+            }
+            case SPEED -> norm(
+                    trajectory.velocity(row, agent, 0),
+                    trajectory.velocity(row, agent, 1),
+                    trajectory.velocity(row, agent, 2));
+            case VELOCITY -> trajectory.velocity(row, agent, metric.axis().ordinal());
+            case DISPLACEMENT -> trajectory.position(row, agent, metric.axis().ordinal())
+                    - trajectory.position(from, agent, metric.axis().ordinal());
+            case HEIGHT -> trajectory.position(row, agent, 2);
+            case KINETIC_ENERGY -> {
+                double speed = norm(
+                        trajectory.velocity(row, agent, 0),
+                        trajectory.velocity(row, agent, 1),
+                        trajectory.velocity(row, agent, 2));
+                yield .5 * trajectory.mass(agent) * speed * speed;
+            }
+            case CONTACT -> trajectory.contacts(row, agent) > 0 ? 1d : 0d;
+            case BOUNDING_BOX_VOLUME -> {
+                double volume = 1d;
+                for (int axis = 0; axis < 3; ++axis) {
+                    volume *= trajectory.boundingBoxMax(row, agent, axis) - trajectory.boundingBoxMin(row, agent, axis);
+                }
+                yield volume;
+            }
+            case INTER_AGENT_DISTANCE -> {
+                // a lonely agent is at distance 0 from everybody else
+                double distance = trajectory.nOfAgents() > 1 ? Double.POSITIVE_INFINITY : 0d;
+                for (int other = 0; other < trajectory.nOfAgents(); ++other) {
+                    if (other != agent) {
+                        distance = Math.min(distance, norm(
+                                trajectory.position(row, agent, 0) - trajectory.position(row, other, 0),
+                                trajectory.position(row, agent, 1) - trajectory.position(row, other, 1),
+                                trajectory.position(row, agent, 2) - trajectory.position(row, other, 2)));
+                    }
+                }
+                yield distance;
+            }
         };
     }
 
-    private Double get(Key key, Object... args) {
-        if (!resultsCacher.containsKey(key)) {
-            resultsCacher.put(key, switch (key.timeOperator) {
-                case AVERAGE -> observations.values().stream().mapToDouble(s -> get(s, key.agentSelector, key.function, args)).average().orElse(0d);
-                case FINAL -> get(observations.lastEntry().getValue(), key.agentSelector, key.function, args);
-                case MIN -> observations.values().stream().mapToDouble(s -> get(s, key.agentSelector, key.function, args)).min().orElse(0d);
-                case MAX -> observations.values().stream().mapToDouble(s -> get(s, key.agentSelector, key.function, args)).max().orElse(0d);
-            });
-        }
-        return resultsCacher.get(key);
+    private static double norm(double x, double y, double z) {
+        return Math.sqrt(x * x + y * y + z * z);
     }
 
+    // as with SortedMap.subMap, the lower end of the range is inclusive and the upper one exclusive
     public Outcome suboutcome(DoubleRange range) {
-        if (!subOutcomeCacher.containsKey(range)) {
-            if (subOutcomeCacher.size() >= MAX_CACHED_SUBOUTCOMES) {
-                subOutcomeCacher.remove(subOutcomeCacher.keySet().iterator().next());
-            }
-            subOutcomeCacher.put(range, new Outcome(observations.subMap(range.min(), range.max())));
+        if (isSummarized) {
+            throw new IllegalArgumentException("Summarized outcomes have no trajectory to take a suboutcome of");
         }
-        return subOutcomeCacher.get(range);
+        int subFrom = Math.max(from, trajectory.lowerBound(range.min()));
+        int subTo = Math.min(to, trajectory.lowerBound(range.max()));
+        return new Outcome(trajectory, descriptor, subFrom, Math.max(subFrom, subTo), false);
     }
 }
@@ -0,0 +1,52 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package tasks;
+
+import engine.Ode4jEngine;
+import snapshot.InstantSnapshot;
+
+import java.util.function.Consumer;
+
+public interface SteppableTask<A, O> extends Task<A, O> {
+    Evaluation<O> start(A a, Ode4jEngine.Mode mode, Consumer<InstantSnapshot> snapshotConsumer);
+
+    default Evaluation<O> start(A a) {
+        return start(a, Ode4jEngine.Mode.COMPUTATION, _ -> {
+        });
+    }
+
+    @Override
+    default O run(A a, Ode4jEngine.Mode mode, Consumer<InstantSnapshot> snapshotConsumer) {
+        Evaluation<O> evaluation = start(a, mode, snapshotConsumer);
+        while (!evaluation.isDone()) {
+            evaluation.tick();
+        }
+        return evaluation.outcome();
+    }
+
+    @Override
+    default O run(A a) {
+        Evaluation<O> evaluation = start(a);
+        while (!evaluation.isDone()) {
+            evaluation.tick();
+        }
+        return evaluation.outcome();
+    }
+}
@@ -0,0 +1,207 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package tasks;
+
+import geometry.BoundingBox;
+import geometry.Vector3D;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+// Columnar, off-heap trajectory of the agents of a simulation: one row per observation time, holding
+// for every agent its center of mass, velocity, bounding box and number of contacts. Rows are appended in time order;
+// appending a row with the same time as the last one overwrites it.
+public class TrajectoryStore {
+    private static final int VECTOR_COLUMNS = 4;
+    private static final int POSITION = 0;
+    private static final int VELOCITY = 1;
+    private static final int BBOX_MIN = 2;
+    private static final int BBOX_MAX = 3;
+
+    private final int nOfAgents;
+    private final double[] masses;
+    private DoubleBuffer times;
+    // per row, per agent, per column, per axis
+    private DoubleBuffer vectors;
+    // per row, per agent
+    private DoubleBuffer contacts;
+    private int size;
+
+    public TrajectoryStore(int nOfAgents, int initialCapacity) {
+        if (nOfAgents < 0 || initialCapacity < 1) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid trajectory store: %d agents, capacity %d", nOfAgents, initialCapacity));
+        }
+        this.nOfAgents = nOfAgents;
+        this.masses = new double[nOfAgents];
+        this.times = allocate(initialCapacity);
+        this.vectors = allocate(initialCapacity * rowWidth());
+        this.contacts = allocate(initialCapacity * nOfAgents);
+    }
+
+    private static DoubleBuffer allocate(int doubles) {
+        return ByteBuffer.allocateDirect(Math.max(1, doubles) * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+    }
+
+    private int rowWidth() {
+        return nOfAgents * VECTOR_COLUMNS * 3;
+    }
+
+    private int index(int row, int agent, int column) {
+        return row * rowWidth() + (agent * VECTOR_COLUMNS + column) * 3;
+    }
+
+    public int nOfAgents() {
+        return nOfAgents;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double mass(int agent) {
+        return masses[agent];
+    }
+
+    public void setMass(int agent, double mass) {
+        masses[agent] = mass;
+    }
+
+    // returns the index of the row to fill
+    public int addRow(double t) {
+        if (size > 0 && t < times.get(size - 1)) {
+            throw new IllegalArgumentException(
+                    String.format("Cannot add time %f after time %f", t, times.get(size - 1)));
+        }
+        if (size > 0 && t == times.get(size - 1)) {
+            return size - 1;
+        }
+        if (size == times.capacity()) {
+            DoubleBuffer largerTimes = allocate(2 * size);
+            largerTimes.put(0, times, 0, size);
+            times = largerTimes;
+            DoubleBuffer largerVectors = allocate(2 * size * rowWidth());
+            largerVectors.put(0, vectors, 0, size * rowWidth());
+            vectors = largerVectors;
+            DoubleBuffer largerContacts = allocate(2 * size * nOfAgents);
+            largerContacts.put(0, contacts, 0, size * nOfAgents);
+            contacts = largerContacts;
+        }
+        times.put(size, t);
+        return size++;
+    }
+
+    private void put(int row, int agent, int column, Vector3D v) {
+        int index = index(row, agent, column);
+        vectors.put(index, v.x());
+        vectors.put(index + 1, v.y());
+        vectors.put(index + 2, v.z());
+    }
+
+    public void set(int row, int agent, Vector3D position, Vector3D velocity, BoundingBox boundingBox) {
+        put(row, agent, POSITION, position);
+        put(row, agent, VELOCITY, velocity);
+        put(row, agent, BBOX_MIN, boundingBox.min());
+        put(row, agent, BBOX_MAX, boundingBox.max());
+    }
+
+    public void setContacts(int row, int agent, int nOfContacts) {
+        contacts.put(row * nOfAgents + agent, nOfContacts);
+    }
+
+    public double time(int row) {
+        return times.get(row);
+    }
+
+    // axis is 0, 1 or 2 for x, y or z
+    public double position(int row, int agent, int axis) {
+        return vectors.get(index(row, agent, POSITION) + axis);
+    }
+
+    public double velocity(int row, int agent, int axis) {
+        return vectors.get(index(row, agent, VELOCITY) + axis);
+    }
+
+    public double contacts(int row, int agent) {
+        return contacts.get(row * nOfAgents + agent);
+    }
+
+    public double boundingBoxMin(int row, int agent, int axis) {
+        return vectors.get(index(row, agent, BBOX_MIN) + axis);
+    }
+
+    public double boundingBoxMax(int row, int agent, int axis) {
+        return vectors.get(index(row, agent, BBOX_MAX) + axis);
+    }
+
+    private Vector3D vector(int row, int agent, int column) {
+        int index = index(row, agent, column);
+        return new Vector3D(vectors.get(index), vectors.get(index + 1), vectors.get(index + 2));
+    }
+
+    public Vector3D position(int row, int agent) {
+        return vector(row, agent, POSITION);
+    }
+
+    public Vector3D velocity(int row, int agent) {
+        return vector(row, agent, VELOCITY);
+    }
+
+    public BoundingBox boundingBox(int row, int agent) {
+        return new BoundingBox(vector(row, agent, BBOX_MIN), vector(row, agent, BBOX_MAX));
+    }
+
+    // index of the first row with time not lower than t, size() if there is none
+    public int lowerBound(double t) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times.get(middle) < t) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // releases the unused capacity once no more rows are going to be added
+    public void trim() {
+        if (times.capacity() > size) {
+            DoubleBuffer trimmedTimes = allocate(size);
+            trimmedTimes.put(0, times, 0, size);
+            times = trimmedTimes;
+            DoubleBuffer trimmedVectors = allocate(size * rowWidth());
+            trimmedVectors.put(0, vectors, 0, size * rowWidth());
+            vectors = trimmedVectors;
+            DoubleBuffer trimmedContacts = allocate(size * nOfAgents);
+            trimmedContacts.put(0, contacts, 0, size * nOfAgents);
+            contacts = trimmedContacts;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TrajectoryStore[%d agents, %d rows, masses %s]", nOfAgents, size, Arrays.toString(masses));
+    }
+}
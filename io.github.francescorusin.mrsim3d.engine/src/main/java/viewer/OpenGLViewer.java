@@ -10,6 +10,7 @@ import org.lwjgl.system.MemoryStack;
 
 import java.awt.*;
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 
 import static org.lwjgl.glfw.GLFW.*;
@@ -23,11 +24,20 @@ public abstract class OpenGLViewer implements Viewer {
     protected Vector3D cameraPos;
     protected Vector3D cameraDir;
     protected final Vector3D cameraUp;
+    // triangles and lines are accumulated here and drawn with a single call each at flush
+    private FloatBuffer triangleVertices;
+    private FloatBuffer triangleColors;
+    private FloatBuffer lineVertices;
+    private FloatBuffer lineColors;
 
     public OpenGLViewer(Vector3D cameraPos, Vector3D cameraDir, Vector3D cameraUp) {
         this.cameraPos = cameraPos;
         this.cameraDir = cameraDir.normalize();
         this.cameraUp = cameraUp;
+        this.triangleVertices = BufferUtils.createFloatBuffer(3 * 3 * 4096);
+        this.triangleColors = BufferUtils.createFloatBuffer(3 * 3 * 4096);
+        this.lineVertices = BufferUtils.createFloatBuffer(2 * 3 * 4096);
+        this.lineColors = BufferUtils.createFloatBuffer(2 * 3 * 4096);
         // Setup an error callback. The default implementation
         // will print the error message in System.err.
         GLFWErrorCallback.createPrint(System.err).set();
@@ -65,6 +75,11 @@ public abstract class OpenGLViewer implements Viewer {
         );
     }
 
+    @Override
+    public Vector3D cameraPosition() {
+        return cameraPos;
+    }
+
     @Override
     public int loadTexture(String filename) {
         int texID = glGenTextures();
@@ -93,18 +108,100 @@ public abstract class OpenGLViewer implements Viewer {
         return texID;
     }
 
+    private static FloatBuffer ensureCapacity(FloatBuffer buffer, int floats) {
+        if (buffer.remaining() >= floats) {
+            return buffer;
+        }
+        FloatBuffer larger = BufferUtils.createFloatBuffer(Math.max(2 * buffer.capacity(), buffer.position() + floats));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    private static void put(FloatBuffer vertices, FloatBuffer colors, double x, double y, double z, Color color) {
+        vertices.put((float) x).put((float) y).put((float) z);
+        colors.put(color.getRed() / 255f).put(color.getGreen() / 255f).put(color.getBlue() / 255f);
+    }
+
     @Override
     public void drawTriangle(Vector3D v1, Vector3D v2, Vector3D v3, Color color) {
-        glColor3f(color.getRed() / 255f, color.getGreen() / 255f, color.getBlue() / 255f);
-        glBegin(GL_TRIANGLES);
-        glVertex3d(v1.x(), v1.y(), v1.z());
-        glVertex3d(v2.x(), v2.y(), v2.z());
-        glVertex3d(v3.x(), v3.y(), v3.z());
-        glEnd();
+        triangleVertices = ensureCapacity(triangleVertices, 9);
+        triangleColors = ensureCapacity(triangleColors, 9);
+        put(triangleVertices, triangleColors, v1.x(), v1.y(), v1.z(), color);
+        put(triangleVertices, triangleColors, v2.x(), v2.y(), v2.z(), color);
+        put(triangleVertices, triangleColors, v3.x(), v3.y(), v3.z(), color);
+    }
+
+    @Override
+    public void drawHexahedron(Vector3D[] corners, Color color, Color edgeColor) {
+        triangleVertices = ensureCapacity(triangleVertices, 3 * HEXAHEDRON_TRIANGLES.length);
+        triangleColors = ensureCapacity(triangleColors, 3 * HEXAHEDRON_TRIANGLES.length);
+        for (int corner : HEXAHEDRON_TRIANGLES) {
+            put(triangleVertices, triangleColors, corners[corner].x(), corners[corner].y(), corners[corner].z(), color);
+        }
+        if (edgeColor != null) {
+            lineVertices = ensureCapacity(lineVertices, 3 * HEXAHEDRON_EDGES.length);
+            lineColors = ensureCapacity(lineColors, 3 * HEXAHEDRON_EDGES.length);
+            for (int corner : HEXAHEDRON_EDGES) {
+                put(lineVertices, lineColors, corners[corner].x(), corners[corner].y(), corners[corner].z(), edgeColor);
+            }
+        }
+    }
+
+    // the unit cube is instanced from the body transform: only its three axes are rotated, and the
+    // corners are combinations of them
+    @Override
+    public void drawCube(Vector3D position, Vector3D rotation, double sideLength, Color color, Color edgeColor) {
+        Vector3D ax = new Vector3D(sideLength, 0, 0).rotate(rotation);
+        Vector3D ay = new Vector3D(0, sideLength, 0).rotate(rotation);
+        Vector3D az = new Vector3D(0, 0, sideLength).rotate(rotation);
+        Vector3D[] corners = new Vector3D[8];
+        for (int i = 0; i < 8; ++i) {
+            double fx = (i >> 2) - .5;
+            double fy = (i >> 1 & 1) - .5;
+            double fz = (i & 1) - .5;
+            corners[i] = new Vector3D(
+                    position.x() + fx * ax.x() + fy * ay.x() + fz * az.x(),
+                    position.y() + fx * ax.y() + fy * ay.y() + fz * az.y(),
+                    position.z() + fx * ax.z() + fy * ay.z() + fz * az.z());
+        }
+        drawHexahedron(corners, color, edgeColor);
+    }
+
+    @Override
+    public void flush() {
+        if (triangleVertices.position() == 0 && lineVertices.position() == 0) {
+            return;
+        }
+        glDisable(GL_TEXTURE_2D);
+        glEnableClientState(GL_VERTEX_ARRAY);
+        glEnableClientState(GL_COLOR_ARRAY);
+        if (triangleVertices.position() > 0) {
+            int count = triangleVertices.position() / 3;
+            glVertexPointer(3, GL_FLOAT, 0, triangleVertices.flip());
+            glColorPointer(3, GL_FLOAT, 0, triangleColors.flip());
+            glDrawArrays(GL_TRIANGLES, 0, count);
+        }
+        if (lineVertices.position() > 0) {
+            int count = lineVertices.position() / 3;
+            glLineWidth(4f);
+            glVertexPointer(3, GL_FLOAT, 0, lineVertices.flip());
+            glColorPointer(3, GL_FLOAT, 0, lineColors.flip());
+            glDrawArrays(GL_LINES, 0, count);
+        }
+        glDisableClientState(GL_COLOR_ARRAY);
+        glDisableClientState(GL_VERTEX_ARRAY);
+        glEnable(GL_TEXTURE_2D);
+        triangleVertices.clear();
+        triangleColors.clear();
+        lineVertices.clear();
+        lineColors.clear();
     }
 
     @Override
     public void drawTexture(Vector3D v1, Vector3D v2, Vector3D v3, Vector3D v4, int texID, int hReps, int vReps) {
+        // blending depends on what has already been drawn
+        flush();
         glEnable(GL_BLEND);
         glBlendFunc(GL_ONE, GL_ONE);
         glColor3f(1f, 1f, 1f);
@@ -129,11 +226,9 @@ public abstract class OpenGLViewer implements Viewer {
 
     @Override
     public void drawLine(Vector3D p1, Vector3D p2, Color color) {
-        glColor3f(color.getRed() / 255f, color.getGreen() / 255f, color.getBlue() / 255f);
-        glLineWidth(4f);
-        glBegin(GL_LINES);
-        glVertex3d(p1.x(), p1.y(), p1.z());
-        glVertex3d(p2.x(), p2.y(), p2.z());
-        glEnd();
+        lineVertices = ensureCapacity(lineVertices, 6);
+        lineColors = ensureCapacity(lineColors, 6);
+        put(lineVertices, lineColors, p1.x(), p1.y(), p1.z(), color);
+        put(lineVertices, lineColors, p2.x(), p2.y(), p2.z(), color);
     }
 }
@@ -20,34 +20,47 @@
 package viewer;
 
 import agents.CentralizedGridRobot;
-import bodies.Voxel;
 import engine.Ode4jEngine;
+import experiments.BipedExperiment;
+import experiments.ExperimentLog;
 import geometry.Vector3D;
-import io.github.ericmedvet.jsdynsym.core.composed.OutStepped;
-import io.github.ericmedvet.jsdynsym.core.numerical.NumericalDynamicalSystem;
-import io.github.ericmedvet.jsdynsym.core.numerical.ann.MultiLayerPerceptron;
 import snapshot.InstantSnapshot;
 
 import java.awt.*;
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.util.Arrays;
-import java.util.EnumSet;
+import java.nio.file.Path;
 import java.util.List;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.system.MemoryUtil.NULL;
 
+// The simulation runs on its own thread and hands snapshots to accept, which publishes them through a
+// single slot holding the last two; the render loop runs on the thread owning the window, drawing the
+// interpolation between the two. The real-time factor throttles the simulation thread only: a
+// non-positive or infinite one lets it run at full speed.
 public class RealtimeViewer extends OpenGLViewer {
     protected final long window;
-    protected boolean pause;
+    protected volatile boolean pause;
+    protected volatile double realTimeFactor;
     private final double MOVEMENT_TICK = 0.05;
     private final double ROTATION_TICK = 0.01;
 
+    private record Frames(InstantSnapshot previous, InstantSnapshot latest, long publishedNanos) {}
+
+    private final AtomicReference<Frames> frames;
+    private final Object pauseLock;
+    // simulation time and wall time the throttling is measured from; reset to -1 to re-anchor
+    private double anchorT;
+    private volatile long anchorNanos;
+
     public RealtimeViewer(Vector3D cameraPos, Vector3D cameraDir, Vector3D cameraUp) {
         super(cameraPos, cameraDir, cameraUp);
+        this.frames = new AtomicReference<>();
+        this.pauseLock = new Object();
+        this.realTimeFactor = 1d;
+        this.anchorNanos = -1;
 
         // Configure GLFW
         glfwDefaultWindowHints(); // optional, the current window hints are already the default
@@ -63,6 +76,19 @@ public class RealtimeViewer extends OpenGLViewer {
             if (key == GLFW_KEY_ESCAPE && action == GLFW_RELEASE) {
                 glfwSetWindowShouldClose(window, true);
             }
+            if (key == GLFW_KEY_SPACE && action == GLFW_PRESS) {
+                setPause(!pause);
+            }
+            // + and - double and halve the real-time factor, 0 removes the limit
+            if (key == GLFW_KEY_EQUAL && action == GLFW_PRESS) {
+                setRealTimeFactor(realTimeFactor > 0 && Double.isFinite(realTimeFactor) ? 2 * realTimeFactor : 1d);
+            }
+            if (key == GLFW_KEY_MINUS && action == GLFW_PRESS) {
+                setRealTimeFactor(realTimeFactor > 0 && Double.isFinite(realTimeFactor) ? realTimeFactor / 2 : 1d);
+            }
+            if (key == GLFW_KEY_0 && action == GLFW_PRESS) {
+                setRealTimeFactor(Double.POSITIVE_INFINITY);
+            }
         });
 
         // Setup a callback for the mouse scroll.
@@ -115,91 +141,123 @@ public class RealtimeViewer extends OpenGLViewer {
                     this.cameraUp.vectorDistance(this.cameraDir.times(this.cameraUp.scalarProduct(this.cameraDir))).eulerAngles(-ROTATION_TICK)
             );
         }
-        if (glfwGetKey(window, GLFW_KEY_SPACE) == GLFW_PRESS) {
-            this.pause = !this.pause;
+    }
+
+    public void setPause(boolean pause) {
+        synchronized (pauseLock) {
+            this.pause = pause;
+            pauseLock.notifyAll();
         }
     }
 
+    public void setRealTimeFactor(double realTimeFactor) {
+        this.realTimeFactor = realTimeFactor;
+        // re-anchored by the simulation thread at the next snapshot
+        this.anchorNanos = -1;
+    }
+
+    // called by the simulation thread: publishes the snapshot, then blocks while paused and as long as
+    // it is ahead of the real-time factor
     @Override
     public void accept(InstantSnapshot instantSnapshot) {
-        do {
-            instantSnapshot.draw(this);
-        } while (!pause);
+        Frames current = frames.get();
+        frames.set(new Frames(current == null ? instantSnapshot : current.latest(), instantSnapshot, System.nanoTime()));
+        synchronized (pauseLock) {
+            boolean paused = false;
+            while (pause) {
+                paused = true;
+                try {
+                    pauseLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (paused) {
+                anchorNanos = -1;
+            }
+        }
+        final double factor = realTimeFactor;
+        if (factor <= 0 || !Double.isFinite(factor)) {
+            return;
+        }
+        if (anchorNanos < 0) {
+            anchorNanos = System.nanoTime();
+            anchorT = instantSnapshot.t();
+            return;
+        }
+        long target = anchorNanos + (long) ((instantSnapshot.t() - anchorT) / factor * 1e9);
+        long now;
+        while ((now = System.nanoTime()) < target && anchorNanos >= 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(target - now);
+        }
     }
 
-    // loop for testing; it should not be here in the final product
-    private void loop(int index) {
+    // the latest snapshot is reached one simulation step after it has been published
+    private InstantSnapshot currentFrame() {
+        Frames current = frames.get();
+        if (current == null) {
+            return null;
+        }
+        final double factor = realTimeFactor;
+        double interval = (current.latest().t() - current.previous().t()) / factor * 1e9;
+        if (pause || factor <= 0 || !Double.isFinite(factor) || interval <= 0) {
+            return current.latest();
+        }
+        double alpha = Math.min(1d, (System.nanoTime() - current.publishedNanos()) / interval);
+        return current.previous().interpolate(current.latest(), alpha);
+    }
+
+    // runs the simulation on a new thread and renders on the calling one until the window is closed;
+    // the simulation is expected to feed this viewer through accept
+    public void run(Runnable simulation) {
         Vector3D origin = new Vector3D(0, 0, 0);
         Vector3D ax1 = new Vector3D(1, 0, 0);
         Vector3D ax2 = new Vector3D(0, 1, 0);
         Vector3D ax3 = new Vector3D(0, 0, 1);
         glClearColor(0.9f, 0.9f, 0.9f, 0f);
-        Ode4jEngine engine = new Ode4jEngine(Ode4jEngine.Mode.DISPLAY);
-        CentralizedGridRobot robot = getRobot(index);
-        engine.addAgent(robot, new Vector3D(0.6, 0.6, 4.75));
+        Thread simulationThread = new Thread(simulation, "simulation");
+        simulationThread.setDaemon(true);
+        simulationThread.start();
         while (!glfwWindowShouldClose(window)) {
             glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
             setView();
             drawLine(origin, ax1, Color.RED);
             drawLine(origin, ax2, Color.BLUE);
             drawLine(origin, ax3, Color.GREEN);
-            engine.tick().draw(this);
+            InstantSnapshot frame = currentFrame();
+            if (frame != null) {
+                frame.draw(this);
+            }
+            flush();
             glfwSwapBuffers(window);
             handleEvents();
         }
+        simulationThread.interrupt();
+        setPause(false);
     }
 
-    private final Function<double[], CentralizedGridRobot> agentBuilder = g -> {
-        MultiLayerPerceptron mlp = new MultiLayerPerceptron(
-                MultiLayerPerceptron.ActivationFunction.TANH,
-                80,
-                new int[]{80},
-                336
-        );
-        mlp.setParams(g);
-        return new CentralizedGridRobot(
-                testGrid("biped"),
-                NumericalDynamicalSystem.from(
-                        new OutStepped<>(mlp, 0.1),
-                        80,
-                        336
-                )
-        );
-    };
+    // loop for testing; it should not be here in the final product
+    private void loop(int index) {
+        run(() -> {
+            Ode4jEngine engine = new Ode4jEngine(Ode4jEngine.Mode.DISPLAY);
+            CentralizedGridRobot robot = getRobot(index);
+            engine.addAgent(robot, new Vector3D(0.6, 0.6, 4.75));
+            while (!Thread.currentThread().isInterrupted()) {
+                accept(engine.tick());
+            }
+        });
+    }
 
+    // index-th best distinct individual of the experiment log
     private CentralizedGridRobot getRobot(int index) {
         double[] genotype = new double[0];
-        try {
-            final BufferedReader reader = new BufferedReader(new FileReader("C:\\Users\\Francesco\\Desktop\\Università\\Dottorato\\Ricerca\\3dsim\\base-exp.txt"));
-            for (int i = 0; i < index; ++i) {
-                reader.readLine();
-            }
-            genotype = Arrays.stream(reader.readLine().replace("[", "").replace("]", "").split(", ")).mapToDouble(Double::parseDouble).toArray();
+        try (ExperimentLog.Reader reader = new ExperimentLog.Reader(Path.of("C:\\Users\\Francesco\\Desktop\\Università\\Dottorato\\Ricerca\\3dsim\\base-exp.log"))) {
+            genotype = reader.topKDistinctGenotypes(index + 1).get(index).genotype();
         } catch (Exception e) {
             e.printStackTrace();
         }
-        return agentBuilder.apply(genotype);
-    }
-
-    private static Voxel[][][] testGrid(String shape) {
-        return switch (shape) {
-            case "biped" -> {
-                Voxel[][][] grid = new Voxel[4][3][3];
-                for (int i = 0; i < 4; i++) {
-                    for (int j = 0; j < 3; j++) {
-                        for (int k = 1; k < 3; k++) {
-                            grid[i][j][k] = new Voxel(EnumSet.allOf(Voxel.JointOption.class), "");
-                        }
-                    }
-                }
-                grid[0][0][0] = new Voxel(EnumSet.allOf(Voxel.JointOption.class), "ang-vlm-vlc-scr-cnt");
-                grid[3][0][0] = new Voxel(EnumSet.allOf(Voxel.JointOption.class), "ang-vlm-vlc-scr-cnt");
-                grid[0][2][0] = new Voxel(EnumSet.allOf(Voxel.JointOption.class), "ang-vlm-vlc-scr-cnt");
-                grid[3][2][0] = new Voxel(EnumSet.allOf(Voxel.JointOption.class), "ang-vlm-vlc-scr-cnt");
-                yield grid;
-            }
-            default -> null;
-        };
+        return BipedExperiment.robot(genotype);
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,528 @@
+/*-
+ * ========================LICENSE_START=================================
+ * mrsim3d.engine
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package viewer;
+
+import geometry.Vector3D;
+import snapshot.InstantSnapshot;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// Viewer that needs neither a display nor a GL context: every accepted snapshot is rasterized on the
+// CPU into off-heap color and depth buffers and handed to a frame sink. Primitives are projected as
+// OpenGLViewer does (same frustum and look-at), binned into square tiles and the tiles are rasterized
+// in parallel, each thread owning its own part of the buffers.
+public class SoftwareViewer implements Viewer, AutoCloseable {
+    protected static final Vector3D DEFAULT_CAMERA_POS = new Vector3D(5, -5, 5);
+    protected static final Vector3D DEFAULT_CAMERA_DIR = new Vector3D(-5, 5, -3);
+    protected static final Vector3D DEFAULT_CAMERA_UP = new Vector3D(0, 0, 1);
+    private static final int TILE_SIZE = 64;
+    private static final float LINE_HALF_WIDTH = 2f;
+    private static final int CLEAR_RGB = new Color(0.9f, 0.9f, 0.9f).getRGB();
+    private static final double NEAR = 0.5;
+    private static final double FAR = 100;
+
+    public interface FrameSink extends Closeable {
+        // rgb holds width * height pixels, row by row from the top, three bytes each
+        void accept(ByteBuffer rgb, int width, int height, long frame) throws IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+
+        static FrameSink pngSequence(Path directory) throws IOException {
+            Files.createDirectories(directory);
+            return (rgb, width, height, frame) -> {
+                BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                for (int y = 0; y < height; ++y) {
+                    for (int x = 0; x < width; ++x) {
+                        int index = 3 * (y * width + x);
+                        image.setRGB(x, y, (rgb.get(index) & 0xFF) << 16 | (rgb.get(index + 1) & 0xFF) << 8 | rgb.get(index + 2) & 0xFF);
+                    }
+                }
+                ImageIO.write(image, "png", directory.resolve(String.format("frame-%06d.png", frame)).toFile());
+            };
+        }
+
+        // raw rgb24 frames, e.g. for "ffmpeg -f rawvideo -pix_fmt rgb24 -s WIDTHxHEIGHT -i - out.mp4"
+        static FrameSink rawStream(OutputStream outputStream) {
+            WritableByteChannel channel = Channels.newChannel(outputStream);
+            return new FrameSink() {
+                @Override
+                public void accept(ByteBuffer rgb, int width, int height, long frame) throws IOException {
+                    ByteBuffer view = rgb.duplicate();
+                    view.clear();
+                    while (view.hasRemaining()) {
+                        channel.write(view);
+                    }
+                    outputStream.flush();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    channel.close();
+                }
+            };
+        }
+    }
+
+    private record Texture(int width, int height, int[] rgb) {}
+
+    private final int width;
+    private final int height;
+    private final int tilesX;
+    private final int tilesY;
+    private final ByteBuffer color;
+    private final FloatBuffer depth;
+    private final ForkJoinPool pool;
+    private final FrameSink sink;
+    private final List<Texture> textures;
+    private final List<Primitive> primitives;
+    private int[][] bins;
+    private int[] binSizes;
+    private long frame;
+    // row-major projection * view matrix
+    private final double[] transform;
+    protected Vector3D cameraPos;
+    protected Vector3D cameraDir;
+    protected final Vector3D cameraUp;
+
+    public SoftwareViewer(int width, int height, int nOfThreads, Vector3D cameraPos, Vector3D cameraDir, Vector3D cameraUp, FrameSink sink) {
+        if (width < 1 || height < 1 || nOfThreads < 1) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid software viewer: %dx%d pixels on %d threads", width, height, nOfThreads));
+        }
+        this.width = width;
+        this.height = height;
+        this.tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        this.tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+        this.color = ByteBuffer.allocateDirect(3 * width * height);
+        this.depth = ByteBuffer.allocateDirect(4 * width * height).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        this.pool = new ForkJoinPool(nOfThreads);
+        this.sink = sink;
+        this.textures = new ArrayList<>();
+        this.primitives = new ArrayList<>();
+        this.bins = new int[tilesX * tilesY][16];
+        this.binSizes = new int[tilesX * tilesY];
+        this.transform = new double[16];
+        this.cameraPos = cameraPos;
+        this.cameraDir = cameraDir.normalize();
+        this.cameraUp = cameraUp;
+    }
+
+    public SoftwareViewer(int width, int height, int nOfThreads, FrameSink sink) {
+        this(width, height, nOfThreads, DEFAULT_CAMERA_POS, DEFAULT_CAMERA_DIR, DEFAULT_CAMERA_UP, sink);
+    }
+
+    public SoftwareViewer(FrameSink sink) {
+        this(800, 800, Runtime.getRuntime().availableProcessors(), sink);
+    }
+
+    public void setCamera(Vector3D cameraPos, Vector3D cameraDir) {
+        this.cameraPos = cameraPos;
+        this.cameraDir = cameraDir.normalize();
+    }
+
+    @Override
+    public void accept(InstantSnapshot instantSnapshot) {
+        beginFrame();
+        instantSnapshot.draw(this);
+        render();
+        try {
+            sink.accept(color, width, height, frame++);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // read-only view of the last rendered frame
+    public ByteBuffer frame() {
+        return color.asReadOnlyBuffer();
+    }
+
+    public void beginFrame() {
+        primitives.clear();
+        // glFrustum(-0.5, 0.5, -0.5, 0.5, NEAR, FAR) times lookAt(cameraPos, cameraPos + cameraDir, cameraUp)
+        Vector3D f = cameraDir.normalize();
+        Vector3D s = f.vectorProduct(cameraUp).normalize();
+        Vector3D u = s.vectorProduct(f);
+        double[] view = {
+                s.x(), s.y(), s.z(), -s.scalarProduct(cameraPos),
+                u.x(), u.y(), u.z(), -u.scalarProduct(cameraPos),
+                -f.x(), -f.y(), -f.z(), f.scalarProduct(cameraPos),
+                0, 0, 0, 1
+        };
+        double[] projection = {
+                2 * NEAR, 0, 0, 0,
+                0, 2 * NEAR, 0, 0,
+                0, 0, -(FAR + NEAR) / (FAR - NEAR), -2 * FAR * NEAR / (FAR - NEAR),
+                0, 0, -1, 0
+        };
+        for (int r = 0; r < 4; ++r) {
+            for (int c = 0; c < 4; ++c) {
+                double sum = 0;
+                for (int k = 0; k < 4; ++k) {
+                    sum += projection[4 * r + k] * view[4 * k + c];
+                }
+                transform[4 * r + c] = sum;
+            }
+        }
+    }
+
+    public void render() {
+        Arrays.fill(binSizes, 0);
+        for (int i = 0; i < primitives.size(); ++i) {
+            Primitive primitive = primitives.get(i);
+            int minTileX = Math.max(0, Math.floorDiv(primitive.minX, TILE_SIZE));
+            int maxTileX = Math.min(tilesX - 1, Math.floorDiv(primitive.maxX, TILE_SIZE));
+            int minTileY = Math.max(0, Math.floorDiv(primitive.minY, TILE_SIZE));
+            int maxTileY = Math.min(tilesY - 1, Math.floorDiv(primitive.maxY, TILE_SIZE));
+            for (int ty = minTileY; ty <= maxTileY; ++ty) {
+                for (int tx = minTileX; tx <= maxTileX; ++tx) {
+                    int tile = ty * tilesX + tx;
+                    if (binSizes[tile] == bins[tile].length) {
+                        bins[tile] = Arrays.copyOf(bins[tile], 2 * bins[tile].length);
+                    }
+                    bins[tile][binSizes[tile]++] = i;
+                }
+            }
+        }
+        pool.submit(() -> IntStream.range(0, tilesX * tilesY).parallel().forEach(this::renderTile)).join();
+    }
+
+    private void renderTile(int tile) {
+        int x0 = (tile % tilesX) * TILE_SIZE;
+        int y0 = (tile / tilesX) * TILE_SIZE;
+        int x1 = Math.min(width, x0 + TILE_SIZE);
+        int y1 = Math.min(height, y0 + TILE_SIZE);
+        for (int y = y0; y < y1; ++y) {
+            for (int x = x0; x < x1; ++x) {
+                depth.put(y * width + x, Float.POSITIVE_INFINITY);
+                writeColor(y * width + x, CLEAR_RGB);
+            }
+        }
+        for (int i = 0; i < binSizes[tile]; ++i) {
+            Primitive primitive = primitives.get(bins[tile][i]);
+            primitive.rasterize(Math.max(x0, primitive.minX), Math.max(y0, primitive.minY),
+                    Math.min(x1 - 1, primitive.maxX), Math.min(y1 - 1, primitive.maxY));
+        }
+    }
+
+    private void writeColor(int pixel, int rgb) {
+        color.put(3 * pixel, (byte) (rgb >> 16));
+        color.put(3 * pixel + 1, (byte) (rgb >> 8));
+        color.put(3 * pixel + 2, (byte) rgb);
+    }
+
+    private int readColor(int pixel) {
+        return (color.get(3 * pixel) & 0xFF) << 16 | (color.get(3 * pixel + 1) & 0xFF) << 8 | color.get(3 * pixel + 2) & 0xFF;
+    }
+
+    // pixel bounds are inclusive
+    private abstract static class Primitive {
+        int minX, minY, maxX, maxY;
+
+        abstract void rasterize(int x0, int y0, int x1, int y1);
+    }
+
+    // screen-space triangle; z is the normalized device depth, and the texture coordinates are stored
+    // divided by w for perspective-correct interpolation
+    private final class Triangle extends Primitive {
+        final float[] x = new float[3];
+        final float[] y = new float[3];
+        final float[] z = new float[3];
+        final float[] invW = new float[3];
+        final float[] uW = new float[3];
+        final float[] vW = new float[3];
+        int rgb;
+        Texture texture;
+
+        void computeBounds() {
+            minX = (int) Math.floor(Math.min(x[0], Math.min(x[1], x[2])));
+            minY = (int) Math.floor(Math.min(y[0], Math.min(y[1], y[2])));
+            maxX = (int) Math.ceil(Math.max(x[0], Math.max(x[1], x[2])));
+            maxY = (int) Math.ceil(Math.max(y[0], Math.max(y[1], y[2])));
+        }
+
+        @Override
+        void rasterize(int x0, int y0, int x1, int y1) {
+            float area = edge(x[0], y[0], x[1], y[1], x[2], y[2]);
+            if (Math.abs(area) < 1e-9f) {
+                return;
+            }
+            for (int py = y0; py <= y1; ++py) {
+                float cy = py + 0.5f;
+                for (int px = x0; px <= x1; ++px) {
+                    float cx = px + 0.5f;
+                    float b0 = edge(x[1], y[1], x[2], y[2], cx, cy) / area;
+                    float b1 = edge(x[2], y[2], x[0], y[0], cx, cy) / area;
+                    float b2 = 1f - b0 - b1;
+                    if (b0 < 0 || b1 < 0 || b2 < 0) {
+                        continue;
+                    }
+                    float pz = b0 * z[0] + b1 * z[1] + b2 * z[2];
+                    int pixel = py * width + px;
+                    if (pz < -1f || pz > 1f || pz >= depth.get(pixel)) {
+                        continue;
+                    }
+                    depth.put(pixel, pz);
+                    if (texture == null) {
+                        writeColor(pixel, rgb);
+                    } else {
+                        float w = b0 * invW[0] + b1 * invW[1] + b2 * invW[2];
+                        float u = (b0 * uW[0] + b1 * uW[1] + b2 * uW[2]) / w;
+                        float v = (b0 * vW[0] + b1 * vW[1] + b2 * vW[2]) / w;
+                        int tx = Math.floorMod((int) Math.floor(u * texture.width), texture.width);
+                        // texture coordinates start from the bottom of the image, as in OpenGLViewer
+                        int ty = texture.height - 1 - Math.floorMod((int) Math.floor(v * texture.height), texture.height);
+                        // additive blending, as in OpenGLViewer
+                        int src = texture.rgb[ty * texture.width + tx];
+                        int dst = readColor(pixel);
+                        writeColor(pixel, Math.min(255, (src >> 16 & 0xFF) + (dst >> 16 & 0xFF)) << 16
+                                | Math.min(255, (src >> 8 & 0xFF) + (dst >> 8 & 0xFF)) << 8
+                                | Math.min(255, (src & 0xFF) + (dst & 0xFF)));
+                    }
+                }
+            }
+        }
+    }
+
+    // sphere drawn as a shaded disc at the depth of its center
+    private final class Disc extends Primitive {
+        float cx, cy, r, z;
+        int rgb;
+
+        @Override
+        void rasterize(int x0, int y0, int x1, int y1) {
+            for (int py = y0; py <= y1; ++py) {
+                for (int px = x0; px <= x1; ++px) {
+                    float dx = (px + 0.5f - cx) / r;
+                    float dy = (py + 0.5f - cy) / r;
+                    float d2 = dx * dx + dy * dy;
+                    int pixel = py * width + px;
+                    if (d2 > 1f || z >= depth.get(pixel)) {
+                        continue;
+                    }
+                    depth.put(pixel, z);
+                    float shade = 0.5f + 0.5f * (float) Math.sqrt(1f - d2);
+                    writeColor(pixel, (int) ((rgb >> 16 & 0xFF) * shade) << 16
+                            | (int) ((rgb >> 8 & 0xFF) * shade) << 8
+                            | (int) ((rgb & 0xFF) * shade));
+                }
+            }
+        }
+    }
+
+    private static float edge(float ax, float ay, float bx, float by, float cx, float cy) {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+
+    // clip-space vertex with texture coordinates: x, y, z, w, u, v
+    private double[] toClip(Vector3D p, double u, double v) {
+        double[] clip = new double[6];
+        for (int r = 0; r < 4; ++r) {
+            clip[r] = transform[4 * r] * p.x() + transform[4 * r + 1] * p.y() + transform[4 * r + 2] * p.z() + transform[4 * r + 3];
+        }
+        clip[4] = u;
+        clip[5] = v;
+        return clip;
+    }
+
+    private static boolean inFront(double[] clip) {
+        return clip[2] + clip[3] >= 0;
+    }
+
+    private static double[] intersectNear(double[] a, double[] b) {
+        double da = a[2] + a[3];
+        double db = b[2] + b[3];
+        double t = da / (da - db);
+        double[] result = new double[a.length];
+        for (int i = 0; i < a.length; ++i) {
+            result[i] = a[i] + t * (b[i] - a[i]);
+        }
+        return result;
+    }
+
+    // Sutherland-Hodgman against the near plane only, the others are handled by the rasterizer
+    private static List<double[]> clipNear(List<double[]> polygon) {
+        List<double[]> clipped = new ArrayList<>(polygon.size() + 1);
+        for (int i = 0; i < polygon.size(); ++i) {
+            double[] current = polygon.get(i);
+            double[] next = polygon.get((i + 1) % polygon.size());
+            if (inFront(current)) {
+                clipped.add(current);
+                if (!inFront(next)) {
+                    clipped.add(intersectNear(current, next));
+                }
+            } else if (inFront(next)) {
+                clipped.add(intersectNear(current, next));
+            }
+        }
+        return clipped;
+    }
+
+    private float screenX(double[] clip) {
+        return (float) ((clip[0] / clip[3] + 1) * 0.5 * width);
+    }
+
+    private float screenY(double[] clip) {
+        return (float) ((1 - clip[1] / clip[3]) * 0.5 * height);
+    }
+
+    private void addPolygon(List<double[]> polygon, int rgb, Texture texture) {
+        List<double[]> clipped = clipNear(polygon);
+        for (int i = 1; i + 1 < clipped.size(); ++i) {
+            Triangle triangle = new Triangle();
+            double[][] vertices = {clipped.getFirst(), clipped.get(i), clipped.get(i + 1)};
+            for (int k = 0; k < 3; ++k) {
+                double[] vertex = vertices[k];
+                triangle.x[k] = screenX(vertex);
+                triangle.y[k] = screenY(vertex);
+                triangle.z[k] = (float) (vertex[2] / vertex[3]);
+                triangle.invW[k] = (float) (1 / vertex[3]);
+                triangle.uW[k] = (float) (vertex[4] / vertex[3]);
+                triangle.vW[k] = (float) (vertex[5] / vertex[3]);
+            }
+            triangle.rgb = rgb;
+            triangle.texture = texture;
+            triangle.computeBounds();
+            if (triangle.maxX >= 0 && triangle.maxY >= 0 && triangle.minX < width && triangle.minY < height) {
+                primitives.add(triangle);
+            }
+        }
+    }
+
+    @Override
+    public Vector3D cameraPosition() {
+        return cameraPos;
+    }
+
+    @Override
+    public int loadTexture(String filename) {
+        BufferedImage image;
+        try {
+            File file = new File(filename);
+            if (file.exists()) {
+                image = ImageIO.read(file);
+            } else {
+                // textures are referenced by absolute paths of the development machine, so fall back
+                // to the bundled resource with the same name
+                try (InputStream stream = SoftwareViewer.class.getResourceAsStream("/textures/" + file.getName())) {
+                    image = stream == null ? null : ImageIO.read(stream);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (image == null) {
+            throw new RuntimeException("Image cannot be loaded: " + filename);
+        }
+        int[] rgb = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        textures.add(new Texture(image.getWidth(), image.getHeight(), rgb));
+        return textures.size() - 1;
+    }
+
+    @Override
+    public void drawTriangle(Vector3D v1, Vector3D v2, Vector3D v3, Color color) {
+        addPolygon(List.of(toClip(v1, 0, 0), toClip(v2, 0, 0), toClip(v3, 0, 0)), color.getRGB(), null);
+    }
+
+    @Override
+    public void drawTexture(Vector3D v1, Vector3D v2, Vector3D v3, Vector3D v4, int texID, int hReps, int vReps) {
+        addPolygon(List.of(toClip(v1, 0, 0), toClip(v2, hReps, 0), toClip(v3, hReps, vReps), toClip(v4, 0, vReps)),
+                0, textures.get(texID));
+    }
+
+    @Override
+    public void drawSphere(Vector3D position, double radius, Color color) {
+        double[] center = toClip(position, 0, 0);
+        if (center[3] <= NEAR) {
+            return;
+        }
+        Disc disc = new Disc();
+        disc.cx = screenX(center);
+        disc.cy = screenY(center);
+        disc.z = (float) (center[2] / center[3]);
+        disc.r = (float) (radius * 2 * NEAR / center[3] * 0.5 * width);
+        disc.rgb = color.getRGB();
+        disc.minX = (int) Math.floor(disc.cx - disc.r);
+        disc.maxX = (int) Math.ceil(disc.cx + disc.r);
+        disc.minY = (int) Math.floor(disc.cy - disc.r);
+        disc.maxY = (int) Math.ceil(disc.cy + disc.r);
+        if (disc.r > 0 && disc.maxX >= 0 && disc.maxY >= 0 && disc.minX < width && disc.minY < height) {
+            primitives.add(disc);
+        }
+    }
+
+    // lines are drawn as screen-space quads LINE_HALF_WIDTH pixels wide on each side
+    @Override
+    public void drawLine(Vector3D p1, Vector3D p2, Color color) {
+        double[] a = toClip(p1, 0, 0);
+        double[] b = toClip(p2, 0, 0);
+        if (!inFront(a) && !inFront(b)) {
+            return;
+        }
+        if (!inFront(a)) {
+            a = intersectNear(b, a);
+        } else if (!inFront(b)) {
+            b = intersectNear(a, b);
+        }
+        float ax = screenX(a), ay = screenY(a), bx = screenX(b), by = screenY(b);
+        float length = (float) Math.hypot(bx - ax, by - ay);
+        if (length < 1e-3f) {
+            return;
+        }
+        float nx = -(by - ay) / length * LINE_HALF_WIDTH;
+        float ny = (bx - ax) / length * LINE_HALF_WIDTH;
+        float[][] corners = {{ax + nx, ay + ny}, {ax - nx, ay - ny}, {bx - nx, by - ny}, {bx + nx, by + ny}};
+        double[][] ends = {a, a, b, b};
+        for (int[] indexes : new int[][]{{0, 1, 2}, {0, 2, 3}}) {
+            Triangle triangle = new Triangle();
+            for (int k = 0; k < 3; ++k) {
+                triangle.x[k] = corners[indexes[k]][0];
+                triangle.y[k] = corners[indexes[k]][1];
+                triangle.z[k] = (float) (ends[indexes[k]][2] / ends[indexes[k]][3]);
+            }
+            triangle.rgb = color.getRGB();
+            triangle.computeBounds();
+            primitives.add(triangle);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.shutdown();
+        sink.close();
+    }
+}
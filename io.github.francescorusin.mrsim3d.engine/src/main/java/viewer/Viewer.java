@@ -26,6 +26,12 @@ import java.awt.*;
 import java.util.function.Consumer;
 
 public interface Viewer extends Consumer<InstantSnapshot> {
+  // corners of a hexahedron are indexed as 4x + 2y + z, with x, y and z in {0, 1}
+  int[] HEXAHEDRON_TRIANGLES = {
+      0, 1, 3, 0, 3, 2, 4, 6, 7, 4, 7, 5, 0, 4, 5, 0, 5, 1,
+      2, 3, 7, 2, 7, 6, 0, 2, 6, 0, 6, 4, 1, 5, 7, 1, 7, 3
+  };
+  int[] HEXAHEDRON_EDGES = {0, 4, 1, 5, 2, 6, 3, 7, 0, 2, 1, 3, 4, 6, 5, 7, 0, 1, 2, 3, 4, 5, 6, 7};
 
   int loadTexture(String filename);
 
@@ -36,4 +42,40 @@ public interface Viewer extends Consumer<InstantSnapshot> {
   void drawSphere(Vector3D position, double radius, Color color);
 
   void drawLine(Vector3D p1, Vector3D p2, Color color);
+
+  // edgeColor may be null, in which case edges are not drawn
+  default void drawHexahedron(Vector3D[] corners, Color color, Color edgeColor) {
+    for (int i = 0; i < HEXAHEDRON_TRIANGLES.length; i += 3) {
+      drawTriangle(
+          corners[HEXAHEDRON_TRIANGLES[i]],
+          corners[HEXAHEDRON_TRIANGLES[i + 1]],
+          corners[HEXAHEDRON_TRIANGLES[i + 2]],
+          color);
+    }
+    if (edgeColor != null) {
+      for (int i = 0; i < HEXAHEDRON_EDGES.length; i += 2) {
+        drawLine(corners[HEXAHEDRON_EDGES[i]], corners[HEXAHEDRON_EDGES[i + 1]], edgeColor);
+      }
+    }
+  }
+
+  default void drawCube(Vector3D position, Vector3D rotation, double sideLength, Color color, Color edgeColor) {
+    Vector3D[] corners = new Vector3D[8];
+    for (int i = 0; i < 8; ++i) {
+      corners[i] =
+          new Vector3D((i >> 2) - .5, (i >> 1 & 1) - .5, (i & 1) - .5)
+              .times(sideLength)
+              .rotate(rotation)
+              .sum(position);
+    }
+    drawHexahedron(corners, color, edgeColor);
+  }
+
+  // null if the viewer has no notion of a camera, e.g. to disable level of detail
+  default Vector3D cameraPosition() {
+    return null;
+  }
+
+  // draws whatever has been submitted and not drawn yet; viewers drawing immediately need not override
+  default void flush() {}
 }
@@ -0,0 +1,160 @@
+package geometry; /*-
+                   * ========================LICENSE_START=================================
+                   * core
+                   * %%
+                   * Copyright (C) 2024 Francesco Rusin
+                   * %%
+                   * Licensed under the Apache License, Version 2.0 (the "License");
+                   * you may not use this file except in compliance with the License.
+                   * You may obtain a copy of the License at
+                   *
+                   *      http://www.apache.org/licenses/LICENSE-2.0
+                   *
+                   * Unless required by applicable law or agreed to in writing, software
+                   * distributed under the License is distributed on an "AS IS" BASIS,
+                   * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+                   * See the License for the specific language governing permissions and
+                   * limitations under the License.
+                   * =========================LICENSE_END==================================
+                   */
+
+// Mutable companion of Vector3D for hot paths: every operation works in place and returns this, so
+// that a few scratch instances can be reused across calls instead of allocating a record per step
+public final class MutableVector3D {
+  public double x;
+  public double y;
+  public double z;
+
+  public MutableVector3D() {}
+
+  public MutableVector3D(double x, double y, double z) {
+    set(x, y, z);
+  }
+
+  public MutableVector3D set(double x, double y, double z) {
+    this.x = x;
+    this.y = y;
+    this.z = z;
+    return this;
+  }
+
+  public MutableVector3D set(Vector3D v) {
+    return set(v.x(), v.y(), v.z());
+  }
+
+  public MutableVector3D set(MutableVector3D v) {
+    return set(v.x, v.y, v.z);
+  }
+
+  public MutableVector3D set(double[] array, int offset) {
+    return set(array[offset], array[offset + 1], array[offset + 2]);
+  }
+
+  public void get(double[] array, int offset) {
+    array[offset] = x;
+    array[offset + 1] = y;
+    array[offset + 2] = z;
+  }
+
+  public MutableVector3D add(double x, double y, double z) {
+    this.x += x;
+    this.y += y;
+    this.z += z;
+    return this;
+  }
+
+  public MutableVector3D add(MutableVector3D v) {
+    return add(v.x, v.y, v.z);
+  }
+
+  public MutableVector3D add(Vector3D v) {
+    return add(v.x(), v.y(), v.z());
+  }
+
+  public MutableVector3D sub(MutableVector3D v) {
+    return add(-v.x, -v.y, -v.z);
+  }
+
+  public MutableVector3D sub(Vector3D v) {
+    return add(-v.x(), -v.y(), -v.z());
+  }
+
+  // this += v * d
+  public MutableVector3D addScaled(MutableVector3D v, double d) {
+    return add(v.x * d, v.y * d, v.z * d);
+  }
+
+  public MutableVector3D scale(double d) {
+    return set(x * d, y * d, z * d);
+  }
+
+  public double dot(MutableVector3D v) {
+    return x * v.x + y * v.y + z * v.z;
+  }
+
+  // this = this x v
+  public MutableVector3D cross(MutableVector3D v) {
+    return set(y * v.z - z * v.y, z * v.x - x * v.z, x * v.y - y * v.x);
+  }
+
+  // (a x b) . c, i.e. six times the signed volume of the tetrahedron with edges a, b and c
+  public static double tripleProduct(MutableVector3D a, MutableVector3D b, MutableVector3D c) {
+    return (a.y * b.z - a.z * b.y) * c.x + (a.z * b.x - a.x * b.z) * c.y + (a.x * b.y - a.y * b.x) * c.z;
+  }
+
+  public double norm() {
+    return Math.sqrt(x * x + y * y + z * z);
+  }
+
+  public double distance(MutableVector3D v) {
+    double dx = x - v.x;
+    double dy = y - v.y;
+    double dz = z - v.z;
+    return Math.sqrt(dx * dx + dy * dy + dz * dz);
+  }
+
+  public MutableVector3D normalize() {
+    return scale(1d / norm());
+  }
+
+  public MutableVector3D abs() {
+    return set(Math.abs(x), Math.abs(y), Math.abs(z));
+  }
+
+  // same convention as Vector3D.rotate
+  public MutableVector3D rotate(double ax, double ay, double az) {
+    final double sx = Math.sin(ax), sy = Math.sin(ay), sz = Math.sin(az);
+    final double cx = Math.cos(ax), cy = Math.cos(ay), cz = Math.cos(az);
+    return set(
+        x * cz * cy + y * (cz * sy * sx - sz * cx) + z * (cz * sy * cx + sz * sx),
+        x * sz * cy + y * (cz * cx + sz * sy * sx) + z * (-cz * sx + sz * sy * cx),
+        -x * sy + y * cy * sx + z * cy * cx);
+  }
+
+  public MutableVector3D rotate(Vector3D eulerAngles) {
+    return rotate(eulerAngles.x(), eulerAngles.y(), eulerAngles.z());
+  }
+
+  // same convention as Vector3D.reverseRotate
+  public MutableVector3D reverseRotate(double ax, double ay, double az) {
+    final double sx = -Math.sin(ax), sy = -Math.sin(ay), sz = -Math.sin(az);
+    final double cx = Math.cos(ax), cy = Math.cos(ay), cz = Math.cos(az);
+    return set(
+        x * cz * cy - y * sz * cy + z * sy,
+        x * (cz * sy * sx + sz * cx) + y * (cz * cx - sz * sy * sx) - z * cy * sx,
+        x * (-cz * sy * cx + sz * sx) + y * (cz * sx + sz * sy * cx) + z * cy * cx);
+  }
+
+  public MutableVector3D reverseRotate(Vector3D eulerAngles) {
+    return reverseRotate(eulerAngles.x(), eulerAngles.y(), eulerAngles.z());
+  }
+
+  public Vector3D toVector3D() {
+    return new Vector3D(x, y, z);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("MutableVector3D[x=%f, y=%f, z=%f]", x, y, z);
+  }
+}
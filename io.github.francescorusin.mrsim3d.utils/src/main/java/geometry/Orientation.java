@@ -0,0 +1,93 @@
+package geometry; /*-
+                   * ========================LICENSE_START=================================
+                   * core
+                   * %%
+                   * Copyright (C) 2024 Francesco Rusin
+                   * %%
+                   * Licensed under the Apache License, Version 2.0 (the "License");
+                   * you may not use this file except in compliance with the License.
+                   * You may obtain a copy of the License at
+                   *
+                   *      http://www.apache.org/licenses/LICENSE-2.0
+                   *
+                   * Unless required by applicable law or agreed to in writing, software
+                   * distributed under the License is distributed on an "AS IS" BASIS,
+                   * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+                   * See the License for the specific language governing permissions and
+                   * limitations under the License.
+                   * =========================LICENSE_END==================================
+                   */
+
+// Immutable rotation matrix, row-major, meant to be computed once per tick per body: rotating a
+// vector is then a plain product, and Euler angles (in the convention of Vector3D.rotate) are only
+// computed when explicitly asked for
+public record Orientation(
+    double m00, double m01, double m02,
+    double m10, double m11, double m12,
+    double m20, double m21, double m22) {
+  public static final Orientation IDENTITY = new Orientation(1d, 0d, 0d, 0d, 1d, 0d, 0d, 0d, 1d);
+
+  public static Orientation fromEulerAngles(Vector3D eulerAngles) {
+    final double sx = Math.sin(eulerAngles.x()), sy = Math.sin(eulerAngles.y()), sz = Math.sin(eulerAngles.z());
+    final double cx = Math.cos(eulerAngles.x()), cy = Math.cos(eulerAngles.y()), cz = Math.cos(eulerAngles.z());
+    return new Orientation(
+        cz * cy, cz * sy * sx - sz * cx, cz * sy * cx + sz * sx,
+        sz * cy, cz * cx + sz * sy * sx, -cz * sx + sz * sy * cx,
+        -sy, cy * sx, cy * cx);
+  }
+
+  // the columns are the images of the x, y and z axes, which must be orthonormal
+  public static Orientation fromAxes(MutableVector3D xAxis, MutableVector3D yAxis, MutableVector3D zAxis) {
+    return new Orientation(
+        xAxis.x, yAxis.x, zAxis.x,
+        xAxis.y, yAxis.y, zAxis.y,
+        xAxis.z, yAxis.z, zAxis.z);
+  }
+
+  public Vector3D eulerAngles() {
+    return new Vector3D(Math.atan2(m21, m22), Math.asin(-m20), Math.atan2(m10, m00));
+  }
+
+  public Vector3D rotate(Vector3D v) {
+    return new Vector3D(
+        m00 * v.x() + m01 * v.y() + m02 * v.z(),
+        m10 * v.x() + m11 * v.y() + m12 * v.z(),
+        m20 * v.x() + m21 * v.y() + m22 * v.z());
+  }
+
+  // the inverse rotation, i.e. the product by the transpose
+  public Vector3D reverseRotate(Vector3D v) {
+    return new Vector3D(
+        m00 * v.x() + m10 * v.y() + m20 * v.z(),
+        m01 * v.x() + m11 * v.y() + m21 * v.z(),
+        m02 * v.x() + m12 * v.y() + m22 * v.z());
+  }
+
+  public MutableVector3D rotate(MutableVector3D v) {
+    return v.set(
+        m00 * v.x + m01 * v.y + m02 * v.z,
+        m10 * v.x + m11 * v.y + m12 * v.z,
+        m20 * v.x + m21 * v.y + m22 * v.z);
+  }
+
+  public MutableVector3D reverseRotate(MutableVector3D v) {
+    return v.set(
+        m00 * v.x + m10 * v.y + m20 * v.z,
+        m01 * v.x + m11 * v.y + m21 * v.z,
+        m02 * v.x + m12 * v.y + m22 * v.z);
+  }
+
+  // rotation by this after other
+  public Orientation compose(Orientation other) {
+    return new Orientation(
+        m00 * other.m00 + m01 * other.m10 + m02 * other.m20,
+        m00 * other.m01 + m01 * other.m11 + m02 * other.m21,
+        m00 * other.m02 + m01 * other.m12 + m02 * other.m22,
+        m10 * other.m00 + m11 * other.m10 + m12 * other.m20,
+        m10 * other.m01 + m11 * other.m11 + m12 * other.m21,
+        m10 * other.m02 + m11 * other.m12 + m12 * other.m22,
+        m20 * other.m00 + m21 * other.m10 + m22 * other.m20,
+        m20 * other.m01 + m21 * other.m11 + m22 * other.m21,
+        m20 * other.m02 + m21 * other.m12 + m22 * other.m22);
+  }
+}
@@ -19,7 +19,7 @@ package geometry; /*-
                    */
 
 import java.util.List;
-import java.util.function.Function;
+import java.util.function.DoubleUnaryOperator;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -66,6 +66,14 @@ public record Vector3D(double x, double y, double z) {
     return new Vector3D(this.x - origin.x, this.y - origin.y, this.z - origin.z);
   }
 
+  // same as vectorDistance(otherVector).norm(), without the intermediate vector
+  public double distance(Vector3D otherVector) {
+    final double dx = this.x - otherVector.x;
+    final double dy = this.y - otherVector.y;
+    final double dz = this.z - otherVector.z;
+    return Math.sqrt(dx * dx + dy * dy + dz * dz);
+  }
+
   public double scalarProduct(Vector3D otherVector) {
     return x * otherVector.x + y * otherVector.y + z * otherVector.z;
   }
@@ -91,37 +99,21 @@ public record Vector3D(double x, double y, double z) {
   }
 
   public Vector3D rotate(Vector3D eulerAngles) {
-    Vector3D sines =
-        new Vector3D(
-            Math.sin(eulerAngles.x()), Math.sin(eulerAngles.y()), Math.sin(eulerAngles.z()));
-    Vector3D cosines =
-        new Vector3D(
-            Math.cos(eulerAngles.x()), Math.cos(eulerAngles.y()), Math.cos(eulerAngles.z()));
+    final double sx = Math.sin(eulerAngles.x()), sy = Math.sin(eulerAngles.y()), sz = Math.sin(eulerAngles.z());
+    final double cx = Math.cos(eulerAngles.x()), cy = Math.cos(eulerAngles.y()), cz = Math.cos(eulerAngles.z());
     return new Vector3D(
-        this.x * cosines.z * cosines.y
-            + this.y * (cosines.z * sines.y * sines.x - sines.z * cosines.x)
-            + this.z * (cosines.z * sines.y * cosines.x + sines.z * sines.x),
-        this.x * sines.z * cosines.y
-            + this.y * (cosines.z * cosines.x + sines.z * sines.y * sines.x)
-            + this.z * (-cosines.z * sines.x + sines.z * sines.y * cosines.x),
-        -this.x * sines.y + this.y * cosines.y * sines.x + this.z * cosines.y * cosines.x);
+        this.x * cz * cy + this.y * (cz * sy * sx - sz * cx) + this.z * (cz * sy * cx + sz * sx),
+        this.x * sz * cy + this.y * (cz * cx + sz * sy * sx) + this.z * (-cz * sx + sz * sy * cx),
+        -this.x * sy + this.y * cy * sx + this.z * cy * cx);
   }
 
   public Vector3D reverseRotate(Vector3D eulerAngles) {
-    Vector3D sines =
-        new Vector3D(
-            Math.sin(-eulerAngles.x()), Math.sin(-eulerAngles.y()), Math.sin(-eulerAngles.z()));
-    Vector3D cosines =
-        new Vector3D(
-            Math.cos(eulerAngles.x()), Math.cos(eulerAngles.y()), Math.cos(eulerAngles.z()));
+    final double sx = -Math.sin(eulerAngles.x()), sy = -Math.sin(eulerAngles.y()), sz = -Math.sin(eulerAngles.z());
+    final double cx = Math.cos(eulerAngles.x()), cy = Math.cos(eulerAngles.y()), cz = Math.cos(eulerAngles.z());
     return new Vector3D(
-        this.x * cosines.z * cosines.y - this.y * sines.z * cosines.y + this.z * sines.y,
-        this.x * (cosines.z * sines.y * sines.x + sines.z * cosines.x)
-            + this.y * (cosines.z * cosines.x - sines.z * sines.y * sines.x)
-            - this.z * cosines.y * sines.x,
-        this.x * (-cosines.z * sines.y * cosines.x + sines.z * sines.x)
-            + this.y * (cosines.z * sines.x + sines.z * sines.y * cosines.x)
-            + this.z * cosines.y * cosines.x);
+        this.x * cz * cy - this.y * sz * cy + this.z * sy,
+        this.x * (cz * sy * sx + sz * cx) + this.y * (cz * cx - sz * sy * sx) - this.z * cy * sx,
+        this.x * (-cz * sy * cx + sz * sx) + this.y * (cz * sx + sz * sy * cx) + this.z * cy * cx);
   }
 
   public Vector3D eulerAngles(double angle) {
@@ -135,7 +127,8 @@ public record Vector3D(double x, double y, double z) {
             );
   }
 
-  public Vector3D forEach(Function<Double, Double> function) {
-    return new Vector3D(function.apply(this.x), function.apply(this.y), function.apply(this.z));
+  public Vector3D forEach(DoubleUnaryOperator function) {
+    return new Vector3D(
+        function.applyAsDouble(this.x), function.applyAsDouble(this.y), function.applyAsDouble(this.z));
   }
 }
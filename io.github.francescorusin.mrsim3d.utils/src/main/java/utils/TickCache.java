@@ -0,0 +1,106 @@
+/*-
+ * ========================LICENSE_START=================================
+ * utils
+ * %%
+ * Copyright (C) 2024 - 2025 Francesco Rusin
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package utils;
+
+import java.util.function.LongSupplier;
+
+// per-object cache of values that stay valid for a single step of the simulation; entries are
+// stamped with the step count of the engine and with a generation, which is bumped to invalidate
+// all of them at once when the owner is moved outside of the simulation step
+public final class TickCache {
+  private static final long INVALID = -1L;
+  private LongSupplier clock;
+  private long generation;
+
+  public TickCache() {
+    clock = () -> 0L;
+  }
+
+  public void bind(LongSupplier clock) {
+    this.clock = clock;
+    invalidateAll();
+  }
+
+  public void invalidateAll() {
+    ++generation;
+  }
+
+  public <T> Slot<T> slot() {
+    return new Slot<>();
+  }
+
+  public DoubleSlot doubleSlot() {
+    return new DoubleSlot();
+  }
+
+  public final class Slot<T> {
+    private long step = INVALID;
+    private long stamp = INVALID;
+    private T value;
+
+    private Slot() {}
+
+    public boolean isValid() {
+      return stamp == generation && step == clock.getAsLong();
+    }
+
+    public T get() {
+      return value;
+    }
+
+    public T set(T value) {
+      this.value = value;
+      step = clock.getAsLong();
+      stamp = generation;
+      return value;
+    }
+
+    public void invalidate() {
+      stamp = INVALID;
+    }
+  }
+
+  public final class DoubleSlot {
+    private long step = INVALID;
+    private long stamp = INVALID;
+    private double value;
+
+    private DoubleSlot() {}
+
+    public boolean isValid() {
+      return stamp == generation && step == clock.getAsLong();
+    }
+
+    public double get() {
+      return value;
+    }
+
+    public double set(double value) {
+      this.value = value;
+      step = clock.getAsLong();
+      stamp = generation;
+      return value;
+    }
+
+    public void invalidate() {
+      stamp = INVALID;
+    }
+  }
+}